@@ -0,0 +1,316 @@
+package it.polito.emergency;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.polito.emergency.EmergencyApp.PatientStatus;
+
+/**
+ * Pipeline mode of an {@link EmergencyApp}.
+ *
+ * Reception, assignment to a professional, reporting and discharge are separate
+ * stages. Each stage has its own bounded lock-free queue and its own workers,
+ * so a slow or overloaded stage does not stall the others. A request can go
+ * through a single stage, or through all of them with
+ * {@link #treat(String, String, String, String, String, String, String, String, String)}:
+ * the workers of a stage hand the request over to the queue of the next one,
+ * waiting while it is full, so an overloaded stage slows down the stages
+ * before it instead of being flooded.
+ *
+ * When the queue of the stage receiving a request is full the request is
+ * rejected at once with a failed {@link Result}: a surge of arrivals is pushed
+ * back to the callers instead of delaying the discharges already queued.
+ *
+ * The workers of all the stages hold the read lock of the application, which
+ * guards the data changed by each stage with finer locks, so the stages run in
+ * parallel and exclude the updates made through the other facades.
+ */
+public class AdmissionPipeline implements AutoCloseable {
+
+    public enum Stage {
+        ADMISSION,
+        ASSIGNMENT,
+        REPORT,
+        DISCHARGE
+    }
+
+    private final EmergencyApp app;
+    private final StageWorkers[] stages = new StageWorkers[Stage.values().length];
+    private volatile boolean running = true;
+    // callers inside submit, close waits for them before stopping the workers
+    private final AtomicInteger submitting = new AtomicInteger();
+
+    /**
+     * Creates and starts the pipeline.
+     *
+     * @param app the application updated by the stages
+     * @param queueCapacity the capacity of the queue of each stage
+     * @param workersPerStage the number of worker threads of each stage
+     */
+    public AdmissionPipeline(EmergencyApp app, int queueCapacity, int workersPerStage) {
+        this.app = app;
+        for (Stage s : Stage.values()) {
+            stages[s.ordinal()] = new StageWorkers(s, queueCapacity, workersPerStage);
+        }
+    }
+
+    public CompletableFuture<Result<Patient>> addPatient(String fiscalCode, String name, String surname, String dateOfBirth, String reason, String dateTimeAccepted) {
+        return submit(Stage.ADMISSION, () -> Result.ok(app.addPatient(fiscalCode, name, surname, dateOfBirth, reason, dateTimeAccepted)));
+    }
+
+    public CompletableFuture<Result<String>> assignPatientToProfessional(String fiscalCode, String specialization) {
+        return submit(Stage.ASSIGNMENT, () -> assign(fiscalCode, specialization));
+    }
+
+    public CompletableFuture<Result<Report>> saveReport(String professionalId, String fiscalCode, String date, String description) {
+        return submit(Stage.REPORT, () -> save(professionalId, fiscalCode, date, description));
+    }
+
+    public CompletableFuture<Result<PatientStatus>> dischargeOrHospitalize(String fiscalCode, String departmentName) {
+        return submit(Stage.DISCHARGE, () -> discharge(fiscalCode, departmentName));
+    }
+
+    /**
+     * Admits a patient and takes them through all the stages: the patient is
+     * assigned to a professional of the specialization, the professional saves a
+     * report dated as the admission and the patient is then discharged or
+     * hospitalized. The request stops at the first failed stage.
+     *
+     * @param fiscalCode the fiscal code of the patient
+     * @param name the name of the patient
+     * @param surname the surname of the patient
+     * @param dateOfBirth the date of birth of the patient
+     * @param reason the reason of the visit
+     * @param dateTimeAccepted the date of the admission
+     * @param specialization the specialization of the professional
+     * @param description the description of the report
+     * @param departmentName the requested department
+     * @return the final status of the patient
+     */
+    public CompletableFuture<Result<PatientStatus>> treat(String fiscalCode, String name, String surname, String dateOfBirth, String reason, String dateTimeAccepted,
+            String specialization, String description, String departmentName) {
+        // the professional chosen by the assignment writes the report
+        String[] professional = new String[1];
+        return submit(Stage.ADMISSION,
+            () -> Result.ok(app.addPatient(fiscalCode, name, surname, dateOfBirth, reason, dateTimeAccepted)),
+            () -> {
+                Result<String> r = assign(fiscalCode, specialization);
+                if (r.isSuccess()) professional[0] = r.getValue();
+                return r;
+            },
+            () -> save(professional[0], fiscalCode, dateTimeAccepted, description),
+            () -> discharge(fiscalCode, departmentName));
+    }
+
+    private Result<String> assign(String fiscalCode, String specialization) {
+        String id = app.assign(fiscalCode, specialization);
+        return id == null ? Result.failure("Cannot assign " + fiscalCode + " to " + specialization) : Result.ok(id);
+    }
+
+    private Result<Report> save(String professionalId, String fiscalCode, String date, String description) {
+        Report r = app.save(professionalId, fiscalCode, date, description);
+        return r == null ? Result.failure("Unknown professional " + professionalId) : Result.ok(r);
+    }
+
+    private Result<PatientStatus> discharge(String fiscalCode, String departmentName) {
+        PatientStatus s = app.discharge(fiscalCode, departmentName);
+        return s == null ? Result.failure("Unknown patient " + fiscalCode + " or department " + departmentName) : Result.ok(s);
+    }
+
+    /**
+     * Returns the number of requests waiting in the queue of a stage.
+     *
+     * @param stage the stage
+     * @return the queue depth
+     */
+    public int getQueueDepth(Stage stage) {
+        return stages[stage.ordinal()].queue.size();
+    }
+
+    /**
+     * Returns the number of requests completed by a stage.
+     *
+     * @param stage the stage
+     * @return the number of processed requests
+     */
+    public long getProcessed(Stage stage) {
+        return stages[stage.ordinal()].processed.get();
+    }
+
+    /**
+     * Returns the number of requests rejected because the queue of a stage was full.
+     *
+     * @param stage the stage
+     * @return the number of rejected requests
+     */
+    public long getRejected(Stage stage) {
+        return stages[stage.ordinal()].rejected.get();
+    }
+
+    /**
+     * Returns the average throughput of a stage since the pipeline started.
+     *
+     * @param stage the stage
+     * @return the processed requests per second
+     */
+    public double getThroughput(Stage stage) {
+        StageWorkers s = stages[stage.ordinal()];
+        double seconds = (System.nanoTime() - s.startNanos) / 1e9;
+        return seconds > 0 ? s.processed.get() / seconds : 0;
+    }
+
+    /**
+     * Stops accepting requests, completes the queued ones and stops the workers.
+     *
+     * The requests being submitted are queued or rejected before the workers
+     * stop, and the stages stop in order, after the ones handing requests over
+     * to them, so every accepted request is completed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        while (submitting.get() > 0) Thread.yield();
+        for (StageWorkers s : stages) {
+            s.stop();
+            for (Thread t : s.threads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private <T> CompletableFuture<Result<T>> submit(Stage stage, Step... steps) {
+        Task<T> task = new Task<>(stage, steps);
+        // incremented before reading running, as close clears running before reading the counter
+        submitting.incrementAndGet();
+        try {
+            StageWorkers s = stages[stage.ordinal()];
+            if (!running) {
+                task.future.complete(Result.failure("Pipeline closed"));
+            } else if (!s.tryPut(task)) {
+                s.rejected.incrementAndGet();
+                task.future.complete(Result.failure("Stage " + stage + " is full"));
+            }
+        } finally {
+            submitting.decrementAndGet();
+        }
+        return task.future;
+    }
+
+    private interface Step {
+        Result<?> run();
+    }
+
+    /**
+     * Request going through consecutive stages, one step per stage.
+     */
+    private final class Task<T> {
+        private final Step[] steps;
+        private final CompletableFuture<Result<T>> future = new CompletableFuture<>();
+        private int stage;
+        private int step;
+
+        Task(Stage first, Step[] steps) {
+            this.stage = first.ordinal();
+            this.steps = steps;
+        }
+
+        @SuppressWarnings("unchecked")
+        void execute(AtomicLong processed) {
+            Result<?> res = null;
+            RuntimeException error = null;
+            app.lock().readLock().lock();
+            try {
+                res = steps[step].run();
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                app.lock().readLock().unlock();
+            }
+            // counted before completing, so callers see the metric updated
+            processed.incrementAndGet();
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else if (res.isSuccess() && ++step < steps.length) {
+                stages[++stage].put(this);
+            } else {
+                // a failed result has no value, the last step returns the result of the request
+                future.complete((Result<T>) res);
+            }
+        }
+    }
+
+    private final class StageWorkers {
+        private final BoundedQueue<Task<?>> queue;
+        // free cells of the queue and queued requests, the workers wait on them
+        private final Semaphore space;
+        private final Semaphore queued = new Semaphore(0);
+        private final Thread[] threads;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final long startNanos = System.nanoTime();
+        private volatile boolean stopping;
+
+        StageWorkers(Stage stage, int capacity, int workers) {
+            queue = new BoundedQueue<>(capacity);
+            space = new Semaphore(capacity);
+            threads = new Thread[workers];
+            for (int i = 0; i < workers; i++) {
+                threads[i] = new Thread(this::work, "pipeline-" + stage.name().toLowerCase() + "-" + i);
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+        }
+
+        /**
+         * Queues a request if there is space.
+         */
+        boolean tryPut(Task<?> task) {
+            if (!space.tryAcquire()) return false;
+            offer(task);
+            return true;
+        }
+
+        /**
+         * Queues a request, waiting for space.
+         */
+        void put(Task<?> task) {
+            space.acquireUninterruptibly();
+            offer(task);
+        }
+
+        private void offer(Task<?> task) {
+            // the cell freed by a worker may not be the one at the tail yet
+            while (!queue.offer(task)) Thread.onSpinWait();
+            queued.release();
+        }
+
+        /**
+         * Wakes up the workers, which stop once the queue is empty.
+         */
+        void stop() {
+            stopping = true;
+            queued.release(threads.length);
+        }
+
+        private void work() {
+            while (true) {
+                queued.acquireUninterruptibly();
+                Task<?> task;
+                // a request announced by a permit may still be published behind an earlier one
+                while ((task = queue.poll()) == null) {
+                    if (stopping) return;
+                    Thread.onSpinWait();
+                }
+                space.release();
+                task.execute(processed);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package it.polito.emergency;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+
+import it.polito.emergency.EmergencyApp.PatientStatus;
+
+/**
+ * Non-blocking facade of an {@link EmergencyApp}.
+ *
+ * Every operation runs on an executor and returns a future completed with a
+ * {@link Result}, routine failures such as an unknown patient are reported as
+ * failed results instead of exceptions. Queries hold the read lock of the
+ * application and updates its write lock, so many queries can run together.
+ *
+ * Concurrent identical queries on professionals and on the patients of a date
+ * are coalesced: while one is running, the others wait for its result instead
+ * of executing it again. A query stops accepting callers before it releases
+ * the read lock, so an update of this facade completed before a query is
+ * called is always reflected in its result, also when it is coalesced. The
+ * updates made to the application through other objects that do not hold
+ * its write lock, such as an {@link AdmissionPipeline}, may be missed by a
+ * query coalesced with one started before them.
+ */
+public class AsyncEmergencyApp implements AutoCloseable {
+
+    private final EmergencyApp app;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final ConcurrentHashMap<List<Object>, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a facade running on virtual threads when the JVM supports them,
+     * otherwise on a pool of daemon threads.
+     *
+     * @param app the application to wrap
+     */
+    public AsyncEmergencyApp(EmergencyApp app) {
+        this(app, defaultExecutor(), true);
+    }
+
+    /**
+     * Creates a facade running on the given executor, which is not shut down by {@link #close()}.
+     *
+     * @param app the application to wrap
+     * @param executor the executor running the operations
+     */
+    public AsyncEmergencyApp(EmergencyApp app, ExecutorService executor) {
+        this(app, executor, false);
+    }
+
+    private AsyncEmergencyApp(EmergencyApp app, ExecutorService executor, boolean ownExecutor) {
+        this.app = app;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    public CompletableFuture<Result<Void>> addProfessional(String id, String name, String surname, String specialization, String period) {
+        return write(() -> {
+            app.addProfessional(id, name, surname, specialization, period);
+            return Result.done();
+        });
+    }
+
+    public CompletableFuture<Result<Professional>> getProfessionalById(String id) {
+        return read(() -> {
+            Professional p = app.findProfessional(id);
+            return p == null ? Result.failure("Unknown professional " + id) : Result.ok(p);
+        });
+    }
+
+    public CompletableFuture<Result<List<String>>> getProfessionals(String specialization) {
+        return coalesce(Arrays.asList("getProfessionals", specialization), () -> {
+            List<String> temp = app.findProfessionals(specialization);
+            return temp.isEmpty() ? Result.failure("No professionals for " + specialization) : Result.ok(List.copyOf(temp));
+        });
+    }
+
+    public CompletableFuture<Result<List<String>>> getProfessionalsInService(String specialization, String period) {
+        if (period == null) return CompletableFuture.completedFuture(Result.failure("Missing period"));
+        return coalesce(Arrays.asList("getProfessionalsInService", specialization, period), () -> {
+            List<String> temp = app.findProfessionalsInService(specialization, period);
+            return temp.isEmpty() ? Result.failure("No professionals for " + specialization + " in " + period) : Result.ok(List.copyOf(temp));
+        });
+    }
+
+    public CompletableFuture<Result<Void>> addDepartment(String name, int maxPatients) {
+        return write(() -> {
+            app.addDepartment(name, maxPatients);
+            return Result.done();
+        });
+    }
+
+    public CompletableFuture<Result<Patient>> addPatient(String fiscalCode, String name, String surname, String dateOfBirth, String reason, String dateTimeAccepted) {
+        return write(() -> Result.ok(app.addPatient(fiscalCode, name, surname, dateOfBirth, reason, dateTimeAccepted)));
+    }
+
+    public CompletableFuture<Result<List<Patient>>> getPatient(String identifier) {
+        return read(() -> Result.ok(app.getPatient(identifier)));
+    }
+
+    public CompletableFuture<Result<List<String>>> getPatientsByDate(String date) {
+        return coalesce(Arrays.asList("getPatientsByDate", date), () -> Result.ok(List.copyOf(app.getPatientsByDate(date))));
+    }
+
+    public CompletableFuture<Result<String>> assignPatientToProfessional(String fiscalCode, String specialization) {
+        return write(() -> {
+            String id = app.assign(fiscalCode, specialization);
+            return id == null ? Result.failure("Cannot assign " + fiscalCode + " to " + specialization) : Result.ok(id);
+        });
+    }
+
+    public CompletableFuture<Result<Report>> saveReport(String professionalId, String fiscalCode, String date, String description) {
+        return write(() -> {
+            Report r = app.save(professionalId, fiscalCode, date, description);
+            return r == null ? Result.failure("Unknown professional " + professionalId) : Result.ok(r);
+        });
+    }
+
+    public CompletableFuture<Result<List<Report>>> searchReports(String query, String professionalId, String fromDate, String toDate) {
+        return read(() -> Result.ok(app.searchReports(query, professionalId, fromDate, toDate)));
+    }
+
+    /**
+     * Discharges or hospitalizes a patient, see {@link EmergencyApp#dischargeOrHospitalize(String, String)}.
+     *
+     * @param fiscalCode the fiscal code of the patient
+     * @param departmentName the requested department
+     * @return the new status of the patient
+     */
+    public CompletableFuture<Result<PatientStatus>> dischargeOrHospitalize(String fiscalCode, String departmentName) {
+        return write(() -> {
+            PatientStatus s = app.discharge(fiscalCode, departmentName);
+            return s == null ? Result.failure("Unknown patient " + fiscalCode + " or department " + departmentName) : Result.ok(s);
+        });
+    }
+
+    /**
+     * Returns the current snapshot of the application, without waiting for any lock.
+     *
+     * @return the snapshot
+     */
+    public EmergencySnapshot snapshot() {
+        return app.snapshot();
+    }
+
+    /**
+     * Shuts down the executor if it was created by this facade.
+     */
+    @Override
+    public void close() {
+        if (ownExecutor) executor.shutdown();
+    }
+
+    private interface Action<T> {
+        Result<T> run() throws EmergencyException;
+    }
+
+    private <T> CompletableFuture<Result<T>> read(Action<T> action) {
+        return CompletableFuture.supplyAsync(() -> locked(app.lock().readLock(), action), executor);
+    }
+
+    private <T> CompletableFuture<Result<T>> write(Action<T> action) {
+        return CompletableFuture.supplyAsync(() -> locked(app.lock().writeLock(), action), executor);
+    }
+
+    // the keys are built with Arrays.asList, which accepts null arguments
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<Result<T>> coalesce(List<Object> key, Action<T> action) {
+        CompletableFuture<Result<T>> mine = new CompletableFuture<>();
+        CompletableFuture<?> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) return ((CompletableFuture<Result<T>>) running).copy();
+        try {
+            executor.execute(() -> {
+                Result<T> res = null;
+                Throwable error = null;
+                try {
+                    res = locked(app.lock().readLock(), () -> {
+                        try {
+                            return action.run();
+                        } finally {
+                            // removed before releasing the lock: an update completed after
+                            // this point is only seen by a new query, so callers never join a
+                            // query that misses it
+                            inFlight.remove(key, mine);
+                        }
+                    });
+                } catch (Throwable t) {
+                    error = t;
+                }
+                if (error == null) mine.complete(res);
+                else mine.completeExceptionally(error);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+        }
+        return mine.copy();
+    }
+
+    private static <T> Result<T> locked(Lock lock, Action<T> action) {
+        lock.lock();
+        try {
+            return action.run();
+        } catch (EmergencyException e) {
+            return Result.failure(e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ExecutorService defaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "emergency-async");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package it.polito.emergency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and many consumers.
+ *
+ * Each cell of the ring has a sequence number telling whether it is ready to
+ * be written or to be read at a given position, so producers and consumers
+ * only compete with a compare-and-set on the tail and on the head.
+ * The capacity is rounded up to a power of two.
+ *
+ * @param <E> the type of the elements
+ */
+final class BoundedQueue<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequence;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    BoundedQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mask = size - 1;
+        buffer = new AtomicReferenceArray<>(size);
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequence.set(i, i);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds an element if there is space.
+     *
+     * @param e the element
+     * @return {@code false} if the queue is full
+     */
+    boolean offer(E e) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequence.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, e);
+                    sequence.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element.
+     *
+     * @return the element or {@code null} if the queue is empty
+     */
+    E poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequence.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E e = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequence.set(index, pos + mask + 1);
+                    return e;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements, which may be stale while other threads
+     * are adding or removing.
+     *
+     * @return the number of elements
+     */
+    int size() {
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(t - h, capacity()));
+    }
+}
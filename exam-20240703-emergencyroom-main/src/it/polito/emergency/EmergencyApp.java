@@ -3,24 +3,55 @@ package it.polito.emergency;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
+import it.polito.emergency.EmergencySnapshot.PatientRecord;
+
 public class EmergencyApp {
 
     private Map<String, Professional> profesionals = new HashMap<>();
     private Map<String, Integer> departments = new HashMap<>();
-    private Map<Patient, String> patientsAndDepartment = new HashMap<>();
-    private Map<String, Patient> patients = new HashMap<>();
+    private PatientRegistry patients = new PatientRegistry();
+    private Map<String, List<Patient>> patientsBySurname = new HashMap<>();
+    private ReportIndex reportIndex = new ReportIndex();
+    private volatile EmergencySnapshot state = EmergencySnapshot.EMPTY;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // finer locks of the data changed by the stages of an AdmissionPipeline, which
+    // run together holding the read lock; taken in this order. The records lock
+    // also guards the departments, which are published in the same snapshot
+    private final ReadWriteLock patientsLock = new ReentrantReadWriteLock();
+    private final Object recordsLock = new Object();
+    private final Object reportsLock = new Object();
+    private final PatientTimeline timeline = new PatientTimeline();
+    private final Clock clock;
 
     public enum PatientStatus {
         ADMITTED,
         DISCHARGED,
         HOSPITALIZED
     }
+
+    public EmergencyApp() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Creates an emergency room that time-stamps the events of the patient timeline
+     * with the given clock.
+     *
+     * @param clock the clock used for the timeline
+     */
+    public EmergencyApp(Clock clock) {
+        this.clock = clock;
+    }
     
     /**
      * Add a professional working in the emergency room
@@ -44,8 +75,8 @@ public class EmergencyApp {
      * @throws EmergencyException If no professional is found.
      */    
     public Professional getProfessionalById(String id) throws EmergencyException {
-        if (profesionals.containsKey(id)) return profesionals.get(id);
-        else throw new EmergencyException();
+        Professional temp = findProfessional(id);
+        if (temp == null) throw new EmergencyException(); else return temp;
     }
 
     /**
@@ -56,7 +87,7 @@ public class EmergencyApp {
      * @throws EmergencyException If no professionals are found with the specified specialization.
      */    
     public List<String> getProfessionals(String specialization) throws EmergencyException {
-        List<String> temp = profesionals.values().stream().filter(p->p.getSpecialization().equals(specialization)).map(Professional::getId).collect(Collectors.toList());
+        List<String> temp = findProfessionals(specialization);
         if (temp.isEmpty()) throw new EmergencyException(); else return temp;
     }
 
@@ -69,15 +100,8 @@ public class EmergencyApp {
      * @throws EmergencyException If no professionals are found with the specified specialization and period.
      */    
     public List<String> getProfessionalsInService(String specialization, String period) throws EmergencyException {
-       
-        List<String> temp = getProfessionals(specialization).stream()
-        .filter(p->{
-            if (profesionals.containsKey(p)){return profesionals.get(p).workInPeriod(period);} else return false;
-        }).collect(Collectors.toList());
-
-        if (temp.isEmpty()) throw new EmergencyException();
-        else return temp;
-        
+        List<String> temp = findProfessionalsInService(specialization, period);
+        if (temp.isEmpty()) throw new EmergencyException(); else return temp;
     }
 
     /**
@@ -88,7 +112,11 @@ public class EmergencyApp {
      * @throws EmergencyException If the department already exists.
      */
     public void addDepartment(String name, int maxPatients) {
-        departments.put(name, maxPatients);
+        // the snapshot is replaced under the lock of the record updates, which read and replace it too
+        synchronized (recordsLock) {
+            departments.put(name, maxPatients);
+            state = state.withDepartments(departments);
+        }
     }
 
     /**
@@ -138,10 +166,13 @@ public class EmergencyApp {
     public int readFromFileDepartments(Reader reader) throws IOException {
             if (reader==null) throw new IOException();
             BufferedReader r = new BufferedReader(reader);
-            r.lines().skip(1).forEach(line->{
-                String[] temp = line.split(",");
-                departments.put(temp[0], Integer.parseInt(temp[1]));
-            });
+            synchronized (recordsLock) {
+                r.lines().skip(1).forEach(line->{
+                    String[] temp = line.split(",");
+                    departments.put(temp[0], Integer.parseInt(temp[1]));
+                });
+                state = state.withDepartments(departments);
+            }
             reader.reset(); return (int) r.lines().skip(1).count();
     }
 
@@ -156,8 +187,20 @@ public class EmergencyApp {
      * @param dateTimeAccepted The date and time the patient was accepted into the emergency system.
      */
     public Patient addPatient(String fiscalCode, String name, String surname, String dateOfBirth, String reason, String dateTimeAccepted) {
-        if (patients.containsKey(fiscalCode)) return patients.get(fiscalCode);
-        else return patients.computeIfAbsent(fiscalCode, k-> new Patient(k, name, surname, dateOfBirth, reason, dateTimeAccepted, PatientStatus.ADMITTED.toString()));
+        patientsLock.writeLock().lock();
+        try {
+            return patients.computeIfAbsent(fiscalCode, k-> {
+                Patient p = new Patient(k, name, surname, dateOfBirth, reason, dateTimeAccepted, PatientStatus.ADMITTED.toString());
+                patientsBySurname.computeIfAbsent(surname, s -> new ArrayList<>()).add(p);
+                synchronized (recordsLock) {
+                    timeline.arrival(clock.instant().getEpochSecond(), patients.size());
+                    state = state.withRecords(state.records().append(new PatientRecord(p, PatientStatus.ADMITTED, null, Map.of())));
+                }
+                return p;
+            });
+        } finally {
+            patientsLock.writeLock().unlock();
+        }
     }
 
     /**
@@ -168,7 +211,16 @@ public class EmergencyApp {
      *         Returns an empty collection if no match is found.
      */    
     public List<Patient> getPatient(String identifier) throws EmergencyException {
-        return patients.values().stream().filter(p->p.getFiscalCode().equals(identifier) || p.getSurname().equals(identifier)).collect(Collectors.toList());
+        patientsLock.readLock().lock();
+        try {
+            List<Patient> temp = new ArrayList<>();
+            Patient byCode = patients.get(identifier);
+            if (byCode != null) temp.add(byCode);
+            patientsBySurname.getOrDefault(identifier, List.of()).stream().filter(p->p!=byCode).forEach(temp::add);
+            return temp;
+        } finally {
+            patientsLock.readLock().unlock();
+        }
     }
 
     /**
@@ -180,10 +232,15 @@ public class EmergencyApp {
      *         Returns an empty list if no patients were accepted on that date.
      */
     public List<String> getPatientsByDate(String date) {
-        return patients.values().stream().filter(p->p.getDateTimeAccepted().equals(date))
-        .sorted(Comparator.comparing(Patient::getSurname).thenComparing(Patient::getName))
-        .map(Patient::getFiscalCode)
-        .collect(Collectors.toList());
+        patientsLock.readLock().lock();
+        try {
+            return patients.values().stream().filter(p->p.getDateTimeAccepted().equals(date))
+            .sorted(Comparator.comparing(Patient::getSurname).thenComparing(Patient::getName))
+            .map(Patient::getFiscalCode)
+            .collect(Collectors.toList());
+        } finally {
+            patientsLock.readLock().unlock();
+        }
     }
 
     /**
@@ -195,23 +252,52 @@ public class EmergencyApp {
      * @throws EmergencyException If the patient does not exist, if no professionals with the required specialization are found, or if none are available during the period of the request.
      */
     public String assignPatientToProfessional(String fiscalCode, String specialization) throws EmergencyException {
-        if (
-            !(patients.containsKey(fiscalCode)) ||
-            getProfessionals(specialization).isEmpty() ||
-            getProfessionalsInService(specialization, patients.get(fiscalCode).getDateTimeAccepted()).isEmpty()) 
-            throw new EmergencyException();
-                
-        Patient p = patients.get(fiscalCode);
-        Professional pr = getProfessionalById(
-            getProfessionalsInService(specialization, p.getDateTimeAccepted()).get(0)
-        );
-        pr.addPatient(p);
-        return pr.getId();
+        String temp = assign(fiscalCode, specialization);
+        if (temp == null) throw new EmergencyException(); else return temp;
     }
 
+    /**
+     * Saves the report of a visit and adds its description to the search index.
+     *
+     * @param professionalId The ID of the professional that wrote the report.
+     * @param fiscalCode The fiscal code of the patient.
+     * @param date The date of the visit.
+     * @param description The description of the visit.
+     * @return The saved report.
+     * @throws EmergencyException If the professional does not exist.
+     */
     public Report saveReport(String professionalId, String fiscalCode, String date, String description) throws EmergencyException {
-        if (!profesionals.containsKey(professionalId)) throw new EmergencyException();
-        return new Report(professionalId, fiscalCode, date, description);
+        Report temp = save(professionalId, fiscalCode, date, description);
+        if (temp == null) throw new EmergencyException(); else return temp;
+    }
+
+    /**
+     * Searches the saved reports whose description matches a query.
+     * The words and the quoted phrases of the query must all be present, the keyword
+     * {@code OR} separates alternatives, e.g. {@code fracture "left wrist" OR sprain}.
+     * Matching ignores case, punctuation and accents.
+     *
+     * @param query The text to search.
+     * @return The matching reports in the order they were saved.
+     */
+    public List<Report> searchReports(String query) {
+        return searchReports(query, null, null, null);
+    }
+
+    /**
+     * Searches the saved reports whose description matches a query, restricted to
+     * a professional and to a range of dates. Null restrictions are not applied.
+     *
+     * @param query The text to search, see {@link #searchReports(String)}.
+     * @param professionalId The ID of the professional that wrote the reports.
+     * @param fromDate The first date of the reports, formatted as "yyyy-MM-dd".
+     * @param toDate The last date of the reports, formatted as "yyyy-MM-dd".
+     * @return The matching reports in the order they were saved.
+     */
+    public List<Report> searchReports(String query, String professionalId, String fromDate, String toDate) {
+        synchronized (reportsLock) {
+            return reportIndex.search(query, professionalId, fromDate, toDate);
+        }
     }
 
     /**
@@ -222,8 +308,7 @@ public class EmergencyApp {
      * @throws EmergencyException If the patient does not exist or if the department does not exist.
      */
     public void dischargeOrHospitalize(String fiscalCode, String departmentName) throws EmergencyException {
-        if (!departments.containsKey(departmentName) || !patients.containsKey(fiscalCode)) throw new EmergencyException();
-        if (getNumberOfPatientsHospitalizedByDepartment(departmentName)<departments.get(departmentName)){patients.get(fiscalCode).setStatus(PatientStatus.HOSPITALIZED.toString());} else patients.get(fiscalCode).setStatus(PatientStatus.DISCHARGED.toString()); patientsAndDepartment.put(patients.get(fiscalCode),departmentName);
+        if (discharge(fiscalCode, departmentName) == null) throw new EmergencyException();
     }
 
     /**
@@ -234,7 +319,8 @@ public class EmergencyApp {
      * @throws EmergencyException If no patient is found with the given fiscal code.
      */
     public int verifyPatient(String fiscalCode) throws EmergencyException{
-        if (!patients.containsKey(fiscalCode)) throw new EmergencyException(); else return patients.get(fiscalCode).getStatus()==PatientStatus.HOSPITALIZED?0:-1;
+        Patient p = findPatient(fiscalCode);
+        if (p == null) throw new EmergencyException(); else return p.getStatus()==PatientStatus.HOSPITALIZED?0:-1;
     }
 
     /**
@@ -243,7 +329,7 @@ public class EmergencyApp {
      * @return The total number of patients in the system.
      */    
     public int getNumberOfPatients() {
-        return (int) patients.values().stream().filter(p->p.getStatus()==PatientStatus.ADMITTED).count();
+        return state.getNumberOfPatients();
     }
 
     /**
@@ -253,11 +339,11 @@ public class EmergencyApp {
      * @return The count of patients admitted on that date.
      */
     public int getNumberOfPatientsByDate(String date) {
-        return (int) getPatientsByDate(date).stream().filter(k->patients.get(k).getStatus()==PatientStatus.ADMITTED).count();
+        return state.getNumberOfPatientsByDate(date);
     }
 
     public int getNumberOfPatientsHospitalizedByDepartment(String departmentName) throws EmergencyException {
-        if (!departments.containsKey(departmentName)) throw new EmergencyException(); return (int) patientsAndDepartment.entrySet().stream().filter(e->e.getValue().equals(departmentName)).filter(e->e.getKey().getStatus()==PatientStatus.HOSPITALIZED).count();
+        return state.getNumberOfPatientsHospitalizedByDepartment(departmentName);
     }
 
     /**
@@ -266,7 +352,7 @@ public class EmergencyApp {
      * @return The count of discharged patients.
      */
     public int getNumberOfPatientsDischarged() {
-        return (int) patients.values().stream().filter(p->p.getStatus()==PatientStatus.DISCHARGED).count();
+        return state.getNumberOfPatientsDischarged();
     }
 
     /**
@@ -276,6 +362,124 @@ public class EmergencyApp {
      * @return The count of discharged patients treated by professionals of the given specialization.
      */
     public int getNumberOfPatientsAssignedToProfessionalDischarged(String specialization) {
-        return (int) profesionals.values().stream().filter(pro->pro.getSpecialization().equals(specialization)).flatMap(pro->pro.getPatients().values().stream().filter(pat->pat.getStatus()==PatientStatus.DISCHARGED)).count();
+        return state.getNumberOfPatientsAssignedToProfessionalDischarged(specialization);
+    }
+
+    /**
+     * Returns the lock that facades calling this object from many threads must hold,
+     * the read lock for queries and the write lock for updates.
+     * The stages of an {@link AdmissionPipeline} hold the read lock while they add,
+     * assign, report and discharge patients, which guard the data they change with
+     * finer locks, so they run in parallel and exclude the other updates.
+     *
+     * @return the lock guarding the application state
+     */
+    ReadWriteLock lock() {
+        return lock;
+    }
+
+    // Variants of the public methods that report "not found" with null or empty
+    // results instead of exceptions, used where failures are routine.
+
+    Professional findProfessional(String id) {
+        return profesionals.get(id);
+    }
+
+    Patient findPatient(String fiscalCode) {
+        patientsLock.readLock().lock();
+        try {
+            return patients.get(fiscalCode);
+        } finally {
+            patientsLock.readLock().unlock();
+        }
+    }
+
+    List<String> findProfessionals(String specialization) {
+        return profesionals.values().stream().filter(p->p.getSpecialization().equals(specialization)).map(Professional::getId).collect(Collectors.toList());
+    }
+
+    List<String> findProfessionalsInService(String specialization, String period) {
+        return profesionals.values().stream().filter(p->p.getSpecialization().equals(specialization) && p.workInPeriod(period)).map(Professional::getId).collect(Collectors.toList());
+    }
+
+    String assign(String fiscalCode, String specialization) {
+        int row = indexOfPatient(fiscalCode);
+        if (row < 0) return null;
+        Patient p = patientAt(row);
+        List<String> inService = findProfessionalsInService(specialization, p.getDateTimeAccepted());
+        if (inService.isEmpty()) return null;
+
+        Professional pr = profesionals.get(inService.get(0));
+        synchronized (recordsLock) {
+            pr.addPatient(p);
+            timeline.assignment(clock.instant().getEpochSecond(), row, pr.getSpecialization());
+            PersistentVector<PatientRecord> records = state.records();
+            state = state.withRecords(records.set(row, records.get(row).withProfessional(pr)));
+        }
+        return pr.getId();
+    }
+
+    Report save(String professionalId, String fiscalCode, String date, String description) {
+        if (!profesionals.containsKey(professionalId)) return null;
+        Report report = new Report(professionalId, fiscalCode, date, description);
+        synchronized (reportsLock) {
+            reportIndex.add(report);
+        }
+        return report;
+    }
+
+    PatientStatus discharge(String fiscalCode, String departmentName) {
+        int row = indexOfPatient(fiscalCode);
+        if (row < 0) return null;
+        Patient p = patientAt(row);
+        synchronized (recordsLock) {
+            Integer maxPatients = departments.get(departmentName);
+            if (maxPatients == null) return null;
+            PersistentVector<PatientRecord> records = state.records();
+            PatientStatus status = state.countHospitalized(departmentName) < maxPatients ? PatientStatus.HOSPITALIZED : PatientStatus.DISCHARGED;
+            p.setStatus(status.toString());
+            timeline.transition(clock.instant().getEpochSecond(), row, records.get(row).status, status, departmentName);
+            state = state.withRecords(records.set(row, records.get(row).withStatus(status, departmentName)));
+            return status;
+        }
+    }
+
+    private int indexOfPatient(String fiscalCode) {
+        patientsLock.readLock().lock();
+        try {
+            return patients.indexOf(fiscalCode);
+        } finally {
+            patientsLock.readLock().unlock();
+        }
+    }
+
+    private Patient patientAt(int row) {
+        patientsLock.readLock().lock();
+        try {
+            return patients.row(row);
+        } finally {
+            patientsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the history of arrivals, assignments and status changes of the patients,
+     * with aggregations such as length of stay and hourly occupancy.
+     *
+     * @return the patient timeline
+     */
+    public PatientTimeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * Returns an immutable and consistent view of the patients and departments.
+     * The snapshot shares its structure with the live data, so taking it is cheap,
+     * and it can be queried by reporting jobs while admissions continue.
+     *
+     * @return the current snapshot
+     */
+    public EmergencySnapshot snapshot() {
+        return state;
     }
 }
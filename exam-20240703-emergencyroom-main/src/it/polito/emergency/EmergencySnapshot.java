@@ -0,0 +1,197 @@
+package it.polito.emergency;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.polito.emergency.EmergencyApp.PatientStatus;
+
+/**
+ * Immutable and consistent view of the patients and departments of an
+ * {@link EmergencyApp} at a point in time.
+ *
+ * A snapshot shares its structure with the application state, so taking one
+ * costs a single reference read. It can be queried from any thread, without
+ * coordination with the threads that keep admitting patients.
+ */
+public class EmergencySnapshot {
+
+    static final EmergencySnapshot EMPTY = new EmergencySnapshot(PersistentVector.empty(), Map.of());
+
+    private final PersistentVector<PatientRecord> records;
+    private final Map<String, Integer> departments;
+
+    EmergencySnapshot(PersistentVector<PatientRecord> records, Map<String, Integer> departments) {
+        this.records = records;
+        this.departments = departments;
+    }
+
+    EmergencySnapshot withRecords(PersistentVector<PatientRecord> records) {
+        return new EmergencySnapshot(records, departments);
+    }
+
+    EmergencySnapshot withDepartments(Map<String, Integer> departments) {
+        return new EmergencySnapshot(records, Map.copyOf(departments));
+    }
+
+    PersistentVector<PatientRecord> records() {
+        return records;
+    }
+
+    /**
+     * Returns the number of patients registered when the snapshot was taken.
+     *
+     * @return the number of patients
+     */
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * Returns the names of the departments.
+     *
+     * @return the list of department names
+     */
+    public List<String> getDepartments() {
+        return new ArrayList<>(departments.keySet());
+    }
+
+    /**
+     * Returns the fiscal codes of the patients accepted on a date,
+     * sorted by surname and name.
+     *
+     * @param date the date in the format "yyyy-MM-dd"
+     * @return the list of fiscal codes
+     */
+    public List<String> getPatientsByDate(String date) {
+        List<Patient> temp = new ArrayList<>();
+        records.forEach(r -> {
+            if (r.patient.getDateTimeAccepted().equals(date)) temp.add(r.patient);
+        });
+        temp.sort(Comparator.comparing(Patient::getSurname).thenComparing(Patient::getName));
+        List<String> res = new ArrayList<>(temp.size());
+        for (Patient p : temp) res.add(p.getFiscalCode());
+        return res;
+    }
+
+    /**
+     * Returns the number of patients still being managed.
+     *
+     * @return the number of admitted patients
+     */
+    public int getNumberOfPatients() {
+        return countStatus(PatientStatus.ADMITTED);
+    }
+
+    /**
+     * Returns the number of patients accepted on a date and still being managed.
+     *
+     * @param date the date in the format "yyyy-MM-dd"
+     * @return the number of admitted patients
+     */
+    public int getNumberOfPatientsByDate(String date) {
+        int[] count = new int[1];
+        records.forEach(r -> {
+            if (r.status == PatientStatus.ADMITTED && r.patient.getDateTimeAccepted().equals(date)) count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Returns the number of patients hospitalized in a department.
+     *
+     * @param departmentName the name of the department
+     * @return the number of hospitalized patients
+     * @throws EmergencyException if the department does not exist
+     */
+    public int getNumberOfPatientsHospitalizedByDepartment(String departmentName) throws EmergencyException {
+        if (!departments.containsKey(departmentName)) throw new EmergencyException();
+        return countHospitalized(departmentName);
+    }
+
+    int countHospitalized(String departmentName) {
+        int[] count = new int[1];
+        records.forEach(r -> {
+            if (r.status == PatientStatus.HOSPITALIZED && departmentName.equals(r.department)) count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Returns the number of hospitalized patients for every department.
+     *
+     * @return a map with the department name as key and the number of patients as value
+     */
+    public Map<String, Integer> getNumberOfPatientsHospitalizedPerDepartment() {
+        Map<String, Integer> res = new HashMap<>();
+        departments.keySet().forEach(d -> res.put(d, 0));
+        records.forEach(r -> {
+            if (r.status == PatientStatus.HOSPITALIZED) res.merge(r.department, 1, Integer::sum);
+        });
+        return res;
+    }
+
+    /**
+     * Returns the number of discharged patients.
+     *
+     * @return the number of discharged patients
+     */
+    public int getNumberOfPatientsDischarged() {
+        return countStatus(PatientStatus.DISCHARGED);
+    }
+
+    /**
+     * Returns the number of discharged patients seen by professionals of a specialization.
+     * A patient seen by more professionals is counted once per professional.
+     *
+     * @param specialization the specialization of the professionals
+     * @return the number of discharged patients
+     */
+    public int getNumberOfPatientsAssignedToProfessionalDischarged(String specialization) {
+        int[] count = new int[1];
+        records.forEach(r -> {
+            if (r.status == PatientStatus.DISCHARGED) {
+                for (String s : r.specializations.values()) if (s.equals(specialization)) count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    private int countStatus(PatientStatus status) {
+        int[] count = new int[1];
+        records.forEach(r -> {
+            if (r.status == status) count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Immutable state of a patient, the patient object is only used for its
+     * fields that never change.
+     */
+    static final class PatientRecord {
+        final Patient patient;
+        final PatientStatus status;
+        final String department;
+        final Map<String, String> specializations; // professional id -> specialization
+
+        PatientRecord(Patient patient, PatientStatus status, String department, Map<String, String> specializations) {
+            this.patient = patient;
+            this.status = status;
+            this.department = department;
+            this.specializations = specializations;
+        }
+
+        PatientRecord withStatus(PatientStatus status, String department) {
+            return new PatientRecord(patient, status, department, specializations);
+        }
+
+        PatientRecord withProfessional(Professional professional) {
+            Map<String, String> temp = new HashMap<>(specializations);
+            temp.put(professional.getId(), professional.getSpecialization());
+            return new PatientRecord(patient, status, department, Map.copyOf(temp));
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package it.polito.emergency;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Map of patients keyed by their fiscal code.
+ *
+ * Codes made of at most 16 digits and upper case letters, like the Italian fiscal
+ * codes, are packed into two longs with 6 bits per character and looked up in an
+ * open addressing table of primitive arrays, with no boxing and no entry objects.
+ * Other codes fall back to a map with string keys.
+ *
+ * Patients are stored in insertion order in a dense array and the rows never
+ * move, so the row of a patient can be used as a compact identifier.
+ * A removed patient leaves an empty row and a tombstone in the table, which
+ * lookups skip; the tombstones are dropped when the table is rebuilt.
+ */
+class PatientRegistry extends AbstractMap<String, Patient> {
+
+    private static final int MAX_PACKED_LENGTH = 16;
+    private static final int CHARS_PER_LONG = 8;
+    private static final int TOMBSTONE = -1;
+
+    private long[] highKeys = new long[16];
+    private long[] lowKeys = new long[16];
+    private int[] slots = new int[16]; // row + 1, 0 when the slot is empty
+    private int packedCount;
+    private int tombstones;
+    private final Map<String, Integer> fallback = new HashMap<>();
+
+    private Patient[] rows = new Patient[16];
+    private int rowCount; // rows used, including the removed ones
+    private int size;
+
+    /**
+     * Returns the row of the patient with the given fiscal code.
+     *
+     * @param fiscalCode the fiscal code
+     * @return the row of the patient or -1 if not present
+     */
+    int indexOf(String fiscalCode) {
+        if (!packable(fiscalCode)) {
+            Integer row = fallback.get(fiscalCode);
+            return row == null ? -1 : row;
+        }
+        long high = pack(fiscalCode, 0), low = pack(fiscalCode, CHARS_PER_LONG);
+        int mask = slots.length - 1;
+        for (int i = hash(high, low) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (slots[i] != TOMBSTONE && highKeys[i] == high && lowKeys[i] == low) return slots[i] - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the patient stored in a row.
+     *
+     * @param row the row returned by {@link #indexOf(String)}
+     * @return the patient, or null if it was removed
+     */
+    Patient row(int row) {
+        return rows[row];
+    }
+
+    @Override
+    public Patient get(Object key) {
+        if (!(key instanceof String)) return null;
+        int row = indexOf((String) key);
+        return row < 0 ? null : rows[row];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public Patient put(String fiscalCode, Patient patient) {
+        int row = indexOf(fiscalCode);
+        if (row >= 0) {
+            Patient old = rows[row];
+            rows[row] = patient;
+            return old;
+        }
+        insert(fiscalCode, patient);
+        return null;
+    }
+
+    @Override
+    public Patient computeIfAbsent(String fiscalCode, Function<? super String, ? extends Patient> mappingFunction) {
+        int row = indexOf(fiscalCode);
+        if (row >= 0) return rows[row];
+        Patient patient = mappingFunction.apply(fiscalCode);
+        if (patient != null) insert(fiscalCode, patient);
+        return patient;
+    }
+
+    @Override
+    public Patient remove(Object key) {
+        if (!(key instanceof String)) return null;
+        int row = indexOf((String) key);
+        return row < 0 ? null : removeRow(row);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(slots, 0);
+        Arrays.fill(rows, 0, rowCount, null);
+        fallback.clear();
+        packedCount = tombstones = rowCount = size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the patients in insertion order.
+     */
+    @Override
+    public Collection<Patient> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Patient> iterator() {
+                return new RowIterator<>() {
+                    @Override
+                    Patient value(Patient p) {
+                        return p;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, Patient>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Patient>> iterator() {
+                return new RowIterator<>() {
+                    @Override
+                    Entry<String, Patient> value(Patient p) {
+                        return new SimpleImmutableEntry<>(p.getFiscalCode(), p);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Iterator over the rows in insertion order, skipping the removed ones.
+     */
+    private abstract class RowIterator<T> implements Iterator<T> {
+        private int next = skip(0);
+        private int last = -1;
+
+        abstract T value(Patient p);
+
+        private int skip(int row) {
+            while (row < rowCount && rows[row] == null) row++;
+            return row;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < rowCount;
+        }
+
+        @Override
+        public T next() {
+            if (next >= rowCount) throw new NoSuchElementException();
+            last = next;
+            next = skip(next + 1);
+            return value(rows[last]);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) throw new IllegalStateException();
+            removeRow(last);
+            last = -1;
+        }
+    }
+
+    private void insert(String fiscalCode, Patient patient) {
+        if (rowCount == rows.length) rows = Arrays.copyOf(rows, rowCount * 2);
+        int row = rowCount++;
+        rows[row] = patient;
+        size++;
+        if (!packable(fiscalCode)) {
+            fallback.put(fiscalCode, row);
+            return;
+        }
+        if (4 * (packedCount + tombstones + 1) > 3 * slots.length) {
+            // grows only if the live codes need it, otherwise drops the tombstones
+            rehash(4 * (packedCount + 1) > 3 * slots.length / 2 ? slots.length * 2 : slots.length);
+        }
+        place(pack(fiscalCode, 0), pack(fiscalCode, CHARS_PER_LONG), row + 1);
+        packedCount++;
+    }
+
+    private Patient removeRow(int row) {
+        Patient patient = rows[row];
+        String fiscalCode = patient.getFiscalCode();
+        if (packable(fiscalCode)) {
+            long high = pack(fiscalCode, 0), low = pack(fiscalCode, CHARS_PER_LONG);
+            int mask = slots.length - 1;
+            int i = hash(high, low) & mask;
+            while (slots[i] != row + 1) i = (i + 1) & mask;
+            slots[i] = TOMBSTONE;
+            packedCount--;
+            tombstones++;
+        } else {
+            fallback.remove(fiscalCode);
+        }
+        rows[row] = null;
+        size--;
+        return patient;
+    }
+
+    private void place(long high, long low, int slot) {
+        int mask = slots.length - 1;
+        int i = hash(high, low) & mask;
+        while (slots[i] != 0) i = (i + 1) & mask;
+        highKeys[i] = high;
+        lowKeys[i] = low;
+        slots[i] = slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldHigh = highKeys, oldLow = lowKeys;
+        int[] oldSlots = slots;
+        highKeys = new long[capacity];
+        lowKeys = new long[capacity];
+        slots = new int[capacity];
+        tombstones = 0;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] > 0) place(oldHigh[i], oldLow[i], oldSlots[i]);
+        }
+    }
+
+    private static boolean packable(String code) {
+        if (code == null || code.isEmpty() || code.length() > MAX_PACKED_LENGTH) return false;
+        for (int i = 0; i < code.length(); i++) {
+            if (symbol(code.charAt(i)) < 0) return false;
+        }
+        return true;
+    }
+
+    // 0 is reserved for the padding of codes shorter than 16 characters
+    private static int symbol(char c) {
+        if (c >= '0' && c <= '9') return c - '0' + 1;
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 11;
+        return -1;
+    }
+
+    private static long pack(String code, int from) {
+        long key = 0;
+        int to = Math.min(code.length(), from + CHARS_PER_LONG);
+        for (int i = from; i < to; i++) {
+            key |= (long) symbol(code.charAt(i)) << (6 * (i - from));
+        }
+        return key;
+    }
+
+    private static int hash(long high, long low) {
+        long h = (high * 0x9E3779B97F4A7C15L) ^ (low * 0xC2B2AE3D27D4EB4FL);
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,181 @@
+package it.polito.emergency;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.polito.emergency.EmergencyApp.PatientStatus;
+
+/**
+ * Time-stamped history of the patients of an {@link EmergencyApp}.
+ *
+ * Every arrival, assignment to a professional and status change is appended as
+ * an event to a columnar store of primitive arrays: epoch seconds, patient row,
+ * kind, status before and after, and the code of the department (or of the
+ * specialization, for assignments). The aggregations scan these columns with
+ * plain loops, without creating objects per event.
+ *
+ * The timeline is thread-safe: the events are appended and the aggregations
+ * scan them holding the lock of this object, so it can be queried while the
+ * stages of an {@link AdmissionPipeline} record events in parallel. An
+ * aggregation sees the events recorded before it started.
+ */
+public class PatientTimeline {
+
+    private static final byte ARRIVAL = 0;
+    private static final byte ASSIGNMENT = 1;
+    private static final byte TRANSITION = 2;
+
+    private static final byte NO_STATUS = -1;
+
+    private int size;
+    private long[] seconds = new long[64];
+    private int[] rows = new int[64];
+    private byte[] kinds = new byte[64];
+    private byte[] from = new byte[64];
+    private byte[] to = new byte[64];
+    private int[] codes = new int[64];
+
+    private long[] arrivalByRow = new long[64];
+    private final List<String> departments = new ArrayList<>();
+    private final Map<String, Integer> departmentCodes = new HashMap<>();
+    private final List<String> specializations = new ArrayList<>();
+    private final Map<String, Integer> specializationCodes = new HashMap<>();
+
+    synchronized void arrival(long time, int row) {
+        if (row >= arrivalByRow.length) arrivalByRow = Arrays.copyOf(arrivalByRow, Math.max(row + 1, arrivalByRow.length * 2));
+        arrivalByRow[row] = time;
+        append(time, row, ARRIVAL, NO_STATUS, (byte) PatientStatus.ADMITTED.ordinal(), -1);
+    }
+
+    synchronized void assignment(long time, int row, String specialization) {
+        byte admitted = (byte) PatientStatus.ADMITTED.ordinal();
+        append(time, row, ASSIGNMENT, admitted, admitted, code(specialization, specializations, specializationCodes));
+    }
+
+    synchronized void transition(long time, int row, PatientStatus before, PatientStatus after, String department) {
+        append(time, row, TRANSITION, (byte) before.ordinal(), (byte) after.ordinal(), code(department, departments, departmentCodes));
+    }
+
+    /**
+     * Returns the number of recorded events.
+     *
+     * @return the number of events
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the length of stay in the emergency room, from the arrival to the
+     * discharge or hospitalization, at a given percentile for every department.
+     *
+     * @param percentile the percentile, between 0 (excluded) and 100
+     * @return a map with the department as key and the length of stay in seconds as value
+     */
+    public synchronized Map<String, Long> getLengthOfStayPercentile(double percentile) {
+        int[] counts = new int[departments.size()];
+        byte admitted = (byte) PatientStatus.ADMITTED.ordinal();
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == TRANSITION && from[i] == admitted) counts[codes[i]]++;
+        }
+        long[][] stays = new long[counts.length][];
+        for (int d = 0; d < counts.length; d++) stays[d] = new long[counts[d]];
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == TRANSITION && from[i] == admitted) {
+                int d = codes[i];
+                stays[d][counts[d]++] = seconds[i] - arrivalByRow[rows[i]];
+            }
+        }
+        Map<String, Long> res = new HashMap<>();
+        for (int d = 0; d < stays.length; d++) {
+            if (stays[d].length > 0) res.put(departments.get(d), percentile(stays[d], percentile));
+        }
+        return res;
+    }
+
+    /**
+     * Returns the time from the arrival to each assignment to a professional of a
+     * specialization, at a given percentile.
+     *
+     * @param specialization the specialization of the professionals
+     * @param percentile the percentile, between 0 (excluded) and 100
+     * @return the time in seconds, or -1 if no patient was assigned to the specialization
+     */
+    public synchronized long getTimeToSpecialistPercentile(String specialization, double percentile) {
+        Integer code = specializationCodes.get(specialization);
+        if (code == null) return -1;
+        long[] waits = new long[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] == ASSIGNMENT && codes[i] == code) waits[n++] = seconds[i] - arrivalByRow[rows[i]];
+        }
+        return n == 0 ? -1 : percentile(Arrays.copyOf(waits, n), percentile);
+    }
+
+    /**
+     * Returns the number of patients in the emergency room with status
+     * {@code ADMITTED} at the end of each hour of a period.
+     *
+     * @param start the start of the first hour
+     * @param hours the number of hours
+     * @return an array with the occupancy of each hour
+     */
+    public synchronized int[] getHourlyOccupancy(Instant start, int hours) {
+        long begin = start.getEpochSecond();
+        int[] delta = new int[hours];
+        int base = 0;
+        byte admitted = (byte) PatientStatus.ADMITTED.ordinal();
+        for (int i = 0; i < size; i++) {
+            int change = to[i] == admitted && from[i] != admitted ? 1 : from[i] == admitted && to[i] != admitted ? -1 : 0;
+            if (change == 0) continue;
+            long hour = Math.floorDiv(seconds[i] - begin, 3600);
+            if (hour < 0) base += change;
+            else if (hour < hours) delta[(int) hour] += change;
+        }
+        int[] res = new int[hours];
+        int current = base;
+        for (int h = 0; h < hours; h++) {
+            current += delta[h];
+            res[h] = current;
+        }
+        return res;
+    }
+
+    private void append(long time, int row, byte kind, byte before, byte after, int code) {
+        if (size == seconds.length) {
+            int capacity = size * 2;
+            seconds = Arrays.copyOf(seconds, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+        }
+        seconds[size] = time;
+        rows[size] = row;
+        kinds[size] = kind;
+        from[size] = before;
+        to[size] = after;
+        codes[size] = code;
+        size++;
+    }
+
+    private static int code(String value, List<String> values, Map<String, Integer> codes) {
+        return codes.computeIfAbsent(value, k -> {
+            values.add(k);
+            return values.size() - 1;
+        });
+    }
+
+    // nearest-rank percentile, sorts the array
+    private static long percentile(long[] values, double percentile) {
+        Arrays.sort(values);
+        int rank = (int) Math.ceil(percentile / 100 * values.length);
+        return values[Math.min(values.length, Math.max(rank, 1)) - 1];
+    }
+}
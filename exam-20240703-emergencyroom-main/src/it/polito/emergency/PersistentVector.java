@@ -0,0 +1,147 @@
+package it.polito.emergency;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Immutable vector with structural sharing.
+ *
+ * Elements are stored in a 32-way trie plus a tail of up to 32 elements.
+ * Updates copy only the path from the root to the modified leaf, so an old
+ * version stays valid and shares all the other nodes with the new one.
+ *
+ * @param <T> the type of the elements
+ */
+final class PersistentVector<T> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+        return (T) leafFor(i)[i & MASK];
+    }
+
+    /**
+     * Returns a vector with the value appended.
+     *
+     * @param value the value to append
+     * @return the new version
+     */
+    PersistentVector<T> append(T value) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = value;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] { value });
+    }
+
+    /**
+     * Returns a vector with the value at the given index replaced.
+     *
+     * @param i the index
+     * @param value the new value
+     * @return the new version
+     */
+    PersistentVector<T> set(int i, T value) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+        if (i >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[i & MASK] = value;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, set(shift, root, i, value), tail);
+    }
+
+    /**
+     * Visits the elements in index order.
+     *
+     * @param action the action to perform on each element
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < size; i += WIDTH) {
+            Object[] leaf = leafFor(i);
+            int n = Math.min(WIDTH, size - i);
+            for (int j = 0; j < n; j++) action.accept((T) leaf[j]);
+        }
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int i) {
+        if (i >= tailOffset()) return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(i >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int sub = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        if (level == BITS) {
+            copy[sub] = tailNode;
+        } else {
+            Object[] child = (Object[]) parent[sub];
+            copy[sub] = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        }
+        return copy;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) return node;
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+
+    private static Object[] set(int level, Object[] node, int i, Object value) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[i & MASK] = value;
+        } else {
+            int sub = (i >>> level) & MASK;
+            copy[sub] = set(level - BITS, (Object[]) node[sub], i, value);
+        }
+        return copy;
+    }
+}
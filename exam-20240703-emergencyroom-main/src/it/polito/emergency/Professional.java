@@ -1,13 +1,12 @@
 package it.polito.emergency;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public class Professional {
 
     private String id, name, surname, specialization, workingHours;
     private String beginningPeriod, endingPeriod;
-    private Map<String, Patient> patients = new HashMap<>();
+    private PatientRegistry patients = new PatientRegistry();
     public Map<String, Patient> getPatients(){return patients;}
 
     public Professional(String id, String name, String surname, String specialization, String period) {
@@ -0,0 +1,403 @@
+package it.polito.emergency;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental inverted index over the descriptions of the saved reports.
+ *
+ * Every report gets a dense document id in the order it is saved. For each term
+ * the index keeps a posting list with the document ids, the term frequency and
+ * the term positions, all delta encoded as variable length integers. Every
+ * {@value #SKIP_INTERVAL} documents a skip entry is recorded so that
+ * intersections can jump over whole blocks without decoding them.
+ */
+class ReportIndex {
+
+    static final int SKIP_INTERVAL = 64;
+    static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final List<Report> reports = new ArrayList<>();
+    private final Map<String, Integer> professionalCodes = new HashMap<>();
+    private int[] professionalColumn = new int[16];
+    private int[] dateColumn = new int[16];
+
+    /**
+     * Adds a report to the index, its document id is the number of reports
+     * indexed before it.
+     *
+     * @param report the report to index
+     */
+    void add(Report report) {
+        int doc = reports.size();
+        if (doc == dateColumn.length) {
+            dateColumn = Arrays.copyOf(dateColumn, doc * 2);
+            professionalColumn = Arrays.copyOf(professionalColumn, doc * 2);
+        }
+        reports.add(report);
+        professionalColumn[doc] = professionalCodes.computeIfAbsent(report.getProfessionalId(), k -> professionalCodes.size());
+        dateColumn[doc] = dateKey(report.getDate());
+
+        Map<String, Positions> positions = new LinkedHashMap<>();
+        List<String> tokens = tokenize(report.getDescription());
+        for (int i = 0; i < tokens.size(); i++) {
+            positions.computeIfAbsent(tokens.get(i), k -> new Positions()).add(i);
+        }
+        positions.forEach((term, pos) -> postings.computeIfAbsent(term, k -> new PostingList()).add(doc, pos.values, pos.size));
+    }
+
+    /**
+     * Searches the reports matching a query and the optional filters.
+     *
+     * The query is a sequence of words and quoted phrases that must all be present,
+     * the keyword {@code OR} separates alternative groups. A blank query matches
+     * every report. Filters that are {@code null} are not applied, dates are
+     * inclusive and in the format "yyyy-MM-dd".
+     *
+     * @param query the query text
+     * @param professionalId the professional that wrote the report or {@code null}
+     * @param fromDate the first date of the reports or {@code null}
+     * @param toDate the last date of the reports or {@code null}
+     * @return the matching reports in the order they were saved
+     */
+    List<Report> search(String query, String professionalId, String fromDate, String toDate) {
+        int professional = -1;
+        if (professionalId != null) {
+            Integer code = professionalCodes.get(professionalId);
+            if (code == null) return Collections.emptyList();
+            professional = code;
+        }
+        Filter filter = new Filter(professional,
+            fromDate == null ? Integer.MIN_VALUE : dateKey(fromDate),
+            toDate == null ? Integer.MAX_VALUE : dateKey(toDate));
+
+        List<Clause> clauses = parse(query);
+        List<Report> result = new ArrayList<>();
+        if (clauses.isEmpty()) {
+            for (int doc = 0; doc < reports.size(); doc++) {
+                if (filter.accept(doc)) result.add(reports.get(doc));
+            }
+            return result;
+        }
+        if (clauses.size() == 1) {
+            clauses.get(0).collect(filter, doc -> result.add(reports.get(doc)));
+            return result;
+        }
+        BitSet matches = new BitSet(reports.size());
+        for (Clause c : clauses) c.collect(filter, matches::set);
+        for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1)) {
+            result.add(reports.get(doc));
+        }
+        return result;
+    }
+
+    /**
+     * Splits a text into lower case terms, dropping punctuation and accents.
+     *
+     * @param text the text to split
+     * @return the list of terms in order of appearance
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                term.append(Character.toLowerCase(c));
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && term.length() > 0) {
+                tokens.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        if (term.length() > 0) tokens.add(term.toString());
+        return tokens;
+    }
+
+    static int dateKey(String date) {
+        if (date == null || date.length() < 10) return 0;
+        try {
+            return Integer.parseInt(date.substring(0, 4)) * 10000
+                + Integer.parseInt(date.substring(5, 7)) * 100
+                + Integer.parseInt(date.substring(8, 10));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        if (query == null) return clauses;
+        Clause current = new Clause();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) end = query.length();
+                current.addPhrase(tokenize(query.substring(i + 1, end)));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"') end++;
+                String word = query.substring(i, end);
+                if (word.equals("OR")) {
+                    if (!current.isEmpty()) clauses.add(current);
+                    current = new Clause();
+                } else {
+                    current.addPhrase(tokenize(word));
+                }
+                i = end;
+            }
+        }
+        if (!current.isEmpty()) clauses.add(current);
+        return clauses;
+    }
+
+    private interface DocConsumer {
+        void accept(int doc);
+    }
+
+    private final class Filter {
+        private final int professional, from, to;
+
+        Filter(int professional, int from, int to) {
+            this.professional = professional;
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean accept(int doc) {
+            return (professional < 0 || professionalColumn[doc] == professional)
+                && dateColumn[doc] >= from && dateColumn[doc] <= to;
+        }
+    }
+
+    /**
+     * A group of terms and phrases that must all occur in the same report.
+     */
+    private final class Clause {
+        private final List<String> terms = new ArrayList<>();
+        private final List<List<String>> phrases = new ArrayList<>();
+
+        void addPhrase(List<String> phrase) {
+            if (phrase.isEmpty()) return;
+            for (String t : phrase) if (!terms.contains(t)) terms.add(t);
+            if (phrase.size() > 1) phrases.add(phrase);
+        }
+
+        boolean isEmpty() {
+            return terms.isEmpty();
+        }
+
+        void collect(Filter filter, DocConsumer consumer) {
+            Cursor[] cursors = new Cursor[terms.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                PostingList list = postings.get(terms.get(i));
+                if (list == null) return;
+                cursors[i] = new Cursor(list);
+            }
+            Cursor[] byTerm = cursors.clone();
+            Arrays.sort(cursors, (a, b) -> Integer.compare(a.list.docCount, b.list.docCount));
+
+            int doc = cursors[0].next();
+            while (doc != NO_MORE_DOCS) {
+                int candidate = doc;
+                for (int i = 1; i < cursors.length && candidate == doc; i++) {
+                    candidate = cursors[i].advance(doc);
+                }
+                if (candidate != doc) {
+                    doc = cursors[0].advance(candidate);
+                    continue;
+                }
+                if (filter.accept(doc) && phrasesMatch(byTerm)) consumer.accept(doc);
+                doc = cursors[0].next();
+            }
+        }
+
+        private boolean phrasesMatch(Cursor[] byTerm) {
+            for (List<String> phrase : phrases) {
+                int[][] positions = new int[phrase.size()][];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = byTerm[terms.indexOf(phrase.get(i))].positions();
+                }
+                if (!phraseAt(positions)) return false;
+            }
+            return true;
+        }
+
+        private boolean phraseAt(int[][] positions) {
+            for (int start : positions[0]) {
+                boolean found = true;
+                for (int i = 1; i < positions.length && found; i++) {
+                    found = Arrays.binarySearch(positions[i], start + i) >= 0;
+                }
+                if (found) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Growable list of the positions of a term in the report being indexed.
+     */
+    private static final class Positions {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int position) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = position;
+        }
+    }
+
+    /**
+     * Compressed posting list of a single term.
+     *
+     * Each document is stored as the delta from the previous document id, the
+     * number of occurrences and the deltas between the occurrence positions.
+     */
+    static final class PostingList {
+        private byte[] data = new byte[8];
+        private int length;
+        private int docCount;
+        private int lastDoc = -1;
+        private int[] skipDocs = new int[0];
+        private int[] skipOffsets = new int[0];
+        private int skipCount;
+
+        void add(int doc, int[] positions, int count) {
+            if (docCount > 0 && docCount % SKIP_INTERVAL == 0) {
+                if (skipCount == skipDocs.length) {
+                    int capacity = Math.max(4, skipCount * 2);
+                    skipDocs = Arrays.copyOf(skipDocs, capacity);
+                    skipOffsets = Arrays.copyOf(skipOffsets, capacity);
+                }
+                skipDocs[skipCount] = lastDoc;
+                skipOffsets[skipCount] = length;
+                skipCount++;
+            }
+            writeVarint(doc - lastDoc);
+            writeVarint(count);
+            int last = 0;
+            for (int i = 0; i < count; i++) {
+                writeVarint(positions[i] - last);
+                last = positions[i];
+            }
+            lastDoc = doc;
+            docCount++;
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Forward only iterator over a posting list.
+     */
+    static final class Cursor {
+        private final PostingList list;
+        private int offset;
+        private int read;
+        private int doc = -1;
+        private int freq;
+        private int positionsOffset;
+
+        Cursor(PostingList list) {
+            this.list = list;
+        }
+
+        /**
+         * Moves to the next document.
+         *
+         * @return the document id or {@link ReportIndex#NO_MORE_DOCS}
+         */
+        int next() {
+            if (doc == NO_MORE_DOCS) return doc;
+            for (int i = 0; i < freq; i++) readVarint();
+            if (read == list.docCount) return doc = NO_MORE_DOCS;
+            doc += readVarint();
+            freq = readVarint();
+            positionsOffset = offset;
+            read++;
+            return doc;
+        }
+
+        /**
+         * Moves to the first document greater or equal to the target.
+         *
+         * @param target the document id to reach
+         * @return the document id or {@link ReportIndex#NO_MORE_DOCS}
+         */
+        int advance(int target) {
+            if (doc >= target) return doc;
+            // skip entry k holds the last document before block k + 1
+            int low = read / SKIP_INTERVAL, high = list.skipCount - 1, k = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (list.skipDocs[mid] < target) {
+                    k = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (k >= 0) {
+                offset = list.skipOffsets[k];
+                doc = list.skipDocs[k];
+                read = (k + 1) * SKIP_INTERVAL;
+                freq = 0;
+            }
+            while (doc < target) next();
+            return doc;
+        }
+
+        /**
+         * Decodes the positions of the current document.
+         *
+         * @return the positions in increasing order
+         */
+        int[] positions() {
+            int saved = offset;
+            offset = positionsOffset;
+            int[] res = new int[freq];
+            int last = 0;
+            for (int i = 0; i < freq; i++) {
+                last += readVarint();
+                res[i] = last;
+            }
+            offset = saved;
+            return res;
+        }
+
+        private int readVarint() {
+            byte[] data = list.data;
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
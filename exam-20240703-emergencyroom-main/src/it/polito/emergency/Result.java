@@ -0,0 +1,73 @@
+package it.polito.emergency;
+
+/**
+ * Outcome of an operation of the {@link AsyncEmergencyApp}: either a value
+ * or the description of the error that prevented the operation.
+ *
+ * @param <T> the type of the value
+ */
+public class Result<T> {
+
+    private static final Result<Void> DONE = new Result<>(null, null);
+
+    private final T value;
+    private final String error;
+
+    private Result(T value, String error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * Creates a successful result.
+     *
+     * @param value the value
+     * @return the result
+     */
+    public static <T> Result<T> ok(T value) {
+        return new Result<>(value, null);
+    }
+
+    /**
+     * Returns the successful result of an operation without a value.
+     *
+     * @return the result
+     */
+    public static Result<Void> done() {
+        return DONE;
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param error the description of the error
+     * @return the result
+     */
+    public static <T> Result<T> failure(String error) {
+        return new Result<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Returns the value of a successful result.
+     *
+     * @return the value
+     * @throws IllegalStateException if the operation failed
+     */
+    public T getValue() {
+        if (error != null) throw new IllegalStateException(error);
+        return value;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return error == null ? "ok(" + value + ")" : "failure(" + error + ")";
+    }
+}
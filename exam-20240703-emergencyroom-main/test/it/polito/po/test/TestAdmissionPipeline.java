@@ -0,0 +1,179 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import it.polito.emergency.AdmissionPipeline;
+import it.polito.emergency.AdmissionPipeline.Stage;
+import it.polito.emergency.EmergencyApp;
+import it.polito.emergency.EmergencyApp.PatientStatus;
+import it.polito.emergency.Patient;
+import it.polito.emergency.PatientTimeline;
+import it.polito.emergency.Result;
+
+public class TestAdmissionPipeline {
+
+    private static <T> Result<T> submitUntilAccepted(Supplier<CompletableFuture<Result<T>>> submit) {
+        while (true) {
+            Result<T> r = submit.get().join();
+            if (r.isSuccess() || !r.getError().endsWith("is full")) return r;
+            Thread.yield();
+        }
+    }
+
+    // retries while rejected, without waiting for the accepted request
+    private static <T> CompletableFuture<Result<T>> queue(Supplier<CompletableFuture<Result<T>>> submit) {
+        while (true) {
+            CompletableFuture<Result<T>> f = submit.get();
+            if (!f.isDone() || f.join().isSuccess() || !f.join().getError().endsWith("is full")) return f;
+            Thread.yield();
+        }
+    }
+
+    @Test
+    public void testStages() throws Exception {
+        EmergencyApp app = new EmergencyApp();
+        app.addProfessional("1", "John", "Doe", "Cardiology", "2024-01-01 to 2024-12-31");
+        app.addDepartment("Cardiology", 100);
+
+        try (AdmissionPipeline pipeline = new AdmissionPipeline(app, 16, 2)) {
+            List<CompletableFuture<Result<Patient>>> admissions = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                admissions.add(pipeline.addPatient("P" + i, "Name", "Surname", "1990-01-01", "Checkup", "2024-06-01"));
+            }
+            int accepted = 0;
+            for (CompletableFuture<Result<Patient>> f : admissions) {
+                if (f.join().isSuccess()) accepted++;
+            }
+            assertEquals(500, accepted + pipeline.getRejected(Stage.ADMISSION));
+            assertEquals(accepted, pipeline.getProcessed(Stage.ADMISSION));
+            assertEquals(accepted, app.getNumberOfPatients());
+
+            for (int i = 0; i < 200; i++) {
+                String code = "P" + i;
+                submitUntilAccepted(() -> pipeline.addPatient(code, "Name", "Surname", "1990-01-01", "Checkup", "2024-06-01"));
+                assertEquals("1", submitUntilAccepted(() -> pipeline.assignPatientToProfessional(code, "Cardiology")).getValue());
+                assertTrue(submitUntilAccepted(() -> pipeline.saveReport("1", code, "2024-06-01", "ok")).isSuccess());
+                assertTrue(submitUntilAccepted(() -> pipeline.dischargeOrHospitalize(code, "Cardiology")).isSuccess());
+            }
+            assertFalse(submitUntilAccepted(() -> pipeline.dischargeOrHospitalize("P0", "Surgery")).isSuccess());
+            assertEquals(0, pipeline.getQueueDepth(Stage.DISCHARGE));
+            assertEquals(201, pipeline.getProcessed(Stage.DISCHARGE));
+            assertTrue(pipeline.getThroughput(Stage.REPORT) > 0);
+        }
+        assertEquals(100, app.getNumberOfPatientsHospitalizedByDepartment("Cardiology"));
+        assertEquals(100, app.getNumberOfPatientsDischarged());
+    }
+
+    @Test
+    public void testTreatGoesThroughAllStages() throws Exception {
+        EmergencyApp app = new EmergencyApp();
+        app.addProfessional("1", "John", "Doe", "Cardiology", "2024-01-01 to 2024-12-31");
+        app.addDepartment("Cardiology", 10);
+
+        List<CompletableFuture<Result<PatientStatus>>> treated = new ArrayList<>();
+        try (AdmissionPipeline pipeline = new AdmissionPipeline(app, 4, 2)) {
+            for (int i = 0; i < 50; i++) {
+                String code = "P" + i;
+                treated.add(queue(() -> pipeline.treat(code, "Name", "Surname", "1990-01-01", "Checkup", "2024-06-01",
+                    "Cardiology", "chest pain", "Cardiology")));
+            }
+            // stops at the assignment
+            assertFalse(queue(() -> pipeline.treat("X", "Name", "Surname", "1990-01-01", "Checkup", "2024-06-01", "Surgery", "none", "Cardiology"))
+                .get(5, TimeUnit.SECONDS).isSuccess());
+            for (CompletableFuture<Result<PatientStatus>> f : treated) assertTrue(f.get(5, TimeUnit.SECONDS).isSuccess());
+            assertEquals(51, pipeline.getProcessed(Stage.ADMISSION));
+            assertEquals(51, pipeline.getProcessed(Stage.ASSIGNMENT));
+            assertEquals(50, pipeline.getProcessed(Stage.REPORT));
+            assertEquals(50, pipeline.getProcessed(Stage.DISCHARGE));
+        }
+        assertEquals(50, app.searchReports("chest pain", "1", null, null).size());
+        assertEquals(10, app.getNumberOfPatientsHospitalizedByDepartment("Cardiology"));
+        assertEquals(40, app.getNumberOfPatientsDischarged());
+    }
+
+    @Test
+    public void testSubmitRacingClose() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            EmergencyApp app = new EmergencyApp();
+            app.addDepartment("Cardiology", 1000);
+            AdmissionPipeline pipeline = new AdmissionPipeline(app, 8, 1);
+            List<List<CompletableFuture<?>>> submitted = new ArrayList<>();
+            List<Thread> callers = new ArrayList<>();
+            CountDownLatch started = new CountDownLatch(4);
+            for (int t = 0; t < 4; t++) {
+                List<CompletableFuture<?>> mine = new ArrayList<>();
+                submitted.add(mine);
+                int id = t;
+                callers.add(new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < 2000; i++) {
+                        String code = id + "-" + i;
+                        mine.add(pipeline.addPatient(code, "Name", "Surname", "1990-01-01", "Checkup", "2024-06-01"));
+                        mine.add(pipeline.dischargeOrHospitalize(code, "Cardiology"));
+                    }
+                }));
+            }
+            for (Thread t : callers) t.start();
+            started.await();
+            pipeline.close();
+            for (Thread t : callers) t.join();
+            // every future is completed, by a worker or as rejected or closed
+            for (List<CompletableFuture<?>> mine : submitted) {
+                for (CompletableFuture<?> f : mine) assertTrue(f.isDone());
+            }
+        }
+    }
+
+    @Test
+    public void testTimelineReadWhileWriting() throws Exception {
+        final int patients = 3000;
+        EmergencyApp app = new EmergencyApp();
+        app.addProfessional("1", "John", "Doe", "Cardiology", "2024-01-01 to 2024-12-31");
+        app.addDepartment("Cardiology", 100);
+        PatientTimeline timeline = app.getTimeline();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    int size = timeline.size();
+                    assertTrue(size >= 0 && size <= 3 * patients);
+                    timeline.getLengthOfStayPercentile(50);
+                    timeline.getTimeToSpecialistPercentile("Cardiology", 90);
+                    timeline.getHourlyOccupancy(Instant.now().minusSeconds(3600), 2);
+                }
+            } catch (Throwable e) {
+                errors.add(e);
+            }
+        });
+        reader.start();
+        try (AdmissionPipeline pipeline = new AdmissionPipeline(app, 64, 4)) {
+            List<CompletableFuture<Result<PatientStatus>>> treated = new ArrayList<>();
+            for (int i = 0; i < patients; i++) {
+                String code = "P" + i;
+                treated.add(queue(() -> pipeline.treat(code, "Name", "Surname", "1990-01-01", "Checkup", "2024-06-01",
+                    "Cardiology", "ok", "Cardiology")));
+            }
+            for (CompletableFuture<Result<PatientStatus>> f : treated) assertTrue(f.get(30, TimeUnit.SECONDS).isSuccess());
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+        assertEquals(Collections.emptyList(), errors);
+        // an arrival, an assignment and a transition per patient
+        assertEquals(3 * patients, timeline.size());
+        assertEquals(0, timeline.getHourlyOccupancy(Instant.now(), 1)[0]);
+    }
+}
@@ -0,0 +1,117 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.polito.emergency.AsyncEmergencyApp;
+import it.polito.emergency.EmergencyApp;
+import it.polito.emergency.EmergencyApp.PatientStatus;
+import it.polito.emergency.Result;
+
+public class TestAsyncApp {
+
+    private AtomicInteger executed = new AtomicInteger();
+    private ExecutorService executor;
+    private AsyncEmergencyApp async;
+
+    @Before
+    public void setUp() {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                executed.incrementAndGet();
+            }
+        };
+        EmergencyApp app = new EmergencyApp();
+        app.addProfessional("1", "John", "Doe", "Cardiology", "2024-01-01 to 2024-12-31");
+        app.addDepartment("Cardiology", 1);
+        async = new AsyncEmergencyApp(app, executor);
+    }
+
+    @After
+    public void tearDown() {
+        async.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testResultsInsteadOfExceptions() throws Exception {
+        assertEquals("Doe", async.getProfessionalById("1").join().getValue().getSurname());
+        assertFalse(async.getProfessionalById("2").join().isSuccess());
+        assertFalse(async.getProfessionals("Surgery").join().isSuccess());
+        assertFalse(async.assignPatientToProfessional("AAA", "Cardiology").join().isSuccess());
+        assertFalse(async.saveReport("9", "AAA", "2024-06-01", "none").join().isSuccess());
+
+        async.addPatient("AAA", "Alice", "Wonderland", "1990-01-01", "Checkup", "2024-06-01").join();
+        assertEquals("1", async.assignPatientToProfessional("AAA", "Cardiology").join().getValue());
+        assertEquals(PatientStatus.HOSPITALIZED, async.dischargeOrHospitalize("AAA", "Cardiology").join().getValue());
+        assertEquals(1, async.snapshot().getNumberOfPatientsHospitalizedByDepartment("Cardiology"));
+    }
+
+    @Test
+    public void testNullArguments() throws Exception {
+        assertFalse(async.getProfessionals(null).get(5, TimeUnit.SECONDS).isSuccess());
+        assertFalse(async.getProfessionalsInService("Cardiology", null).get(5, TimeUnit.SECONDS).isSuccess());
+        assertFalse(async.getProfessionalsInService(null, "2024-06-01 to 2024-06-30").get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(List.of(), async.getPatientsByDate(null).get(5, TimeUnit.SECONDS).getValue());
+    }
+
+    @Test
+    public void testIdenticalReadsAreCoalesced() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CompletableFuture<Result<List<String>>> f1 = async.getProfessionalsInService("Cardiology", "2024-06-01 to 2024-06-30");
+        CompletableFuture<Result<List<String>>> f2 = async.getProfessionalsInService("Cardiology", "2024-06-01 to 2024-06-30");
+        CompletableFuture<Result<List<String>>> f3 = async.getProfessionalsInService("Cardiology", "2023-06-01 to 2023-06-30");
+        gate.countDown();
+
+        assertEquals(List.of("1"), f1.get(5, TimeUnit.SECONDS).getValue());
+        assertEquals(List.of("1"), f2.get(5, TimeUnit.SECONDS).getValue());
+        assertFalse(f3.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals("Only one execution per distinct query expected", 3, executed.get());
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        AsyncEmergencyApp app = new AsyncEmergencyApp(new EmergencyApp(), pool);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            // other callers keep the same query in flight
+            for (int t = 0; t < 3; t++) {
+                pool.execute(() -> {
+                    while (!done.get()) app.getPatientsByDate("2024-06-01").join();
+                });
+            }
+            for (int i = 0; i < 2000; i++) {
+                app.addPatient("P" + i, "Name" + i, "Surname", "1990-01-01", "Checkup", "2024-06-01").get(5, TimeUnit.SECONDS);
+                List<String> patients = app.getPatientsByDate("2024-06-01").get(5, TimeUnit.SECONDS).getValue();
+                assertTrue("A completed admission must be seen by a later query", patients.contains("P" + i));
+            }
+        } finally {
+            done.set(true);
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.polito.emergency.EmergencyApp;
+import it.polito.emergency.EmergencyException;
+import it.polito.emergency.Patient;
+
+public class TestPatientLookup {
+
+    private EmergencyApp app;
+
+    @Before
+    public void setUp() {
+        app = new EmergencyApp();
+    }
+
+    private static String fiscalCode(int i) {
+        return String.format("RSSMRA%02dA%02dL%03dZ", i % 100, i % 28 + 1, i % 1000);
+    }
+
+    @Test
+    public void testManyFiscalCodes() throws EmergencyException {
+        for (int i = 0; i < 5000; i++) {
+            app.addPatient(i < 1000 ? fiscalCode(i) : "X" + i, "Name" + i, "Surname" + (i % 10), "1990-01-01", "Checkup", "2024-06-01");
+        }
+        for (int i = 0; i < 1000; i++) {
+            List<Patient> ps = app.getPatient(fiscalCode(i));
+            assertEquals(1, ps.size());
+            assertEquals("Name" + i, ps.get(0).getName());
+        }
+        assertEquals("Name4321", app.getPatient("X4321").get(0).getName());
+        assertEquals(500, app.getPatient("Surname3").size());
+        assertEquals(5000, app.getNumberOfPatients());
+    }
+
+    @Test
+    public void testNonConformingCodes() throws EmergencyException {
+        Patient lower = app.addPatient("rssmra80a01l219x", "Lower", "Case", "1980-01-01", "Checkup", "2024-06-01");
+        Patient upper = app.addPatient("RSSMRA80A01L219X", "Upper", "Case", "1980-01-01", "Checkup", "2024-06-01");
+        Patient longer = app.addPatient("RSSMRA80A01L219X0", "Longer", "Case", "1980-01-01", "Checkup", "2024-06-01");
+        Patient shorter = app.addPatient("RSSMRA80A01L219", "Shorter", "Case", "1980-01-01", "Checkup", "2024-06-01");
+
+        assertNotSame(lower, upper);
+        assertSame(upper, app.addPatient("RSSMRA80A01L219X", "Again", "Case", "1980-01-01", "Checkup", "2024-06-01"));
+        assertSame(lower, app.getPatient("rssmra80a01l219x").get(0));
+        assertSame(longer, app.getPatient("RSSMRA80A01L219X0").get(0));
+        assertSame(shorter, app.getPatient("RSSMRA80A01L219").get(0));
+        assertEquals(4, app.getPatient("Case").size());
+        assertTrue(app.getPatient("RSSMRA80A01L21").isEmpty());
+    }
+
+    @Test
+    public void testRemovePatientsOfProfessional() throws EmergencyException {
+        app.addProfessional("P1", "Anna", "Bianchi", "Cardiology", "2024-06-01 to 2024-06-30");
+        for (int i = 0; i < 200; i++) {
+            String code = i % 2 == 0 ? fiscalCode(i) : "x" + i;
+            app.addPatient(code, "Name" + i, "Surname", "1990-01-01", "Checkup", "2024-06-01");
+            app.assignPatientToProfessional(code, "Cardiology");
+        }
+        Map<String, Patient> patients = app.getProfessionalById("P1").getPatients();
+        assertEquals(200, patients.size());
+
+        // removed codes are no longer found, the other patients keep their order
+        for (int i = 0; i < 200; i += 3) {
+            String code = i % 2 == 0 ? fiscalCode(i) : "x" + i;
+            assertEquals("Name" + i, patients.remove(code).getName());
+            assertNull(patients.remove(code));
+        }
+        assertEquals(133, patients.size());
+        assertNull(patients.get(fiscalCode(0)));
+        assertEquals("Name2", patients.get(fiscalCode(2)).getName());
+        assertEquals("Name1", patients.values().iterator().next().getName());
+        assertEquals(133, patients.values().size());
+
+        // a removed code can be added again, also after the table is rebuilt
+        patients.values().removeIf(p -> p.getName().endsWith("1"));
+        for (int i = 0; i < 200; i += 3) {
+            String code = i % 2 == 0 ? fiscalCode(i) : "x" + i;
+            patients.put(code, app.getPatient(code).get(0));
+        }
+        assertEquals("Name0", patients.get(fiscalCode(0)).getName());
+        assertNull(patients.get("x1"));
+        assertEquals(186, patients.size());
+
+        patients.clear();
+        assertTrue(patients.isEmpty());
+        assertNull(patients.get(fiscalCode(2)));
+        patients.put("x1", app.getPatient("x1").get(0));
+        assertEquals(Map.of("x1", app.getPatient("x1").get(0)), patients);
+    }
+}
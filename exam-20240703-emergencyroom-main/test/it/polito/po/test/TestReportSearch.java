@@ -0,0 +1,72 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.polito.emergency.EmergencyApp;
+import it.polito.emergency.EmergencyException;
+import it.polito.emergency.Report;
+
+public class TestReportSearch {
+
+    private EmergencyApp app;
+    private Report r1, r2, r3;
+
+    @Before
+    public void setUp() throws EmergencyException {
+        app = new EmergencyApp();
+        app.addProfessional("1", "John", "Doe", "Orthopedics", "2024-01-01 to 2024-12-31");
+        app.addProfessional("2", "Laura", "Bianchi", "Cardiology", "2024-01-01 to 2024-12-31");
+
+        r1 = app.saveReport("1", "AAA", "2024-06-01", "Fracture of the left wrist, cast applied.");
+        r2 = app.saveReport("2", "BBB", "2024-06-15", "Chest pain, no fracture. Left arm numbness.");
+        r3 = app.saveReport("1", "CCC", "2024-07-02", "Ankle sprain; suspected FRACTURE excluded by X-ray.");
+    }
+
+    private static List<String> ids(List<Report> reports) {
+        return reports.stream().map(Report::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSingleTerm() {
+        assertEquals(ids(List.of(r1, r2, r3)), ids(app.searchReports("fracture")));
+        assertTrue("Unknown terms should match nothing", app.searchReports("diabetes").isEmpty());
+    }
+
+    @Test
+    public void testAndOr() {
+        assertEquals(ids(List.of(r1, r2)), ids(app.searchReports("fracture left")));
+        assertEquals(ids(List.of(r2, r3)), ids(app.searchReports("chest OR sprain")));
+    }
+
+    @Test
+    public void testPhrase() {
+        assertEquals(ids(List.of(r1)), ids(app.searchReports("\"left wrist\"")));
+        assertTrue(app.searchReports("\"wrist left\"").isEmpty());
+        assertEquals("Words with punctuation are phrases", ids(List.of(r3)), ids(app.searchReports("x-ray")));
+    }
+
+    @Test
+    public void testFilters() {
+        assertEquals(ids(List.of(r1, r3)), ids(app.searchReports("fracture", "1", null, null)));
+        assertEquals(ids(List.of(r1, r2)), ids(app.searchReports("fracture", null, "2024-06-01", "2024-06-30")));
+        assertEquals(ids(List.of(r3)), ids(app.searchReports("", "1", "2024-07-01", null)));
+        assertTrue(app.searchReports("fracture", "99", null, null).isEmpty());
+    }
+
+    @Test
+    public void testManyReports() throws EmergencyException {
+        for (int i = 0; i < 1000; i++) {
+            app.saveReport(i % 2 == 0 ? "1" : "2", "P" + i, "2024-08-01",
+                "visit " + i + (i % 7 == 0 ? " bruise" : "") + (i % 11 == 0 ? " bruise knee" : " elbow"));
+        }
+        List<Report> res = app.searchReports("bruise knee");
+        assertEquals(91, res.size());
+        assertEquals(46, app.searchReports("\"bruise knee\"", "1", null, null).size());
+    }
+}
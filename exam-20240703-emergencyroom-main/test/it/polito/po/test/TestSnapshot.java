@@ -0,0 +1,76 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.polito.emergency.EmergencyApp;
+import it.polito.emergency.EmergencyException;
+import it.polito.emergency.EmergencySnapshot;
+
+public class TestSnapshot {
+
+    private static final String DATE = "2024-06-18";
+    private EmergencyApp app;
+
+    @Before
+    public void setUp() {
+        app = new EmergencyApp();
+        app.addDepartment("Cardiology", 1500);
+        app.addProfessional("1", "Toy", "Romi", "Cardiology", "2024-06-12 to 2024-06-30");
+        for (int i = 0; i < 3000; i++) {
+            app.addPatient("P" + i, "Name" + i, "Surname" + i, "1990-01-01", "Checkup", i % 2 == 0 ? DATE : "2024-06-19");
+        }
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterChanges() throws EmergencyException {
+        EmergencySnapshot before = app.snapshot();
+        for (int i = 0; i < 2000; i++) {
+            app.assignPatientToProfessional("P" + i, "Cardiology");
+            app.dischargeOrHospitalize("P" + i, "Cardiology");
+        }
+        app.addPatient("NEW", "New", "Patient", "1990-01-01", "Checkup", DATE);
+        app.addDepartment("Surgery", 10);
+
+        assertEquals(3000, before.size());
+        assertEquals(3000, before.getNumberOfPatients());
+        assertEquals(0, before.getNumberOfPatientsDischarged());
+        assertEquals(0, before.getNumberOfPatientsHospitalizedByDepartment("Cardiology"));
+        assertEquals(1500, before.getPatientsByDate(DATE).size());
+        assertEquals(List.of("Cardiology"), before.getDepartments());
+        assertThrows(EmergencyException.class, () -> before.getNumberOfPatientsHospitalizedByDepartment("Surgery"));
+
+        EmergencySnapshot after = app.snapshot();
+        assertEquals(3001, after.size());
+        assertEquals(1001, after.getNumberOfPatients());
+        assertEquals(500, after.getNumberOfPatientsDischarged());
+        assertEquals(500, after.getNumberOfPatientsAssignedToProfessionalDischarged("Cardiology"));
+        assertEquals(1500, after.getNumberOfPatientsHospitalizedByDepartment("Cardiology"));
+        assertEquals(1500, (int) after.getNumberOfPatientsHospitalizedPerDepartment().get("Cardiology"));
+        assertEquals(501, after.getNumberOfPatientsByDate(DATE));
+    }
+
+    @Test
+    public void testDepartmentsAddedDuringRecordUpdates() throws Exception {
+        Thread departments = new Thread(() -> {
+            for (int i = 0; i < 500; i++) app.addDepartment("Department" + i, 10);
+        });
+        departments.start();
+        for (int i = 0; i < 3000; i++) {
+            app.assignPatientToProfessional("P" + i, "Cardiology");
+            app.dischargeOrHospitalize("P" + i, "Cardiology");
+        }
+        departments.join();
+
+        // neither the departments nor the records are lost
+        EmergencySnapshot after = app.snapshot();
+        assertEquals(501, after.getDepartments().size());
+        assertEquals(1500, after.getNumberOfPatientsHospitalizedByDepartment("Cardiology"));
+        assertEquals(1500, after.getNumberOfPatientsDischarged());
+        assertEquals(0, after.getNumberOfPatientsHospitalizedByDepartment("Department499"));
+    }
+}
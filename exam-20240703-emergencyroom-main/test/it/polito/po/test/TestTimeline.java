@@ -0,0 +1,83 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.polito.emergency.EmergencyApp;
+import it.polito.emergency.EmergencyException;
+import it.polito.emergency.PatientTimeline;
+
+public class TestTimeline {
+
+    private static final Instant START = Instant.parse("2024-06-18T08:00:00Z");
+
+    private static class ManualClock extends Clock {
+        private Instant now = START;
+
+        void advanceMinutes(int minutes) {
+            now = now.plusSeconds(minutes * 60L);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private ManualClock clock;
+    private EmergencyApp app;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock();
+        app = new EmergencyApp(clock);
+        app.addDepartment("Cardiology", 1);
+        app.addProfessional("1", "Toy", "Romi", "Cardiology", "2024-06-12 to 2024-06-30");
+    }
+
+    @Test
+    public void testTransitions() throws EmergencyException {
+        app.addPatient("A", "Alice", "Wonderland", "1990-01-01", "Checkup", "2024-06-18");
+        clock.advanceMinutes(30);
+        app.addPatient("B", "Bob", "Wonderland", "1990-01-01", "Checkup", "2024-06-18");
+        clock.advanceMinutes(30);
+        app.assignPatientToProfessional("A", "Cardiology");
+        clock.advanceMinutes(60);
+        app.assignPatientToProfessional("B", "Cardiology");
+        app.dischargeOrHospitalize("A", "Cardiology");
+        clock.advanceMinutes(120);
+        app.dischargeOrHospitalize("B", "Cardiology");
+
+        PatientTimeline t = app.getTimeline();
+        assertEquals(6, t.size());
+
+        Map<String, Long> los = t.getLengthOfStayPercentile(50);
+        assertEquals(Long.valueOf(7200), los.get("Cardiology"));
+        assertEquals(Long.valueOf(12600), t.getLengthOfStayPercentile(100).get("Cardiology"));
+
+        assertEquals(3600, t.getTimeToSpecialistPercentile("Cardiology", 50));
+        assertEquals(5400, t.getTimeToSpecialistPercentile("Cardiology", 99));
+        assertEquals(-1, t.getTimeToSpecialistPercentile("Surgery", 50));
+
+        assertArrayEquals(new int[] { 2, 2, 1, 1, 0 }, t.getHourlyOccupancy(START, 5));
+        assertArrayEquals(new int[] { 1, 0 }, t.getHourlyOccupancy(START.plusSeconds(3 * 3600), 2));
+    }
+}
@@ -0,0 +1,96 @@
+package mountainhuts.benchmarks;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mountainhuts.Booking;
+import mountainhuts.BookingEngine;
+import mountainhuts.MountainHut;
+import mountainhuts.Region;
+
+/**
+ * Concurrent bookings on the huts of a region loaded from a file generated by
+ * {@link HutDataGenerator}. The requests go to the first {@code hotHuts} huts
+ * with beds, few huts make the threads compete for the same locks and beds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class BookingBenchmark {
+
+	private static final LocalDate FIRST = LocalDate.of(2026, 6, 15);
+	private static final int NIGHTS = 120;
+
+	@Param({ "100000" })
+	int rows;
+
+	@Param({ "8", "4096" })
+	int hotHuts;
+
+	BookingEngine engine;
+	String[] huts;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		Region region = Region.fromFile("Synthetic", new HutDataGenerator(rows, 0.3, 42).cached().toString());
+		engine = new BookingEngine(region, FIRST, NIGHTS);
+		huts = region.getMountainHuts().stream()
+				.filter(h -> h.getBedsNumber() != null && h.getBedsNumber() > 0)
+				.limit(hotHuts).map(MountainHut::getName).toArray(String[]::new);
+	}
+
+	@State(Scope.Thread)
+	public static class Requests {
+		final SplittableRandom random = new SplittableRandom();
+	}
+
+	private Booking book(SplittableRandom random) {
+		int nights = 1 + random.nextInt(3);
+		return engine.book(huts[random.nextInt(huts.length)], FIRST.plusDays(random.nextInt(NIGHTS - nights + 1)),
+				nights, 1 + random.nextInt(4));
+	}
+
+	// a booking and its cancellation, so that the huts do not fill up
+	@Benchmark
+	@Threads(8)
+	public boolean bookAndCancel(Requests requests) {
+		Booking b = book(requests.random);
+		return b != null && engine.cancel(b);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(7)
+	public boolean mixedBookAndCancel(Requests requests) {
+		return bookAndCancel(requests);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public List<MountainHut> mixedFindAvailable(Requests requests) {
+		return engine.findAvailable("PROVINCE000", FIRST.plusDays(requests.random.nextInt(NIGHTS - 2)), 3, 4);
+	}
+}
@@ -0,0 +1,153 @@
+package mountainhuts.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mountainhuts.Region;
+import mountainhuts.RegionExporter;
+import mountainhuts.RegionExporter.Format;
+
+/**
+ * Export of the aggregates of a region as JSON and CSV, streamed by
+ * {@link RegionExporter} or collected in the maps returned by {@link Region}
+ * and then serialized. The output is discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ExportBenchmark {
+
+	private static final String[] RANGES = { "0-1000", "1000-1500", "1500-2000", "2000-2500", "2500-3000",
+			"3000-4000" };
+
+	@Param({ "10000", "100000", "1000000" })
+	int rows;
+
+	@Param({ "JSON", "CSV" })
+	Format format;
+
+	Region region;
+	RegionExporter exporter;
+	OutputStream out = OutputStream.nullOutputStream();
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		region = Region.fromFile("Synthetic", new HutDataGenerator(rows, 0.3, 42).cached().toString());
+		region.setAltitudeRanges(RANGES);
+		exporter = new RegionExporter(region);
+	}
+
+	@Benchmark
+	public void stream() throws IOException {
+		exporter.write(out, format);
+	}
+
+	@Benchmark
+	public void collectThenSerialize() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		if (format == Format.JSON) collectJson(sb);
+		else collectCsv(sb);
+		out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void collectJson(StringBuilder sb) {
+		sb.append("{\"region\":");
+		string(sb, region.getName());
+		sb.append(",\"countMunicipalitiesPerProvince\":");
+		object(sb, region.countMunicipalitiesPerProvince());
+		sb.append(",\"countMountainHutsPerMunicipalityPerProvince\":{");
+		boolean first = true;
+		for (Map.Entry<String, Map<String, Long>> e : region.countMountainHutsPerMunicipalityPerProvince().entrySet()) {
+			if (!first) sb.append(',');
+			first = false;
+			string(sb, e.getKey());
+			sb.append(':');
+			object(sb, e.getValue());
+		}
+		sb.append("},\"countMountainHutsPerAltitudeRange\":");
+		object(sb, region.countMountainHutsPerAltitudeRange());
+		sb.append(",\"totalBedsNumberPerProvince\":");
+		object(sb, region.totalBedsNumberPerProvince());
+		sb.append(",\"maximumBedsNumberPerAltitudeRange\":{");
+		first = true;
+		for (Map.Entry<String, Optional<Integer>> e : region.maximumBedsNumberPerAltitudeRange().entrySet()) {
+			if (!first) sb.append(',');
+			first = false;
+			string(sb, e.getKey());
+			sb.append(':').append(e.getValue().orElse(0));
+		}
+		sb.append("},\"municipalityNamesPerCountOfMountainHuts\":{");
+		first = true;
+		for (Map.Entry<Long, List<String>> e : region.municipalityNamesPerCountOfMountainHuts().entrySet()) {
+			if (!first) sb.append(',');
+			first = false;
+			sb.append('"').append(e.getKey()).append("\":[");
+			for (int i = 0; i < e.getValue().size(); i++) {
+				if (i > 0) sb.append(',');
+				string(sb, e.getValue().get(i));
+			}
+			sb.append(']');
+		}
+		sb.append("}}");
+	}
+
+	private void collectCsv(StringBuilder sb) {
+		sb.append("Aggregate;Key;Name;Value\n");
+		region.countMunicipalitiesPerProvince().forEach((k, v) -> line(sb, "countMunicipalitiesPerProvince", k, "", v));
+		region.countMountainHutsPerMunicipalityPerProvince().forEach((p, m) -> m
+				.forEach((k, v) -> line(sb, "countMountainHutsPerMunicipalityPerProvince", p, k, v)));
+		region.countMountainHutsPerAltitudeRange().forEach((k, v) -> line(sb, "countMountainHutsPerAltitudeRange", k, "", v));
+		region.totalBedsNumberPerProvince().forEach((k, v) -> line(sb, "totalBedsNumberPerProvince", k, "", v));
+		region.maximumBedsNumberPerAltitudeRange()
+			.forEach((k, v) -> line(sb, "maximumBedsNumberPerAltitudeRange", k, "", v.orElse(0)));
+		region.municipalityNamesPerCountOfMountainHuts().forEach((k, names) -> names
+				.forEach(n -> line(sb, "municipalityNamesPerCountOfMountainHuts", k.toString(), n, "")));
+	}
+
+	private static void line(StringBuilder sb, String aggregate, String key, String name, Object value) {
+		sb.append(aggregate).append(';').append(key).append(';').append(name).append(';').append(value).append('\n');
+	}
+
+	private static void object(StringBuilder sb, Map<String, ? extends Number> map) {
+		sb.append('{');
+		boolean first = true;
+		for (Map.Entry<String, ? extends Number> e : map.entrySet()) {
+			if (!first) sb.append(',');
+			first = false;
+			string(sb, e.getKey());
+			sb.append(':').append(e.getValue());
+		}
+		sb.append('}');
+	}
+
+	private static void string(StringBuilder sb, String s) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') sb.append('\\');
+			sb.append(c);
+		}
+		sb.append('"');
+	}
+}
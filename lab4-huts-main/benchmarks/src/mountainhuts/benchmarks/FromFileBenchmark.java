@@ -0,0 +1,61 @@
+package mountainhuts.benchmarks;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mountainhuts.Region;
+
+/**
+ * Loading of a region file generated by {@link HutDataGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class FromFileBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	int rows;
+
+	@Param({ "0.3" })
+	double missingAltitudes;
+
+	String file;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException {
+		file = new HutDataGenerator(rows, missingAltitudes, 42).cached().toString();
+	}
+
+	@Benchmark
+	public Region fromFile() {
+		return Region.fromFile("Synthetic", file);
+	}
+
+	// time to the first query, loading everything up front or on first use
+	@Benchmark
+	public Map<String, Long> firstQuery() {
+		return Region.fromFile("Synthetic", file).countMunicipalitiesPerProvince();
+	}
+
+	@Benchmark
+	public Map<String, Long> firstQueryLazily() {
+		return Region.fromFileLazily("Synthetic", file).countMunicipalitiesPerProvince();
+	}
+}
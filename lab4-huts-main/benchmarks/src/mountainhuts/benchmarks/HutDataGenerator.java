@@ -0,0 +1,154 @@
+package mountainhuts.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of synthetic region files in the format read by
+ * {@code Region.fromFile()}.
+ *
+ * The data mimics the sample file at a larger scale: few provinces of
+ * different sizes, many municipalities in the valleys with a skewed number of
+ * huts, hut altitudes spread above the altitude of their municipality and
+ * categories and numbers of beds in the proportions of the sample. A given
+ * share of the huts has no altitude. The same parameters always produce the
+ * same file.
+ */
+public class HutDataGenerator {
+
+	private static final String HEADER = "Province;Municipality;MunicipalityAltitude;Name;Altitude;Category;BedsNumber";
+	private static final String[] CATEGORIES = { "Rifugio", "Bivacco Fisso", "Rifugio escursionistico",
+			"Capanna sociale", "Rifugio Alpino" };
+	// cumulative share of the categories
+	private static final double[] CATEGORY_SHARE = { 0.35, 0.60, 0.80, 0.90, 1.0 };
+
+	private final int rows;
+	private final double missingAltitudes;
+	private final long seed;
+
+	/**
+	 * Create a generator.
+	 *
+	 * @param rows
+	 *            the number of mountain huts, up to 10<sup>7</sup>
+	 * @param missingAltitudes
+	 *            the share of huts without altitude, between 0 and 1
+	 * @param seed
+	 *            the seed of the random numbers
+	 */
+	public HutDataGenerator(int rows, double missingAltitudes, long seed) {
+		if (rows < 0) throw new IllegalArgumentException("Invalid number of rows " + rows);
+		if (missingAltitudes < 0 || missingAltitudes > 1) {
+			throw new IllegalArgumentException("Invalid share of missing altitudes " + missingAltitudes);
+		}
+		this.rows = rows;
+		this.missingAltitudes = missingAltitudes;
+		this.seed = seed;
+	}
+
+	/**
+	 * Return the file generated with the given parameters in the temporary
+	 * directory, generating it the first time.
+	 *
+	 * @return the path of the file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public Path cached() throws IOException {
+		Path dir = Path.of(System.getProperty("java.io.tmpdir"), "mountainhuts-benchmarks");
+		Path file = dir.resolve(String.format(Locale.ROOT, "huts-%d-%.2f-%d.csv", rows, missingAltitudes, seed));
+		if (!Files.exists(file)) {
+			Files.createDirectories(dir);
+			Path tmp = Files.createTempFile(dir, "huts", ".tmp");
+			write(tmp);
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		return file;
+	}
+
+	/**
+	 * Write the file.
+	 *
+	 * @param file
+	 *            the path of the file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void write(Path file) throws IOException {
+		SplittableRandom random = new SplittableRandom(seed);
+		int provinces = Math.max(4, Math.min(100, rows / 50_000));
+		int municipalities = Math.max(10, rows / 25);
+		String[] province = new String[municipalities];
+		int[] altitude = new int[municipalities];
+		for (int m = 0; m < municipalities; m++) {
+			// the first provinces are the largest ones
+			province[m] = String.format(Locale.ROOT, "PROVINCE%03d", skewed(random, provinces));
+			altitude[m] = 150 + (int) (1700 * Math.pow(random.nextDouble(), 1.5));
+		}
+
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write(HEADER);
+			out.newLine();
+			StringBuilder line = new StringBuilder(96);
+			for (int h = 0; h < rows; h++) {
+				// few municipalities have most of the huts
+				int m = skewed(random, municipalities);
+				int c = category(random);
+				line.setLength(0);
+				line.append(province[m]).append(';')
+					.append("Municipality ").append(m).append(';')
+					.append(altitude[m]).append(';')
+					.append("Hut ").append(h).append(';');
+				if (random.nextDouble() >= missingAltitudes) {
+					line.append(Math.min(4800, altitude[m] + (int) Math.abs(random.nextGaussian() * 800)));
+				}
+				line.append(';').append(CATEGORIES[c]).append(';').append(beds(random, c));
+				out.append(line);
+				out.newLine();
+			}
+		}
+	}
+
+	// index in [0, n) with a probability decreasing with the index
+	private static int skewed(SplittableRandom random, int n) {
+		return (int) (n * Math.pow(random.nextDouble(), 2.5));
+	}
+
+	private static int category(SplittableRandom random) {
+		double u = random.nextDouble();
+		int c = 0;
+		while (u >= CATEGORY_SHARE[c]) c++;
+		return c;
+	}
+
+	private static int beds(SplittableRandom random, int category) {
+		if (CATEGORIES[category].equals("Bivacco Fisso")) return random.nextInt(13);
+		// long tail of large huts
+		return 8 + (int) Math.min(250, Math.exp(random.nextGaussian() * 0.7 + 3.3));
+	}
+
+	/**
+	 * Generate a file from the command line.
+	 *
+	 * @param args
+	 *            the number of rows, the path of the file and, optionally, the
+	 *            share of missing altitudes and the seed
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: HutDataGenerator rows file [missingAltitudes [seed]]");
+			System.exit(1);
+		}
+		double missing = args.length > 2 ? Double.parseDouble(args[2]) : 0.3;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+		new HutDataGenerator(Integer.parseInt(args[0]), missing, seed).write(Path.of(args[1]));
+	}
+}
@@ -0,0 +1,100 @@
+package mountainhuts.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mountainhuts.Region;
+import mountainhuts.RegionStats;
+
+/**
+ * Queries on a region loaded from a file generated by
+ * {@link HutDataGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class QueryBenchmark {
+
+	private static final String[] RANGES = { "0-1000", "1000-1500", "1500-2000", "2000-2500", "2500-3000",
+			"3000-4000" };
+
+	@Param({ "10000", "100000", "1000000" })
+	int rows;
+
+	@Param({ "0.3" })
+	double missingAltitudes;
+
+	Region region;
+	int[] altitudes;
+	int next;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		region = Region.fromFile("Synthetic", new HutDataGenerator(rows, missingAltitudes, 42).cached().toString());
+		region.setAltitudeRanges(RANGES);
+		SplittableRandom random = new SplittableRandom(7);
+		altitudes = new int[1024];
+		for (int i = 0; i < altitudes.length; i++) altitudes[i] = random.nextInt(5000);
+	}
+
+	@Benchmark
+	public String getAltitudeRange() {
+		return region.getAltitudeRange(altitudes[next++ & (altitudes.length - 1)]);
+	}
+
+	@Benchmark
+	public Map<String, Long> countMunicipalitiesPerProvince() {
+		return region.countMunicipalitiesPerProvince();
+	}
+
+	@Benchmark
+	public Map<String, Map<String, Long>> countMountainHutsPerMunicipalityPerProvince() {
+		return region.countMountainHutsPerMunicipalityPerProvince();
+	}
+
+	@Benchmark
+	public Map<String, Long> countMountainHutsPerAltitudeRange() {
+		return region.countMountainHutsPerAltitudeRange();
+	}
+
+	@Benchmark
+	public Map<String, Integer> totalBedsNumberPerProvince() {
+		return region.totalBedsNumberPerProvince();
+	}
+
+	@Benchmark
+	public Map<String, Optional<Integer>> maximumBedsNumberPerAltitudeRange() {
+		return region.maximumBedsNumberPerAltitudeRange();
+	}
+
+	@Benchmark
+	public Map<Long, List<String>> municipalityNamesPerCountOfMountainHuts() {
+		return region.municipalityNamesPerCountOfMountainHuts();
+	}
+
+	// full scan of the columns, what every query cost before the incremental statistics
+	@Benchmark
+	public RegionStats computeStats() {
+		return region.computeStats();
+	}
+}
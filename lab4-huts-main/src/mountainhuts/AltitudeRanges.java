@@ -0,0 +1,109 @@
+package mountainhuts;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Compiled set of altitude ranges in the format "[minValue]-[maxValue]".
+ *
+ * The ranges are parsed once and sorted by their lower bound, so that the
+ * range of an altitude is found with a binary search. Each range is a bucket
+ * identified by its position, the default range "0-INF" is the last bucket.
+ * A range includes its maximum but not its minimum, ranges must not overlap.
+ */
+final class AltitudeRanges {
+
+	static final String DEFAULT_RANGE = "0-INF";
+	static final AltitudeRanges NONE = new AltitudeRanges();
+
+	private final int[] lower;
+	private final int[] upper;
+	private final String[] labels;
+
+	AltitudeRanges(String... ranges) {
+		String[] sorted = ranges.clone();
+		Arrays.sort(sorted, Comparator.comparingInt(AltitudeRanges::min));
+		lower = new int[sorted.length];
+		upper = new int[sorted.length];
+		labels = new String[sorted.length + 1];
+		for (int i = 0; i < sorted.length; i++) {
+			lower[i] = min(sorted[i]);
+			upper[i] = max(sorted[i]);
+			labels[i] = sorted[i];
+		}
+		labels[sorted.length] = DEFAULT_RANGE;
+	}
+
+	/**
+	 * Return the number of buckets, including the default one.
+	 *
+	 * @return the number of buckets
+	 */
+	int buckets() {
+		return labels.length;
+	}
+
+	/**
+	 * Return the bucket of an altitude.
+	 *
+	 * @param altitude
+	 *            the altitude
+	 * @return the index of the range including the altitude or the index of
+	 *         the default range
+	 */
+	int bucketOf(int altitude) {
+		int low = 0, high = lower.length - 1, found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (lower[mid] < altitude) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return found >= 0 && altitude <= upper[found] ? found : lower.length;
+	}
+
+	/**
+	 * Return the bucket of a range.
+	 *
+	 * @param range
+	 *            the textual representation of the range
+	 * @return the index of the range, or -1 if it is not one of the ranges
+	 */
+	int bucketOf(String range) {
+		for (int b = 0; b < labels.length; b++) {
+			if (labels[b].equals(range)) return b;
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the textual representation of a bucket.
+	 *
+	 * @param bucket
+	 *            the index of the bucket
+	 * @return the range as "[minValue]-[maxValue]"
+	 */
+	String label(int bucket) {
+		return labels[bucket];
+	}
+
+	/**
+	 * Return the textual representation of the ranges, without the default one.
+	 *
+	 * @return the ranges sorted by their minimum
+	 */
+	String[] ranges() {
+		return Arrays.copyOf(labels, labels.length - 1);
+	}
+
+	private static int min(String range) {
+		return Integer.parseInt(range.substring(0, range.indexOf('-')).trim());
+	}
+
+	private static int max(String range) {
+		return Integer.parseInt(range.substring(range.indexOf('-') + 1).trim());
+	}
+}
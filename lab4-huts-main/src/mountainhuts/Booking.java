@@ -0,0 +1,65 @@
+package mountainhuts;
+
+import java.time.LocalDate;
+
+/**
+ * Beds reserved in a mountain hut for one or more consecutive nights, made by
+ * {@link BookingEngine#book(String, LocalDate, int, int)}.
+ */
+public final class Booking {
+
+	final BookingEngine engine;
+	final int hut;
+	final int night;
+	private final MountainHut mountainHut;
+	private final LocalDate from;
+	private final int nights;
+	private final int beds;
+	// written holding the lock of the hut
+	private volatile boolean cancelled;
+
+	Booking(BookingEngine engine, int hut, MountainHut mountainHut, int night, LocalDate from, int nights, int beds) {
+		this.engine = engine;
+		this.hut = hut;
+		this.mountainHut = mountainHut;
+		this.night = night;
+		this.from = from;
+		this.nights = nights;
+		this.beds = beds;
+	}
+
+	public MountainHut getMountainHut() {
+		return mountainHut;
+	}
+
+	/**
+	 * Return the first night of the booking.
+	 *
+	 * @return the date of the first night
+	 */
+	public LocalDate getFrom() {
+		return from;
+	}
+
+	public int getNights() {
+		return nights;
+	}
+
+	public int getBeds() {
+		return beds;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	void cancel() {
+		cancelled = true;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d beds in %s from %s for %d nights%s", beds, mountainHut.getName(), from, nights,
+				cancelled ? " (cancelled)" : "");
+	}
+}
@@ -0,0 +1,239 @@
+package mountainhuts;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bookings of the beds of the mountain huts of a {@link Region} over a season
+ * of consecutive nights.
+ *
+ * The engine keeps, for each hut, the number of beds booked in each night of
+ * the season; the beds of a hut are its {@link MountainHut#getBedsNumber()},
+ * a missing number counts as zero. A booking reserves the same number of beds
+ * for one or more consecutive nights, all or none of them.
+ *
+ * The bookings and the cancellations of a hut are serialized by one of a fixed
+ * set of locks, chosen by the row of the hut, so requests for different huts
+ * mostly run in parallel and a booking checks and updates all its nights
+ * holding a single lock. The counters are read without locking by
+ * {@link #getFreeBeds(String, LocalDate)} and by the capacity search, which
+ * may see a booking made or cancelled while they run but never more beds
+ * booked than available. The huts of the region must not be changed while
+ * the engine is in use.
+ */
+public class BookingEngine {
+
+	private static final int STRIPES = 64;
+
+	private final Region region;
+	private final LocalDate first;
+	private final int nights;
+	private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+	// beds booked per night, indexed by the row of the hut, created by the
+	// first booking of the hut holding the lock of this object
+	private volatile AtomicReferenceArray<AtomicIntegerArray> booked;
+
+	/**
+	 * Create the engine for a season.
+	 *
+	 * @param region
+	 *            the region of the huts
+	 * @param first
+	 *            the first night of the season
+	 * @param nights
+	 *            the number of nights of the season
+	 */
+	public BookingEngine(Region region, LocalDate first, int nights) {
+		if (nights <= 0) throw new IllegalArgumentException("The season must have at least one night");
+		this.region = region;
+		this.first = first;
+		this.nights = nights;
+		for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+		booked = new AtomicReferenceArray<>(Math.max(16, region.store().huts));
+	}
+
+	public LocalDate getFirstNight() {
+		return first;
+	}
+
+	public int getNights() {
+		return nights;
+	}
+
+	/**
+	 * Book beds in a mountain hut for consecutive nights.
+	 *
+	 * @param hut
+	 *            the name of the hut
+	 * @param from
+	 *            the first night
+	 * @param nights
+	 *            the number of nights
+	 * @param beds
+	 *            the number of beds
+	 * @return the booking, or {@code null} if the hut has not enough free beds
+	 *         in one of the nights
+	 * @throws IllegalArgumentException
+	 *             if the hut is not available, the nights are not in the season
+	 *             or the number of beds is not positive
+	 */
+	public Booking book(String hut, LocalDate from, int nights, int beds) {
+		if (beds <= 0) throw new IllegalArgumentException("Invalid number of beds: " + beds);
+		HutStore store = region.store();
+		int h = row(store, hut);
+		int n = night(from, nights);
+		int capacity = capacity(store, h);
+		if (beds > capacity) return null;
+		AtomicIntegerArray counters = counters(h);
+		ReentrantLock lock = locks[h & (STRIPES - 1)];
+		lock.lock();
+		try {
+			for (int i = n; i < n + nights; i++) {
+				if (counters.get(i) + beds > capacity) return null;
+			}
+			for (int i = n; i < n + nights; i++) counters.getAndAdd(i, beds);
+		} finally {
+			lock.unlock();
+		}
+		return new Booking(this, h, store.hut(h), n, from, nights, beds);
+	}
+
+	/**
+	 * Cancel a booking, freeing its beds.
+	 *
+	 * @param booking
+	 *            the booking
+	 * @return {@code true} if the booking was not already cancelled
+	 * @throws IllegalArgumentException
+	 *             if the booking was made by another engine
+	 */
+	public boolean cancel(Booking booking) {
+		if (booking.engine != this) throw new IllegalArgumentException("Booking of another engine");
+		AtomicIntegerArray counters = booked(booking.hut);
+		ReentrantLock lock = locks[booking.hut & (STRIPES - 1)];
+		lock.lock();
+		try {
+			if (booking.isCancelled()) return false;
+			for (int i = booking.night; i < booking.night + booking.getNights(); i++) {
+				counters.getAndAdd(i, -booking.getBeds());
+			}
+			booking.cancel();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Return the beds of a mountain hut that are free in a night.
+	 *
+	 * @param hut
+	 *            the name of the hut
+	 * @param night
+	 *            the night
+	 * @return the number of free beds
+	 * @throws IllegalArgumentException
+	 *             if the hut is not available or the night is not in the season
+	 */
+	public int getFreeBeds(String hut, LocalDate night) {
+		HutStore store = region.store();
+		int h = row(store, hut);
+		int n = night(night, 1);
+		return Math.max(0, capacity(store, h) - booked(h, n));
+	}
+
+	/**
+	 * Find the mountain huts of a province with enough free beds in each of
+	 * consecutive nights.
+	 *
+	 * @param province
+	 *            the province
+	 * @param from
+	 *            the first night
+	 * @param nights
+	 *            the number of nights
+	 * @param beds
+	 *            the number of beds
+	 * @return the huts, in the order they were added
+	 * @throws IllegalArgumentException
+	 *             if the nights are not in the season or the number of beds is
+	 *             not positive
+	 */
+	public List<MountainHut> findAvailable(String province, LocalDate from, int nights, int beds) {
+		if (beds <= 0) throw new IllegalArgumentException("Invalid number of beds: " + beds);
+		HutStore store = region.store();
+		int n = night(from, nights);
+		List<MountainHut> res = new ArrayList<>();
+		region.index().province(province).forEach(h -> {
+			int capacity = capacity(store, h);
+			if (capacity < beds) return;
+			AtomicIntegerArray counters = booked(h);
+			if (counters != null) {
+				for (int i = n; i < n + nights; i++) {
+					if (counters.get(i) + beds > capacity) return;
+				}
+			}
+			res.add(store.hut(h));
+		});
+		return res;
+	}
+
+	private static int row(HutStore store, String hut) {
+		int h = store.hutRow(hut);
+		if (h < 0) throw new IllegalArgumentException("Mountain hut not available: " + hut);
+		return h;
+	}
+
+	private static int capacity(HutStore store, int h) {
+		int beds = store.beds[h];
+		return beds == HutStore.MISSING ? 0 : Math.max(0, beds);
+	}
+
+	/**
+	 * Return the index in the season of the first of consecutive nights.
+	 */
+	private int night(LocalDate from, int nights) {
+		long n = ChronoUnit.DAYS.between(first, from);
+		if (nights <= 0 || n < 0 || n + nights > this.nights) {
+			throw new IllegalArgumentException("Nights not in the season: " + nights + " from " + from);
+		}
+		return (int) n;
+	}
+
+	private AtomicIntegerArray booked(int h) {
+		AtomicReferenceArray<AtomicIntegerArray> booked = this.booked;
+		return h < booked.length() ? booked.get(h) : null;
+	}
+
+	private int booked(int h, int night) {
+		AtomicIntegerArray counters = booked(h);
+		return counters == null ? 0 : counters.get(night);
+	}
+
+	/**
+	 * Return the counters of a hut, creating them on its first booking.
+	 */
+	private AtomicIntegerArray counters(int h) {
+		AtomicIntegerArray res = booked(h);
+		if (res != null) return res;
+		synchronized (this) {
+			AtomicReferenceArray<AtomicIntegerArray> booked = this.booked;
+			if (h >= booked.length()) {
+				AtomicReferenceArray<AtomicIntegerArray> grown = new AtomicReferenceArray<>(Math.max(h + 1, booked.length() * 2));
+				for (int i = 0; i < booked.length(); i++) grown.set(i, booked.get(i));
+				this.booked = booked = grown;
+			}
+			res = booked.get(h);
+			if (res == null) {
+				res = new AtomicIntegerArray(nights);
+				booked.set(h, res);
+			}
+			return res;
+		}
+	}
+}
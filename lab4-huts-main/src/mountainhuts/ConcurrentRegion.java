@@ -0,0 +1,249 @@
+package mountainhuts;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe variant of {@link Region}.
+ *
+ * Municipalities and mountain huts are looked up in concurrent maps without
+ * locking, a new element is created only on a miss, holding the lock that
+ * serializes the updates of the underlying region. The same object is returned
+ * to all the threads creating or getting an element with the same name.
+ *
+ * The statistics are published as an immutable snapshot tagged with the
+ * version of the data it was computed from, and queries return the last
+ * snapshot published without ever locking. After a change a single task of the
+ * common pool computes a new snapshot holding the lock of the updates; the
+ * changes made while it runs are published by the next one. A query may then
+ * miss the changes made during about the last rebuild, which takes time
+ * linear in the number of municipalities, and sees them as soon as the next
+ * snapshot is published; {@link #refresh()} publishes the changes made so far
+ * and waits for them. The returned maps are unmodifiable.
+ */
+public class ConcurrentRegion {
+
+	private final Region region;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<String, Municipality> municipalities = new ConcurrentHashMap<>();
+	private final Map<String, MountainHut> huts = new ConcurrentHashMap<>();
+	private volatile AltitudeRanges ranges = AltitudeRanges.NONE;
+	// incremented, holding the lock, by every change of the data
+	private volatile long version;
+	private volatile Snapshot snapshot;
+	// set while a rebuild of the snapshot is scheduled or running
+	private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+	/**
+	 * Create a region with the given name.
+	 *
+	 * @param name
+	 *            the name of the region
+	 */
+	public ConcurrentRegion(String name) {
+		region = new Region(name);
+		snapshot = new Snapshot(region, version);
+	}
+
+	public String getName() {
+		return region.getName();
+	}
+
+	/**
+	 * @see Region#setAltitudeRanges(String...)
+	 */
+	public void setAltitudeRanges(String... ranges) {
+		lock.lock();
+		try {
+			region.setAltitudeRanges(ranges);
+			this.ranges = region.ranges();
+			changed();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @see Region#getAltitudeRange(Integer)
+	 */
+	public String getAltitudeRange(Integer altitude) {
+		if (altitude == null) return AltitudeRanges.DEFAULT_RANGE;
+		AltitudeRanges r = ranges;
+		return r.label(r.bucketOf(altitude));
+	}
+
+	/**
+	 * Return all the municipalities available.
+	 *
+	 * The returned collection is unmodifiable
+	 *
+	 * @return a collection of municipalities
+	 */
+	public Collection<Municipality> getMunicipalities() {
+		return Collections.unmodifiableCollection(municipalities.values());
+	}
+
+	/**
+	 * Return all the mountain huts available.
+	 *
+	 * The returned collection is unmodifiable
+	 *
+	 * @return a collection of mountain huts
+	 */
+	public Collection<MountainHut> getMountainHuts() {
+		return Collections.unmodifiableCollection(huts.values());
+	}
+
+	/**
+	 * @see Region#createOrGetMunicipality(String, String, Integer)
+	 */
+	public Municipality createOrGetMunicipality(String name, String province, Integer altitude) {
+		Municipality m = municipalities.get(name);
+		if (m != null) return m;
+		lock.lock();
+		try {
+			return municipalities.computeIfAbsent(name, k -> {
+				changed();
+				return region.createOrGetMunicipality(name, province, altitude);
+			});
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @see Region#createOrGetMountainHut(String, String, Integer, Municipality)
+	 */
+	public MountainHut createOrGetMountainHut(String name, String category, Integer bedsNumber,
+			Municipality municipality) {
+		return createOrGetMountainHut(name, null, category, bedsNumber, municipality);
+	}
+
+	/**
+	 * @see Region#createOrGetMountainHut(String, Integer, String, Integer, Municipality)
+	 */
+	public MountainHut createOrGetMountainHut(String name, Integer altitude, String category, Integer bedsNumber,
+			Municipality municipality) {
+		MountainHut h = huts.get(name);
+		if (h != null) return h;
+		lock.lock();
+		try {
+			return huts.computeIfAbsent(name, k -> {
+				changed();
+				return region.createOrGetMountainHut(name, altitude, category, bedsNumber, municipality);
+			});
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @see Region#countMunicipalitiesPerProvince()
+	 */
+	public Map<String, Long> countMunicipalitiesPerProvince() {
+		return snapshot().municipalitiesPerProvince;
+	}
+
+	/**
+	 * @see Region#countMountainHutsPerMunicipalityPerProvince()
+	 */
+	public Map<String, Map<String, Long>> countMountainHutsPerMunicipalityPerProvince() {
+		return snapshot().hutsPerMunicipalityPerProvince;
+	}
+
+	/**
+	 * @see Region#countMountainHutsPerAltitudeRange()
+	 */
+	public Map<String, Long> countMountainHutsPerAltitudeRange() {
+		return snapshot().hutsPerRange;
+	}
+
+	/**
+	 * @see Region#totalBedsNumberPerProvince()
+	 */
+	public Map<String, Integer> totalBedsNumberPerProvince() {
+		return snapshot().bedsPerProvince;
+	}
+
+	/**
+	 * @see Region#maximumBedsNumberPerAltitudeRange()
+	 */
+	public Map<String, Optional<Integer>> maximumBedsNumberPerAltitudeRange() {
+		return snapshot().maxBedsPerRange;
+	}
+
+	/**
+	 * @see Region#municipalityNamesPerCountOfMountainHuts()
+	 */
+	public Map<Long, List<String>> municipalityNamesPerCountOfMountainHuts() {
+		return snapshot().namesPerCount;
+	}
+
+	/**
+	 * Publish the statistics of the changes made so far, waiting for them.
+	 *
+	 * The queries made afterwards, by any thread, see all the changes completed
+	 * before this method was called.
+	 */
+	public void refresh() {
+		lock.lock();
+		try {
+			if (snapshot.version != version) snapshot = new Snapshot(region, version);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Snapshot snapshot() {
+		return snapshot;
+	}
+
+	// called holding the lock by every change, schedules a rebuild unless one is pending
+	private void changed() {
+		version++;
+		if (rebuilding.compareAndSet(false, true)) ForkJoinPool.commonPool().execute(this::rebuild);
+	}
+
+	private void rebuild() {
+		while (true) {
+			refresh();
+			rebuilding.set(false);
+			// the changes made while refreshing found this rebuild pending and did not schedule one
+			if (snapshot.version == version || !rebuilding.compareAndSet(false, true)) return;
+		}
+	}
+
+	/**
+	 * Immutable statistics of a version of the region.
+	 */
+	private static final class Snapshot {
+		final long version;
+		final Map<String, Long> municipalitiesPerProvince;
+		final Map<String, Map<String, Long>> hutsPerMunicipalityPerProvince;
+		final Map<String, Long> hutsPerRange;
+		final Map<String, Integer> bedsPerProvince;
+		final Map<String, Optional<Integer>> maxBedsPerRange;
+		final Map<Long, List<String>> namesPerCount;
+
+		Snapshot(Region region, long version) {
+			this.version = version;
+			municipalitiesPerProvince = Collections.unmodifiableMap(region.countMunicipalitiesPerProvince());
+			Map<String, Map<String, Long>> perProvince = new HashMap<>();
+			region.countMountainHutsPerMunicipalityPerProvince()
+				.forEach((province, counts) -> perProvince.put(province, Collections.unmodifiableMap(counts)));
+			hutsPerMunicipalityPerProvince = Collections.unmodifiableMap(perProvince);
+			hutsPerRange = Collections.unmodifiableMap(region.countMountainHutsPerAltitudeRange());
+			bedsPerProvince = Collections.unmodifiableMap(region.totalBedsNumberPerProvince());
+			maxBedsPerRange = Collections.unmodifiableMap(region.maximumBedsNumberPerAltitudeRange());
+			namesPerCount = Collections.unmodifiableMap(region.municipalityNamesPerCountOfMountainHuts());
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package mountainhuts;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of hut rows, organized like a roaring bitmap.
+ *
+ * The rows are partitioned by their 16 high bits. The low 16 bits of the rows
+ * of a partition are kept in a container: a sorted array while the partition
+ * holds at most {@value #ARRAY_MAX} rows, a bitmap of 65536 bits otherwise.
+ * Intersections and unions work container by container, so sparse sets cost
+ * little memory and dense sets are combined one 64-bit word at a time.
+ */
+final class HutBitmap {
+
+	static final int ARRAY_MAX = 4096;
+
+	private char[] keys = new char[4];
+	private Container[] containers = new Container[4];
+	private int size;
+
+	/**
+	 * Add a row to the set.
+	 */
+	void add(int row) {
+		char key = (char) (row >>> 16);
+		int i = size > 0 && keys[size - 1] == key ? size - 1 : find(key);
+		if (i < 0) {
+			i = -i - 1;
+			insert(i, key, new ArrayContainer());
+		}
+		containers[i] = containers[i].add((char) row);
+	}
+
+	/**
+	 * Remove a row from the set.
+	 */
+	void remove(int row) {
+		int i = find((char) (row >>> 16));
+		if (i < 0) return;
+		Container c = containers[i].remove((char) row);
+		if (c.cardinality() == 0) {
+			System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+			System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+			containers[--size] = null;
+		} else {
+			containers[i] = c;
+		}
+	}
+
+	/**
+	 * Remove all the rows.
+	 */
+	void clear() {
+		Arrays.fill(containers, 0, size, null);
+		size = 0;
+	}
+
+	boolean contains(int row) {
+		int i = find((char) (row >>> 16));
+		return i >= 0 && containers[i].contains((char) row);
+	}
+
+	/**
+	 * Return the number of rows in the set.
+	 */
+	int cardinality() {
+		int n = 0;
+		for (int i = 0; i < size; i++) n += containers[i].cardinality();
+		return n;
+	}
+
+	/**
+	 * Return the rows in both sets.
+	 */
+	HutBitmap and(HutBitmap other) {
+		HutBitmap res = new HutBitmap();
+		int i = 0, j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) i++;
+			else if (keys[i] > other.keys[j]) j++;
+			else {
+				Container c = containers[i].and(other.containers[j]);
+				if (c.cardinality() > 0) res.insert(res.size, keys[i], c);
+				i++;
+				j++;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Return the rows in either set.
+	 */
+	HutBitmap or(HutBitmap other) {
+		HutBitmap res = new HutBitmap();
+		int i = 0, j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || i < size && keys[i] < other.keys[j]) {
+				res.insert(res.size, keys[i], containers[i].copy());
+				i++;
+			} else if (i == size || keys[i] > other.keys[j]) {
+				res.insert(res.size, other.keys[j], other.containers[j].copy());
+				j++;
+			} else {
+				res.insert(res.size, keys[i], containers[i].or(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Visit the rows in increasing order.
+	 */
+	void forEach(IntConsumer action) {
+		for (int i = 0; i < size; i++) containers[i].forEach(keys[i] << 16, action);
+	}
+
+	private int find(char key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insert(int i, char key, Container c) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = key;
+		containers[i] = c;
+		size++;
+	}
+
+	/**
+	 * Set of the low 16 bits of the rows of a partition. The updates return the
+	 * container to use from then on, which changes when the representation
+	 * changes.
+	 */
+	private abstract static class Container {
+		abstract Container add(char x);
+
+		abstract Container remove(char x);
+
+		abstract boolean contains(char x);
+
+		abstract int cardinality();
+
+		abstract Container and(Container other);
+
+		abstract Container or(Container other);
+
+		abstract Container copy();
+
+		abstract void forEach(int high, IntConsumer action);
+	}
+
+	private static final class ArrayContainer extends Container {
+		private char[] values;
+		private int n;
+
+		ArrayContainer() {
+			values = new char[4];
+		}
+
+		ArrayContainer(char[] values, int n) {
+			this.values = values;
+			this.n = n;
+		}
+
+		@Override
+		Container add(char x) {
+			int i = n > 0 && values[n - 1] < x ? -n - 1 : Arrays.binarySearch(values, 0, n, x);
+			if (i >= 0) return this;
+			if (n == ARRAY_MAX) return toBitmap().add(x);
+			i = -i - 1;
+			if (n == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, n * 2)));
+			System.arraycopy(values, i, values, i + 1, n - i);
+			values[i] = x;
+			n++;
+			return this;
+		}
+
+		@Override
+		Container remove(char x) {
+			int i = Arrays.binarySearch(values, 0, n, x);
+			if (i >= 0) {
+				System.arraycopy(values, i + 1, values, i, n - i - 1);
+				n--;
+			}
+			return this;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return Arrays.binarySearch(values, 0, n, x) >= 0;
+		}
+
+		@Override
+		int cardinality() {
+			return n;
+		}
+
+		@Override
+		Container and(Container other) {
+			char[] res = new char[n];
+			int k = 0;
+			if (other instanceof ArrayContainer) {
+				ArrayContainer o = (ArrayContainer) other;
+				for (int i = 0, j = 0; i < n && j < o.n;) {
+					if (values[i] < o.values[j]) i++;
+					else if (values[i] > o.values[j]) j++;
+					else {
+						res[k++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			} else {
+				for (int i = 0; i < n; i++) {
+					if (other.contains(values[i])) res[k++] = values[i];
+				}
+			}
+			return new ArrayContainer(res, k);
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof BitmapContainer) return other.or(this);
+			ArrayContainer o = (ArrayContainer) other;
+			char[] res = new char[n + o.n];
+			int k = 0, i = 0, j = 0;
+			while (i < n || j < o.n) {
+				if (j == o.n || i < n && values[i] < o.values[j]) res[k++] = values[i++];
+				else if (i == n || values[i] > o.values[j]) res[k++] = o.values[j++];
+				else {
+					res[k++] = values[i++];
+					j++;
+				}
+			}
+			ArrayContainer union = new ArrayContainer(res, k);
+			return k > ARRAY_MAX ? union.toBitmap() : union;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, n), n);
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for (int i = 0; i < n; i++) action.accept(high | values[i]);
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer b = new BitmapContainer();
+			for (int i = 0; i < n; i++) b.add(values[i]);
+			return b;
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+		private final long[] words;
+		private int cardinality;
+
+		BitmapContainer() {
+			words = new long[1024];
+		}
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		Container add(char x) {
+			long before = words[x >>> 6];
+			words[x >>> 6] = before | 1L << x;
+			if (before != words[x >>> 6]) cardinality++;
+			return this;
+		}
+
+		@Override
+		Container remove(char x) {
+			long before = words[x >>> 6];
+			words[x >>> 6] = before & ~(1L << x);
+			if (before != words[x >>> 6]) cardinality--;
+			return cardinality <= ARRAY_MAX ? toArray() : this;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return (words[x >>> 6] & 1L << x) != 0;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer) return other.and(this);
+			long[] o = ((BitmapContainer) other).words;
+			long[] res = new long[1024];
+			int c = 0;
+			for (int i = 0; i < res.length; i++) {
+				res[i] = words[i] & o[i];
+				c += Long.bitCount(res[i]);
+			}
+			BitmapContainer b = new BitmapContainer(res, c);
+			return c <= ARRAY_MAX ? b.toArray() : b;
+		}
+
+		@Override
+		Container or(Container other) {
+			long[] res = words.clone();
+			if (other instanceof ArrayContainer) {
+				BitmapContainer b = new BitmapContainer(res, cardinality);
+				other.forEach(0, x -> b.add((char) x));
+				return b;
+			}
+			long[] o = ((BitmapContainer) other).words;
+			int c = 0;
+			for (int i = 0; i < res.length; i++) {
+				res[i] |= o[i];
+				c += Long.bitCount(res[i]);
+			}
+			return new BitmapContainer(res, c);
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(words.clone(), cardinality);
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for (int i = 0; i < words.length; i++) {
+				for (long w = words[i]; w != 0; w &= w - 1) {
+					action.accept(high | i << 6 | Long.numberOfTrailingZeros(w));
+				}
+			}
+		}
+
+		private ArrayContainer toArray() {
+			char[] values = new char[cardinality];
+			int[] k = new int[1];
+			forEach(0, x -> values[k[0]++] = (char) x);
+			return new ArrayContainer(values, cardinality);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package mountainhuts;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bitmap indexes of the huts of a {@link HutStore}.
+ *
+ * There is a {@link HutBitmap} of hut rows for each category, for each
+ * province and for each altitude range. The bitmaps of categories and
+ * provinces are indexed by their dictionary codes and are updated as huts are
+ * added or removed; the bitmaps of the ranges are filled again when the ranges
+ * change.
+ *
+ * The bitmap returned for a key stays the bitmap of that key, so the
+ * selections built on it see the later changes: a category or a province
+ * without huts gets an empty bitmap that is filled when its first hut is
+ * added, and the bitmap of a range label is reused by the ranges with the same
+ * label, and left empty while the label is not one of the ranges.
+ */
+final class HutIndex {
+
+	private final HutStore store;
+	private HutBitmap[] byCategory = new HutBitmap[8];
+	private HutBitmap[] byProvince = new HutBitmap[8];
+	// bitmaps returned for categories and provinces without huts, synchronized
+	// as they are created by queries; null is a key like the others
+	private final Map<String, HutBitmap> pendingCategories = Collections.synchronizedMap(new HashMap<>());
+	private final Map<String, HutBitmap> pendingProvinces = Collections.synchronizedMap(new HashMap<>());
+	private AltitudeRanges ranges;
+	private HutBitmap[] byRange;
+	// bitmaps of all the range labels used so far
+	private final Map<String, HutBitmap> rangeLabels = Collections.synchronizedMap(new HashMap<>());
+
+	HutIndex(HutStore store, AltitudeRanges ranges) {
+		this.store = store;
+		for (int h = 0; h < store.huts; h++) {
+			if (store.removed[h]) continue;
+			byCategory = add(byCategory, store.category[h], h, store.categories, pendingCategories);
+			byProvince = add(byProvince, store.municipalityProvince[store.municipality[h]], h, store.provinces, pendingProvinces);
+		}
+		setRanges(ranges);
+	}
+
+	/**
+	 * Fill again the bitmaps of the altitude ranges.
+	 */
+	void setRanges(AltitudeRanges ranges) {
+		this.ranges = ranges;
+		rangeLabels.values().forEach(HutBitmap::clear);
+		byRange = new HutBitmap[ranges.buckets()];
+		for (int b = 0; b < byRange.length; b++) {
+			byRange[b] = rangeLabels.computeIfAbsent(ranges.label(b), k -> new HutBitmap());
+		}
+		for (int h = 0; h < store.huts; h++) {
+			if (!store.removed[h]) byRange[ranges.bucketOf(store.effectiveAltitude(h))].add(h);
+		}
+	}
+
+	void addHut(int h) {
+		byCategory = add(byCategory, store.category[h], h, store.categories, pendingCategories);
+		byProvince = add(byProvince, store.municipalityProvince[store.municipality[h]], h, store.provinces, pendingProvinces);
+		byRange[ranges.bucketOf(store.effectiveAltitude(h))].add(h);
+	}
+
+	/**
+	 * Remove a hut, before it is removed or updated in the store.
+	 */
+	void removeHut(int h) {
+		byCategory[store.category[h]].remove(h);
+		byProvince[store.municipalityProvince[store.municipality[h]]].remove(h);
+		byRange[ranges.bucketOf(store.effectiveAltitude(h))].remove(h);
+	}
+
+	HutBitmap category(String category) {
+		return get(byCategory, store.categories.find(category), category, pendingCategories);
+	}
+
+	HutBitmap province(String province) {
+		return get(byProvince, store.provinces.find(province), province, pendingProvinces);
+	}
+
+	HutBitmap range(String range) {
+		int b = ranges.bucketOf(range);
+		return b >= 0 ? byRange[b] : rangeLabels.computeIfAbsent(range, k -> new HutBitmap());
+	}
+
+	private static HutBitmap[] add(HutBitmap[] bitmaps, int code, int h, HutStore.Dictionary names,
+			Map<String, HutBitmap> pending) {
+		if (code >= bitmaps.length) bitmaps = Arrays.copyOf(bitmaps, Math.max(code + 1, bitmaps.length * 2));
+		if (bitmaps[code] == null) {
+			HutBitmap b = pending.isEmpty() ? null : pending.remove(names.value(code));
+			bitmaps[code] = b != null ? b : new HutBitmap();
+		}
+		bitmaps[code].add(h);
+		return bitmaps;
+	}
+
+	private static HutBitmap get(HutBitmap[] bitmaps, int code, String name, Map<String, HutBitmap> pending) {
+		if (code >= 0 && code < bitmaps.length && bitmaps[code] != null) return bitmaps[code];
+		return pending.computeIfAbsent(name, k -> new HutBitmap());
+	}
+}
@@ -0,0 +1,99 @@
+package mountainhuts;
+
+import java.util.Arrays;
+
+/**
+ * Sorted indexes of the huts of a {@link HutStore}, independent of the
+ * altitude ranges.
+ *
+ * For each province the hut rows are sorted by decreasing number of beds, so
+ * the k largest huts are the first k rows. All the huts are also sorted by
+ * altitude, with the prefix sums of their beds: the number of huts and of beds
+ * in any altitude interval are found with two binary searches.
+ *
+ * The indexes are a snapshot of the store when they are built.
+ */
+final class HutRanking {
+
+	// hut rows of each province, by province code, largest first
+	private final int[][] byBeds;
+	// effective altitudes in ascending order
+	private final int[] altitudes;
+	// bedsBelow[i] is the number of beds of the huts before position i
+	private final long[] bedsBelow;
+
+	HutRanking(HutStore store) {
+		int n = store.huts - store.removedHuts;
+		int[] provinces = new int[store.provinces.size()];
+		long[] keys = new long[n];
+		for (int h = 0, i = 0; h < store.huts; h++) {
+			if (store.removed[h]) continue;
+			provinces[store.municipalityProvince[store.municipality[h]]]++;
+			// most beds first, then by row
+			keys[i++] = (long) -beds(store, h) << 32 | h;
+		}
+		Arrays.sort(keys);
+		byBeds = new int[provinces.length][];
+		for (int p = 0; p < provinces.length; p++) byBeds[p] = new int[provinces[p]];
+		Arrays.fill(provinces, 0);
+		for (long key : keys) {
+			int h = (int) key;
+			int p = store.municipalityProvince[store.municipality[h]];
+			byBeds[p][provinces[p]++] = h;
+		}
+
+		for (int i = 0; i < n; i++) {
+			int h = (int) keys[i];
+			keys[i] = (long) store.effectiveAltitude(h) << 32 | h;
+		}
+		Arrays.sort(keys);
+		altitudes = new int[n];
+		bedsBelow = new long[n + 1];
+		for (int i = 0; i < n; i++) {
+			altitudes[i] = (int) (keys[i] >> 32);
+			bedsBelow[i + 1] = bedsBelow[i] + beds(store, (int) keys[i]);
+		}
+	}
+
+	private static int beds(HutStore store, int h) {
+		int b = store.beds[h];
+		return b != HutStore.MISSING ? b : 0;
+	}
+
+	/**
+	 * Return the rows of the k huts with most beds in a province.
+	 */
+	int[] largest(int province, int k) {
+		if (province < 0 || province >= byBeds.length) return new int[0];
+		int[] rows = byBeds[province];
+		return Arrays.copyOf(rows, Math.min(k, rows.length));
+	}
+
+	/**
+	 * Count the huts with an altitude greater than min and less than or equal
+	 * to max.
+	 */
+	int count(int min, int max) {
+		return Math.max(0, upperBound(max) - upperBound(min));
+	}
+
+	/**
+	 * Sum the beds of the huts with an altitude greater than min and less than
+	 * or equal to max.
+	 */
+	long beds(int min, int max) {
+		int from = upperBound(min), to = upperBound(max);
+		return from < to ? bedsBelow[to] - bedsBelow[from] : 0;
+	}
+
+	// position of the first altitude greater than a
+	private int upperBound(int a) {
+		int lo = 0, hi = altitudes.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (altitudes[mid] <= a) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+}
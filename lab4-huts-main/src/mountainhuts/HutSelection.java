@@ -0,0 +1,83 @@
+package mountainhuts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set of mountain huts of a {@link Region} selected through its bitmap
+ * indexes.
+ * 
+ * The selections returned by the region are views of its indexes and include
+ * the huts added later, also when no hut had the category or the province yet;
+ * a selection of an altitude range follows the later ranges with the same
+ * label, and is empty while there is none. The selections combined with
+ * {@link #and(HutSelection)} and {@link #or(HutSelection)} do not change.
+ */
+public class HutSelection {
+
+	private final HutStore store;
+	private final HutBitmap rows;
+
+	HutSelection(HutStore store, HutBitmap rows) {
+		this.store = store;
+		this.rows = rows;
+	}
+
+	/**
+	 * Return the huts in both this selection and another one of the same region.
+	 * 
+	 * @param other
+	 *            the other selection
+	 * @return the intersection of the selections
+	 */
+	public HutSelection and(HutSelection other) {
+		return new HutSelection(store, rows.and(other.rows));
+	}
+
+	/**
+	 * Return the huts in this selection or in another one of the same region.
+	 * 
+	 * @param other
+	 *            the other selection
+	 * @return the union of the selections
+	 */
+	public HutSelection or(HutSelection other) {
+		return new HutSelection(store, rows.or(other.rows));
+	}
+
+	/**
+	 * Count the selected huts.
+	 * 
+	 * @return the number of huts
+	 */
+	public int count() {
+		return rows.cardinality();
+	}
+
+	/**
+	 * Compute the total number of beds of the selected huts.
+	 * 
+	 * @return the number of beds
+	 */
+	public long totalBedsNumber() {
+		long[] total = new long[1];
+		int[] beds = store.beds;
+		rows.forEach(h -> {
+			if (beds[h] != HutStore.MISSING) total[0] += beds[h];
+		});
+		return total[0];
+	}
+
+	/**
+	 * Return the selected huts.
+	 * 
+	 * @return an unmodifiable collection of mountain huts
+	 */
+	public Collection<MountainHut> getMountainHuts() {
+		List<MountainHut> res = new ArrayList<>();
+		rows.forEach(h -> res.add(store.hut(h)));
+		return Collections.unmodifiableList(res);
+	}
+}
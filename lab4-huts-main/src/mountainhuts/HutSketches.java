@@ -0,0 +1,118 @@
+package mountainhuts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Quantile sketches of the altitude and of the number of beds of the huts of
+ * a {@link HutStore}, per province and per category.
+ *
+ * The sketches are indexed by the dictionary codes and are updated as huts are
+ * added. Sketches cannot forget a value: removing or updating a hut marks the
+ * sketches of its province and category as stale, and they are built again
+ * from the rows in the {@link HutIndex} the next time they are used. A missing
+ * number of beds counts as zero, huts without altitude are not part of the
+ * altitude sketches.
+ */
+final class HutSketches {
+
+	private final HutStore store;
+	private final HutIndex index;
+	private Sketches byProvince = new Sketches();
+	private Sketches byCategory = new Sketches();
+
+	HutSketches(HutStore store, HutIndex index) {
+		this.store = store;
+		this.index = index;
+		for (int h = 0; h < store.huts; h++) {
+			if (!store.removed[h]) addHut(h);
+		}
+	}
+
+	void addHut(int h) {
+		int altitude = store.effectiveAltitude(h);
+		int beds = store.beds[h] != HutStore.MISSING ? store.beds[h] : 0;
+		byProvince.add(store.municipalityProvince[store.municipality[h]], altitude, beds);
+		byCategory.add(store.category[h], altitude, beds);
+	}
+
+	/**
+	 * Account for the removal of a hut, before it is removed or updated in the
+	 * store.
+	 */
+	void removeHut(int h) {
+		byProvince.invalidate(store.municipalityProvince[store.municipality[h]]);
+		byCategory.invalidate(store.category[h]);
+	}
+
+	Map<String, QuantileSketch> altitudePerProvince() {
+		refresh(byProvince, store.provinces, true);
+		return byProvince.toMap(byProvince.altitude, store.provinces);
+	}
+
+	Map<String, QuantileSketch> bedsPerProvince() {
+		refresh(byProvince, store.provinces, true);
+		return byProvince.toMap(byProvince.beds, store.provinces);
+	}
+
+	Map<String, QuantileSketch> altitudePerCategory() {
+		refresh(byCategory, store.categories, false);
+		return byCategory.toMap(byCategory.altitude, store.categories);
+	}
+
+	Map<String, QuantileSketch> bedsPerCategory() {
+		refresh(byCategory, store.categories, false);
+		return byCategory.toMap(byCategory.beds, store.categories);
+	}
+
+	// builds again the stale sketches from the rows of their bitmap
+	private void refresh(Sketches sketches, HutStore.Dictionary dictionary, boolean province) {
+		for (int code = 0; code < sketches.stale.length; code++) {
+			if (!sketches.stale[code]) continue;
+			sketches.altitude[code] = null;
+			sketches.beds[code] = null;
+			sketches.stale[code] = false;
+			String value = dictionary.value(code);
+			HutBitmap rows = province ? index.province(value) : index.category(value);
+			int c = code;
+			rows.forEach(h -> sketches.add(c, store.effectiveAltitude(h), store.beds[h] != HutStore.MISSING ? store.beds[h] : 0));
+		}
+	}
+
+	/**
+	 * Sketches of the altitude and of the beds indexed by a dictionary code.
+	 */
+	private static final class Sketches {
+		QuantileSketch[] altitude = new QuantileSketch[8];
+		QuantileSketch[] beds = new QuantileSketch[8];
+		boolean[] stale = new boolean[8];
+
+		void add(int code, int altitudeValue, int bedsValue) {
+			if (code >= beds.length) {
+				int capacity = Math.max(code + 1, beds.length * 2);
+				altitude = Arrays.copyOf(altitude, capacity);
+				beds = Arrays.copyOf(beds, capacity);
+				stale = Arrays.copyOf(stale, capacity);
+			}
+			if (beds[code] == null) {
+				altitude[code] = new QuantileSketch();
+				beds[code] = new QuantileSketch();
+			}
+			if (altitudeValue != HutStore.MISSING) altitude[code].add(altitudeValue);
+			beds[code].add(bedsValue);
+		}
+
+		void invalidate(int code) {
+			if (code < stale.length) stale[code] = true;
+		}
+
+		Map<String, QuantileSketch> toMap(QuantileSketch[] sketches, HutStore.Dictionary dictionary) {
+			Map<String, QuantileSketch> res = new HashMap<>();
+			for (int code = 0; code < sketches.length; code++) {
+				if (sketches[code] != null && sketches[code].count() > 0) res.put(dictionary.value(code), sketches[code]);
+			}
+			return res;
+		}
+	}
+}
@@ -0,0 +1,436 @@
+package mountainhuts;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Struct-of-arrays storage of the municipalities and mountain huts of a region.
+ *
+ * Each attribute is a column of primitive values indexed by the row of the
+ * municipality or of the hut: missing numbers are stored as {@link #MISSING},
+ * provinces and categories as codes of a dictionary, the municipality of a hut
+ * as the row of the municipality. Rows are found by name with open addressing
+ * tables of row numbers.
+ *
+ * {@link Municipality} and {@link MountainHut} objects are flyweight views of a
+ * row, created the first time they are requested and then reused, so that the
+ * same object is returned for the same row. Threads asking for a view at the
+ * same time store it with a compare-and-set, and all of them return the first
+ * view stored.
+ *
+ * A removed hut keeps its row, marked as removed, and its name in the table:
+ * adding a hut with the same name reuses the row and its view.
+ *
+ * The store is updated by a single thread at a time. The columns read by the
+ * views are volatile, so a view published to another thread reads its row
+ * correctly even if the columns are reallocated by later additions.
+ */
+final class HutStore {
+
+	/** Marks a missing altitude or number of beds */
+	static final int MISSING = Integer.MIN_VALUE;
+
+	final Dictionary provinces = new Dictionary();
+	final Dictionary categories = new Dictionary();
+
+	int municipalities;
+	final StringColumn municipalityNames = new StringColumn();
+	volatile int[] municipalityProvince = new int[16];
+	volatile int[] municipalityAltitude = new int[16];
+	volatile AtomicReferenceArray<Municipality> municipalityViews = new AtomicReferenceArray<>(16);
+	final NameTable municipalityTable = new NameTable();
+	// rows of the municipalities created explicitly, not only referenced by a hut
+	int registered;
+	int[] registeredRows = new int[16];
+	boolean[] isRegistered = new boolean[16];
+
+	int huts;
+	final StringColumn hutNames = new StringColumn();
+	volatile int[] altitude = new int[16];
+	volatile int[] beds = new int[16];
+	volatile int[] municipality = new int[16];
+	volatile int[] category = new int[16];
+	volatile AtomicReferenceArray<MountainHut> hutViews = new AtomicReferenceArray<>(16);
+	final NameTable hutTable = new NameTable();
+	boolean[] removed = new boolean[16];
+	int removedHuts;
+
+	/**
+	 * Return the row of a municipality.
+	 *
+	 * @param name
+	 *            the name of the municipality
+	 * @return the row, or -1 if not available
+	 */
+	int municipalityRow(String name) {
+		return municipalityTable.find(municipalityNames, name);
+	}
+
+	String municipalityName(int m) {
+		return municipalityNames.get(m);
+	}
+
+	/**
+	 * Add a municipality.
+	 *
+	 * @return the row of the new municipality
+	 */
+	int addMunicipality(String name, String province, Integer altitude) {
+		int m = municipalities;
+		if (m == municipalityProvince.length) {
+			int capacity = Math.max(16, m * 2);
+			municipalityProvince = Arrays.copyOf(municipalityProvince, capacity);
+			municipalityAltitude = Arrays.copyOf(municipalityAltitude, capacity);
+			municipalityViews = copyOf(municipalityViews, capacity);
+			isRegistered = Arrays.copyOf(isRegistered, capacity);
+		}
+		municipalityNames.set(m, name);
+		municipalityProvince[m] = provinces.code(province);
+		municipalityAltitude[m] = altitude == null ? MISSING : altitude;
+		municipalities++;
+		municipalityTable.add(m, name);
+		return m;
+	}
+
+	/**
+	 * Mark a municipality as created explicitly, so that it is part of
+	 * {@link #registeredMunicipalities()}.
+	 *
+	 * @return {@code false} if the municipality was already registered
+	 */
+	boolean register(int m) {
+		if (isRegistered[m]) return false;
+		if (registered == registeredRows.length) registeredRows = Arrays.copyOf(registeredRows, Math.max(16, registered * 2));
+		registeredRows[registered++] = m;
+		isRegistered[m] = true;
+		return true;
+	}
+
+	/**
+	 * Return the row of the municipality of a view, adding it if it belongs to
+	 * another store. A municipality of another store with the name of one of
+	 * this store is mapped to it, so the hut returns the municipality of this
+	 * store instead of the given one.
+	 */
+	int rowOf(Municipality view) {
+		Objects.requireNonNull(view, "The municipality of a mountain hut of a region is required");
+		if (view.store == this) return view.row;
+		int m = municipalityRow(view.getName());
+		if (m < 0) {
+			m = addMunicipality(view.getName(), view.getProvince(), view.getAltitude());
+			municipalityViews.set(m, view);
+		}
+		return m;
+	}
+
+	/**
+	 * Return the view of a municipality.
+	 */
+	Municipality municipality(int m) {
+		AtomicReferenceArray<Municipality> views = municipalityViews;
+		Municipality view = views.get(m);
+		if (view != null) return view;
+		view = new Municipality(this, m);
+		Municipality stored = views.compareAndExchange(m, null, view);
+		return stored != null ? stored : view;
+	}
+
+	/**
+	 * Return the row of a mountain hut.
+	 *
+	 * @param name
+	 *            the name of the hut
+	 * @return the row, or -1 if not available or removed
+	 */
+	int hutRow(String name) {
+		int h = hutTable.find(hutNames, name);
+		return h >= 0 && removed[h] ? -1 : h;
+	}
+
+	String hutName(int h) {
+		return hutNames.get(h);
+	}
+
+	/**
+	 * Add a mountain hut, reusing the row of a removed hut with the same name.
+	 *
+	 * @return the row of the new hut
+	 */
+	int addHut(String name, Integer altitude, String category, Integer beds, int municipality) {
+		int h = hutTable.find(hutNames, name);
+		if (h >= 0 && removed[h]) {
+			removed[h] = false;
+			removedHuts--;
+			updateHut(h, altitude, category, beds, municipality);
+			return h;
+		}
+		h = huts;
+		if (h == this.altitude.length) {
+			int capacity = Math.max(16, h * 2);
+			this.altitude = Arrays.copyOf(this.altitude, capacity);
+			this.beds = Arrays.copyOf(this.beds, capacity);
+			this.municipality = Arrays.copyOf(this.municipality, capacity);
+			this.category = Arrays.copyOf(this.category, capacity);
+			hutViews = copyOf(hutViews, capacity);
+			removed = Arrays.copyOf(removed, capacity);
+		}
+		hutNames.set(h, name);
+		updateHut(h, altitude, category, beds, municipality);
+		huts++;
+		hutTable.add(h, name);
+		return h;
+	}
+
+	/**
+	 * Replace the attributes of a mountain hut.
+	 */
+	void updateHut(int h, Integer altitude, String category, Integer beds, int municipality) {
+		this.altitude[h] = altitude == null ? MISSING : altitude;
+		this.beds[h] = beds == null ? MISSING : beds;
+		this.municipality[h] = municipality;
+		this.category[h] = categories.code(category);
+	}
+
+	/**
+	 * Mark a mountain hut as removed.
+	 */
+	void removeHut(int h) {
+		removed[h] = true;
+		removedHuts++;
+	}
+
+	/**
+	 * Return the view of a mountain hut.
+	 */
+	MountainHut hut(int h) {
+		AtomicReferenceArray<MountainHut> views = hutViews;
+		MountainHut view = views.get(h);
+		if (view != null) return view;
+		view = new MountainHut(this, h);
+		MountainHut stored = views.compareAndExchange(h, null, view);
+		return stored != null ? stored : view;
+	}
+
+	private static <T> AtomicReferenceArray<T> copyOf(AtomicReferenceArray<T> views, int capacity) {
+		AtomicReferenceArray<T> res = new AtomicReferenceArray<>(capacity);
+		for (int i = 0; i < views.length(); i++) res.set(i, views.get(i));
+		return res;
+	}
+
+	/**
+	 * Return the altitude of a hut or, if missing, the one of its municipality.
+	 */
+	int effectiveAltitude(int h) {
+		int a = altitude[h];
+		return a != MISSING ? a : municipalityAltitude[municipality[h]];
+	}
+
+	/**
+	 * Return the municipalities created explicitly, as an unmodifiable collection.
+	 */
+	Collection<Municipality> registeredMunicipalities() {
+		return new RowCollection<>() {
+			@Override
+			public int size() {
+				return registered;
+			}
+
+			@Override
+			Municipality get(int i) {
+				return municipality(registeredRows[i]);
+			}
+		};
+	}
+
+	/**
+	 * Return the mountain huts that are not removed as an unmodifiable
+	 * collection.
+	 */
+	Collection<MountainHut> allHuts() {
+		return new RowCollection<>() {
+			@Override
+			public int size() {
+				return huts - removedHuts;
+			}
+
+			@Override
+			int rows() {
+				return huts;
+			}
+
+			@Override
+			boolean skip(int i) {
+				return removed[i];
+			}
+
+			@Override
+			MountainHut get(int i) {
+				return hut(i);
+			}
+		};
+	}
+
+	private abstract static class RowCollection<T> extends AbstractCollection<T> {
+		abstract T get(int i);
+
+		int rows() {
+			return size();
+		}
+
+		boolean skip(int i) {
+			return false;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<>() {
+				private int next;
+
+				@Override
+				public boolean hasNext() {
+					while (next < rows() && skip(next)) next++;
+					return next < rows();
+				}
+
+				@Override
+				public T next() {
+					if (!hasNext()) throw new NoSuchElementException();
+					return get(next++);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Dictionary encoding of strings, {@code null} is a value like the others.
+	 */
+	static final class Dictionary {
+		private volatile String[] values = new String[8];
+		private int size;
+		private final Map<String, Integer> codes = new HashMap<>();
+
+		int code(String value) {
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = size;
+				if (size == values.length) values = Arrays.copyOf(values, size * 2);
+				values[size++] = value;
+				codes.put(value, code);
+			}
+			return code;
+		}
+
+		/**
+		 * Return the code of a value, or -1 if the value is not in the dictionary.
+		 */
+		int find(String value) {
+			Integer code = codes.get(value);
+			return code == null ? -1 : code;
+		}
+
+		String value(int code) {
+			return values[code];
+		}
+
+		int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Column of strings. The strings of a mapped snapshot stay in the mapped
+	 * buffer until they are requested for the first time.
+	 */
+	static final class StringColumn {
+		private volatile String[] values = new String[16];
+		private ByteBuffer bytes;
+		private IntBuffer offsets;
+		private int mapped;
+
+		/**
+		 * Serve the first strings from a snapshot.
+		 *
+		 * @param offsets
+		 *            the offsets of the strings in the bytes, plus the end of the last
+		 */
+		void map(ByteBuffer bytes, IntBuffer offsets, int count) {
+			this.bytes = bytes;
+			this.offsets = offsets;
+			this.mapped = count;
+			values = new String[Math.max(16, count)];
+		}
+
+		String get(int i) {
+			String value = values[i];
+			if (value == null && i < mapped) {
+				byte[] b = new byte[offsets.get(i + 1) - offsets.get(i)];
+				bytes.get(offsets.get(i), b);
+				value = new String(b, StandardCharsets.UTF_8);
+				values[i] = value;
+			}
+			return value;
+		}
+
+		void set(int i, String value) {
+			if (i == values.length) values = Arrays.copyOf(values, Math.max(16, i * 2));
+			values[i] = value;
+		}
+	}
+
+	/**
+	 * Open addressing table of rows, the keys are the names of the rows.
+	 *
+	 * The hash of the name of each row is kept, so that the table is resized
+	 * and most of the mismatches are found without reading the names.
+	 */
+	static final class NameTable {
+		// row + 1, 0 for a free slot
+		int[] slots = new int[32];
+		int[] hashes = new int[16];
+
+		int find(StringColumn names, String name) {
+			int h = hash(name);
+			int mask = slots.length - 1;
+			for (int i = h & mask; slots[i] != 0; i = (i + 1) & mask) {
+				int row = slots[i] - 1;
+				if (hashes[row] == h && names.get(row).equals(name)) return row;
+			}
+			return -1;
+		}
+
+		void add(int row, String name) {
+			if (row == hashes.length) hashes = Arrays.copyOf(hashes, Math.max(16, row * 2));
+			hashes[row] = hash(name);
+			if ((row + 1) * 4 > slots.length * 3) {
+				int[] old = slots;
+				slots = new int[old.length * 2];
+				for (int s : old) {
+					if (s != 0) insert(s - 1);
+				}
+			}
+			insert(row);
+		}
+
+		private void insert(int row) {
+			int mask = slots.length - 1;
+			int i = hashes[row] & mask;
+			while (slots[i] != 0) i = (i + 1) & mask;
+			slots[i] = row + 1;
+		}
+
+		private static int hash(String name) {
+			int h = name.hashCode();
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package mountainhuts;
+
+import java.util.function.Supplier;
+
+/**
+ * Structure of a region built on its first use.
+ *
+ * The structure is built at most once also when more threads ask for it at
+ * the same time: the first one builds it holding the lock of this object and
+ * the others wait for it; afterwards the structure is read from a volatile
+ * field without locking. It can be dropped, when the data it derives from
+ * changes, and it is built again on the next use; dropping it must not race
+ * with the readers, as the other changes to a {@link Region}.
+ *
+ * The first build is recorded as a {@link WarmUp}, without the time spent
+ * building the other structures it needs.
+ */
+final class Lazy<T> {
+
+	// time spent by the current thread building the structures needed by the one it is building
+	private static final ThreadLocal<long[]> NESTED = ThreadLocal.withInitial(() -> new long[1]);
+
+	private final String name;
+	private final Supplier<T> builder;
+	private volatile T value;
+	private volatile WarmUp warmUp;
+
+	/**
+	 * Create a structure built on first use.
+	 *
+	 * @param name
+	 *            the name of the structure in the warm-up metrics
+	 * @param builder
+	 *            the builder of the structure
+	 */
+	Lazy(String name, Supplier<T> builder) {
+		this.name = name;
+		this.builder = builder;
+	}
+
+	/**
+	 * Create a structure that is already available.
+	 */
+	static <T> Lazy<T> of(String name, T value) {
+		Lazy<T> res = new Lazy<>(name, () -> value);
+		res.value = value;
+		return res;
+	}
+
+	/**
+	 * Return the structure, building it if needed.
+	 */
+	T get() {
+		T res = value;
+		if (res != null) return res;
+		synchronized (this) {
+			res = value;
+			if (res == null) {
+				long[] nested = NESTED.get();
+				long outer = nested[0];
+				nested[0] = 0;
+				long start = System.nanoTime();
+				try {
+					res = builder.get();
+					long end = System.nanoTime();
+					if (warmUp == null) warmUp = new WarmUp(name, WarmUp.trigger(), end, end - start - nested[0]);
+				} finally {
+					nested[0] = outer + System.nanoTime() - start;
+				}
+				value = res;
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * Return the structure if it is built, without building it.
+	 *
+	 * @return the structure or {@code null}
+	 */
+	T peek() {
+		return value;
+	}
+
+	/**
+	 * Drop the structure, it is built again on the next use.
+	 */
+	void reset() {
+		value = null;
+	}
+
+	/**
+	 * Return the first build of the structure.
+	 *
+	 * @return the warm-up or {@code null} if the structure was never built
+	 */
+	WarmUp warmUp() {
+		return warmUp;
+	}
+}
@@ -8,40 +8,69 @@ import java.util.Optional;
  * It includes a name, optional altitude, category,
  * number of beds and location municipality.
  *  
+ * The huts of a region are views of a row of the columns of a
+ * {@link HutStore}. A hut created with the constructor belongs to no region
+ * and keeps its attributes in its own fields.
  *
  */
 public class MountainHut {
-	String name, category;
-	Integer beds;
-	Municipality municipality;
-	Optional<Integer> altitude;
-
+	// the store is null for a hut created with the public constructor
+	final HutStore store;
+	final int row;
+	private final Detached detached;
 
 	public MountainHut(String name, Integer altitude, String category, Integer bedsNumber, Municipality municipality) {
-		this.name=name;
-		this.category=category;
-		this.beds=bedsNumber;
-		this.municipality=municipality;
-		this.altitude= Optional.ofNullable(altitude);
+		this.store = null;
+		this.row = -1;
+		this.detached = new Detached(name, altitude, category, bedsNumber, municipality);
+	}
+
+	MountainHut(HutStore store, int row) {
+		this.store = store;
+		this.row = row;
+		this.detached = null;
 	}
 
 	public String getName() {
-		return name;
+		if (detached != null) return detached.name;
+		return store.hutName(row);
 	}
 
 	public Optional<Integer> getAltitude() {
-		return altitude;
+		if (detached != null) return Optional.ofNullable(detached.altitude);
+		int altitude = store.altitude[row];
+		return altitude == HutStore.MISSING ? Optional.empty() : Optional.of(altitude);
 	}
 
 	public String getCategory() {
-		return category;
+		if (detached != null) return detached.category;
+		return store.categories.value(store.category[row]);
 	}
 
 	public Integer getBedsNumber() {
-		return beds;
+		if (detached != null) return detached.beds;
+		int beds = store.beds[row];
+		return beds == HutStore.MISSING ? null : beds;
 	}
 
 	public Municipality getMunicipality() {
-		return municipality;
+		if (detached != null) return detached.municipality;
+		return store.municipality(store.municipality[row]);
+	}
+
+	private static final class Detached {
+		final String name;
+		final Integer altitude;
+		final String category;
+		final Integer beds;
+		final Municipality municipality;
+
+		Detached(String name, Integer altitude, String category, Integer beds, Municipality municipality) {
+			this.name = name;
+			this.altitude = altitude;
+			this.category = category;
+			this.beds = beds;
+			this.municipality = municipality;
+		}
 	}
 }
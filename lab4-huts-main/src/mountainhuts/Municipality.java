@@ -4,27 +4,54 @@ package mountainhuts;
  * Class representing a municipality that hosts a mountain hut.
  * It is a data class with getters for name, province, and altitude
  * 
+ * The municipalities of a region are views of a row of the columns of a
+ * {@link HutStore}. A municipality created with the constructor belongs to no
+ * region and keeps its attributes in its own fields.
+ * 
  */
 public class Municipality {
-	private String name, province;
-	private Integer altitude;
+	// the store is null for a municipality created with the public constructor
+	final HutStore store;
+	final int row;
+	private final Detached detached;
 
 	public Municipality(String name, String province, Integer altitude) {
-		this.altitude=altitude;
-		this.name=name;
-		this.province=province;
+		this.store = null;
+		this.row = -1;
+		this.detached = new Detached(name, province, altitude);
+	}
+
+	Municipality(HutStore store, int row) {
+		this.store = store;
+		this.row = row;
+		this.detached = null;
 	}
 
 	public String getName() {
-		return name;
+		if (detached != null) return detached.name;
+		return store.municipalityName(row);
 	}
 
 	public String getProvince() {
-		return province;
+		if (detached != null) return detached.province;
+		return store.provinces.value(store.municipalityProvince[row]);
 	}
 
 	public Integer getAltitude() {
-		return altitude;
+		if (detached != null) return detached.altitude;
+		int altitude = store.municipalityAltitude[row];
+		return altitude == HutStore.MISSING ? null : altitude;
 	}
 
+	private static final class Detached {
+		final String name;
+		final String province;
+		final Integer altitude;
+
+		Detached(String name, String province, Integer altitude) {
+			this.name = name;
+			this.province = province;
+			this.altitude = altitude;
+		}
+	}
 }
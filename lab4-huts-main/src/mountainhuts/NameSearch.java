@@ -0,0 +1,316 @@
+package mountainhuts;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Search index over the names of the rows of a {@link HutStore}.
+ *
+ * Names are normalized to lower case letters and digits without accents, the
+ * other characters separate the words: "ALPE FORNA'" becomes "alpe forna".
+ *
+ * Prefix search uses a sorted array of the positions where a word starts in a
+ * name, so a prefix matches the beginning of any word. Fuzzy search uses an
+ * inverted index of the trigrams of the names, in compressed sparse rows: the
+ * candidates are taken from the shortest posting lists of the query and ranked
+ * by the Dice coefficient of their trigrams with the ones of the query.
+ *
+ * The index is a snapshot of the rows when it is built.
+ */
+final class NameSearch {
+
+	// share of the trigrams of the query a result must contain
+	private static final double MIN_SHARED = 1.0 / 3;
+
+	private final String[] names;
+	// row in the high bits and position of a word start in the low bits, by suffix
+	private final long[] words;
+	// distinct trigrams, the rows of trigrams[i] are rows[starts[i]] to rows[starts[i + 1]]
+	private final int[] trigrams;
+	private final int[] starts;
+	private final int[] rows;
+	private final int[] trigramCounts;
+
+	/**
+	 * Build the index.
+	 *
+	 * @param size
+	 *            the number of rows
+	 * @param name
+	 *            the name of a row
+	 * @param live
+	 *            the rows to index
+	 */
+	NameSearch(int size, IntFunction<String> name, IntPredicate live) {
+		names = new String[size];
+		trigramCounts = new int[size];
+		long[] w = new long[16];
+		long[] t = new long[64];
+		int nw = 0, nt = 0;
+		for (int r = 0; r < size; r++) {
+			if (!live.test(r)) continue;
+			String s = normalize(name.apply(r));
+			names[r] = s;
+			for (int i = 0; i < s.length(); i++) {
+				if (i == 0 || s.charAt(i - 1) == ' ') {
+					if (nw == w.length) w = Arrays.copyOf(w, nw * 2);
+					w[nw++] = (long) r << 32 | i;
+				}
+			}
+			int[] grams = trigrams(s);
+			trigramCounts[r] = grams.length;
+			if (nt + grams.length > t.length) t = Arrays.copyOf(t, Math.max(nt + grams.length, t.length * 2));
+			for (int g : grams) t[nt++] = (long) g << 32 | r;
+		}
+		words = Arrays.copyOf(w, nw);
+		sortWords(words);
+
+		t = Arrays.copyOf(t, nt);
+		Arrays.sort(t);
+		rows = new int[nt];
+		int distinct = 0;
+		for (int i = 0; i < nt; i++) {
+			if (i == 0 || t[i] >>> 32 != t[i - 1] >>> 32) distinct++;
+		}
+		trigrams = new int[distinct];
+		starts = new int[distinct + 1];
+		for (int i = 0, g = -1; i < nt; i++) {
+			if (i == 0 || t[i] >>> 32 != t[i - 1] >>> 32) {
+				trigrams[++g] = (int) (t[i] >>> 32);
+				starts[g] = i;
+			}
+			rows[i] = (int) t[i];
+		}
+		starts[distinct] = nt;
+	}
+
+	/**
+	 * Return the rows with a word starting with a prefix, in alphabetical order
+	 * of the matching words.
+	 */
+	int[] prefix(String prefix, int limit) {
+		String p = normalize(prefix);
+		int lo = 0, hi = words.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(words[mid], p) < 0) lo = mid + 1;
+			else hi = mid;
+		}
+		int[] res = new int[Math.min(limit, 16)];
+		int n = 0;
+		for (int i = lo; i < words.length && n < limit; i++) {
+			int r = (int) (words[i] >>> 32);
+			if (!names[r].startsWith(p, (int) words[i])) break;
+			if (contains(res, n, r)) continue;
+			if (n == res.length) res = Arrays.copyOf(res, Math.min(limit, n * 2));
+			res[n++] = r;
+		}
+		return Arrays.copyOf(res, n);
+	}
+
+	/**
+	 * Return the rows with a name similar to a query, the most similar first.
+	 */
+	int[] similar(String query, int limit) {
+		String q = normalize(query);
+		int[] grams = trigrams(q);
+		if (grams.length == 0) return new int[0];
+		// posting lists of the query, the shortest first
+		long[] lists = new long[grams.length];
+		int found = 0;
+		for (int g : grams) {
+			int i = Arrays.binarySearch(trigrams, g);
+			if (i >= 0) lists[found++] = (long) (starts[i + 1] - starts[i]) << 32 | i;
+		}
+		Arrays.sort(lists, 0, found);
+		int[] order = new int[found];
+		for (int i = 0; i < found; i++) order[i] = (int) lists[i];
+
+		// a row sharing enough trigrams is in one of the shortest lists
+		int needed = Math.max(1, (int) Math.ceil(grams.length * MIN_SHARED));
+		if (found < needed) return new int[0];
+		int scanned = 0;
+		for (int i = 0; i <= found - needed; i++) scanned += starts[order[i] + 1] - starts[order[i]];
+		SharedCounts shared = new SharedCounts(scanned);
+		int[] candidates = new int[16];
+		int nc = 0;
+		for (int i = 0; i <= found - needed; i++) {
+			int l = order[i];
+			for (int j = starts[l]; j < starts[l + 1]; j++) {
+				int r = rows[j];
+				if (shared.increment(r) > 0) continue;
+				if (nc == candidates.length) candidates = Arrays.copyOf(candidates, nc * 2);
+				candidates[nc++] = r;
+			}
+		}
+		// the longer lists only count for the candidates: scanned when they are
+		// shorter than the searches of all the candidates in them
+		int log = 32 - Integer.numberOfLeadingZeros(rows.length);
+		for (int i = found - needed + 1; i < found; i++) {
+			int l = order[i];
+			if (starts[l + 1] - starts[l] < (long) nc * log) {
+				for (int j = starts[l]; j < starts[l + 1]; j++) shared.incrementIfPresent(rows[j]);
+			} else {
+				for (int c = 0; c < nc; c++) {
+					if (Arrays.binarySearch(rows, starts[l], starts[l + 1], candidates[c]) >= 0) shared.increment(candidates[c]);
+				}
+			}
+		}
+
+		long[] ranked = new long[16];
+		int nr = 0;
+		for (int i = 0; i < nc; i++) {
+			int r = candidates[i];
+			int count = shared.get(r);
+			if (count < needed) continue;
+			// Dice coefficient, scaled to sort as an integer
+			int score = (int) (2_000_000L * count / (grams.length + trigramCounts[r]));
+			if (nr == ranked.length) ranked = Arrays.copyOf(ranked, nr * 2);
+			ranked[nr++] = (long) (Integer.MAX_VALUE - score) << 32 | r;
+		}
+		Arrays.sort(ranked, 0, nr);
+		int[] res = new int[Math.min(limit, nr)];
+		for (int i = 0; i < res.length; i++) res[i] = (int) ranked[i];
+		return res;
+	}
+
+	private int compare(long word, String prefix) {
+		String name = names[(int) (word >>> 32)];
+		int from = (int) word;
+		int n = Math.min(name.length() - from, prefix.length());
+		for (int i = 0; i < n; i++) {
+			int c = name.charAt(from + i) - prefix.charAt(i);
+			if (c != 0) return c;
+		}
+		return name.length() - from < prefix.length() ? -1 : 0;
+	}
+
+	private int compare(long a, long b) {
+		String x = names[(int) (a >>> 32)], y = names[(int) (b >>> 32)];
+		int i = (int) a, j = (int) b;
+		for (; i < x.length() && j < y.length(); i++, j++) {
+			int c = x.charAt(i) - y.charAt(j);
+			if (c != 0) return c;
+		}
+		int c = (x.length() - i) - (y.length() - j);
+		return c != 0 ? c : Long.compare(a, b);
+	}
+
+	// merge sort of the word starts by the text that follows them
+	private void sortWords(long[] a) {
+		long[] tmp = new long[a.length];
+		for (int width = 1; width < a.length; width *= 2) {
+			for (int lo = 0; lo < a.length - width; lo += 2 * width) {
+				int mid = lo + width, hi = Math.min(lo + 2 * width, a.length);
+				int i = lo, j = mid, k = lo;
+				while (i < mid && j < hi) tmp[k++] = compare(a[i], a[j]) <= 0 ? a[i++] : a[j++];
+				while (i < mid) tmp[k++] = a[i++];
+				while (j < hi) tmp[k++] = a[j++];
+				System.arraycopy(tmp, lo, a, lo, hi - lo);
+			}
+		}
+	}
+
+	/**
+	 * Number of trigrams of the query shared by each candidate row, in an open
+	 * addressing table sized for the candidates instead of an array of all the
+	 * rows, so a query costs as much as the posting lists it scans.
+	 */
+	private static final class SharedCounts {
+		private final int[] keys; // row + 1, 0 when the slot is empty
+		private final int[] counts;
+		private final int mask;
+
+		SharedCounts(int candidates) {
+			// at most half full
+			int capacity = Integer.highestOneBit(Math.max(16, 2 * candidates) - 1) << 1;
+			keys = new int[capacity];
+			counts = new int[capacity];
+			mask = capacity - 1;
+		}
+
+		private int slot(int row) {
+			int h = row * 0x9E3779B9;
+			int i = (h ^ h >>> 16) & mask;
+			while (keys[i] != 0 && keys[i] != row + 1) i = (i + 1) & mask;
+			return i;
+		}
+
+		/**
+		 * Count a trigram of a row, adding the row if missing.
+		 *
+		 * @return the count before this trigram
+		 */
+		int increment(int row) {
+			int i = slot(row);
+			if (keys[i] == 0) keys[i] = row + 1;
+			return counts[i]++;
+		}
+
+		void incrementIfPresent(int row) {
+			int i = slot(row);
+			if (keys[i] != 0) counts[i]++;
+		}
+
+		int get(int row) {
+			int i = slot(row);
+			return keys[i] == 0 ? 0 : counts[i];
+		}
+	}
+
+	private static boolean contains(int[] a, int n, int value) {
+		for (int i = 0; i < n; i++) {
+			if (a[i] == value) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return the distinct trigrams of a normalized name, padded with spaces.
+	 */
+	static int[] trigrams(String s) {
+		if (s.isEmpty()) return new int[0];
+		String padded = "  " + s + " ";
+		int[] res = new int[padded.length() - 2];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = code(padded.charAt(i)) << 12 | code(padded.charAt(i + 1)) << 6 | code(padded.charAt(i + 2));
+		}
+		Arrays.sort(res);
+		int n = 0;
+		for (int i = 0; i < res.length; i++) {
+			if (i == 0 || res[i] != res[i - 1]) res[n++] = res[i];
+		}
+		return Arrays.copyOf(res, n);
+	}
+
+	// 6 bits per character, the letters outside a-z share the last codes
+	private static int code(char c) {
+		if (c == ' ') return 0;
+		if (c >= 'a' && c <= 'z') return c - 'a' + 1;
+		if (c >= '0' && c <= '9') return c - '0' + 27;
+		return 37 + c % 27;
+	}
+
+	/**
+	 * Normalize a name to lower case words of letters and digits without
+	 * accents, separated by a space.
+	 */
+	static String normalize(String name) {
+		String s = Normalizer.normalize(name, Normalizer.Form.NFD);
+		StringBuilder res = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				res.append(Character.toLowerCase(c));
+			} else if (Character.getType(c) != Character.NON_SPACING_MARK && res.length() > 0
+					&& res.charAt(res.length() - 1) != ' ') {
+				res.append(' ');
+			}
+		}
+		int n = res.length();
+		if (n > 0 && res.charAt(n - 1) == ' ') res.setLength(n - 1);
+		return res.toString();
+	}
+}
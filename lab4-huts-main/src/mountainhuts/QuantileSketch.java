@@ -0,0 +1,167 @@
+package mountainhuts;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable KLL sketch of the quantiles of a stream of integers.
+ *
+ * The values are kept in a hierarchy of compactors: a value in level h stands
+ * for 2<sup>h</sup> values of the stream. When the sketch is full the lowest
+ * level over its capacity is sorted and every other value, starting from a
+ * random offset, is promoted to the next level. The capacity of the levels
+ * decreases geometrically from the top, so a sketch keeps about 3k values
+ * whatever the length of the stream, and the rank of a returned quantile is
+ * within about 1.7/k of the requested one with high probability.
+ *
+ * Two sketches merge by concatenating their levels and compacting again; the
+ * result has the same guarantees as a sketch of the two streams. The random
+ * offsets come from a fixed seed, so the same stream always gives the same
+ * sketch.
+ */
+final class QuantileSketch {
+
+	static final int DEFAULT_K = 200;
+	private static final int MIN_CAPACITY = 8;
+
+	private final int k;
+	private int[][] levels = new int[1][];
+	private int[] sizes = new int[1];
+	private int[] capacities;
+	private int totalCapacity;
+	private long count;
+	private int retained;
+	private long seed = 0x9E3779B97F4A7C15L;
+	// values sorted with their cumulative weights, built on demand
+	private int[] sortedValues;
+	private long[] sortedWeights;
+
+	QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	QuantileSketch(int k) {
+		this.k = k;
+		levels[0] = new int[MIN_CAPACITY];
+		computeCapacities();
+	}
+
+	/**
+	 * Return a copy of this sketch.
+	 */
+	QuantileSketch copy() {
+		QuantileSketch res = new QuantileSketch(k);
+		return res.merge(this);
+	}
+
+	long count() {
+		return count;
+	}
+
+	void add(int value) {
+		append(0, value);
+		count++;
+		retained++;
+		sortedValues = null;
+		if (retained >= totalCapacity) compress();
+	}
+
+	/**
+	 * Add the values summarized by another sketch.
+	 *
+	 * @return this sketch
+	 */
+	QuantileSketch merge(QuantileSketch other) {
+		for (int h = 0; h < other.levels.length; h++) {
+			for (int i = 0; i < other.sizes[h]; i++) append(h, other.levels[h][i]);
+			retained += other.sizes[h];
+		}
+		count += other.count;
+		sortedValues = null;
+		while (retained >= totalCapacity) compress();
+		return this;
+	}
+
+	/**
+	 * Return the value with the given rank among the values added.
+	 *
+	 * @param q
+	 *            the rank, between 0 and 1
+	 */
+	int quantile(double q) {
+		if (count == 0) throw new IllegalStateException("Empty sketch");
+		if (q < 0 || q > 1) throw new IllegalArgumentException("Invalid rank " + q);
+		if (sortedValues == null) sort();
+		long rank = Math.max(1, (long) Math.ceil(q * sortedWeights[sortedWeights.length - 1]));
+		int i = Arrays.binarySearch(sortedWeights, rank);
+		return sortedValues[i >= 0 ? i : -i - 1];
+	}
+
+	private void sort() {
+		long[] packed = new long[retained];
+		int n = 0;
+		for (int h = 0; h < levels.length; h++) {
+			// value in the high bits, level in the low bits
+			for (int i = 0; i < sizes[h]; i++) packed[n++] = (long) levels[h][i] << 32 | h;
+		}
+		Arrays.sort(packed);
+		int[] values = new int[n];
+		long[] weights = new long[n];
+		long total = 0;
+		for (int i = 0; i < n; i++) {
+			values[i] = (int) (packed[i] >> 32);
+			total += 1L << (int) packed[i];
+			weights[i] = total;
+		}
+		sortedValues = values;
+		sortedWeights = weights;
+	}
+
+	private void append(int h, int value) {
+		if (h >= levels.length) {
+			levels = Arrays.copyOf(levels, h + 1);
+			sizes = Arrays.copyOf(sizes, h + 1);
+			computeCapacities();
+		}
+		int[] level = levels[h];
+		if (level == null) level = levels[h] = new int[MIN_CAPACITY];
+		if (sizes[h] == level.length) level = levels[h] = Arrays.copyOf(level, level.length * 2);
+		level[sizes[h]++] = value;
+	}
+
+	/**
+	 * Compact the lowest level over its capacity into the next one.
+	 */
+	private void compress() {
+		int h = 0;
+		while (h < levels.length - 1 && sizes[h] < capacities[h]) h++;
+		int[] level = levels[h];
+		int size = sizes[h];
+		// an odd value stays in the level, so the total weight does not change
+		int even = size & ~1;
+		Arrays.sort(level, 0, size);
+		int offset = nextBit();
+		for (int i = offset; i < even; i += 2) append(h + 1, level[i]);
+		if (even < size) level[0] = level[size - 1];
+		sizes[h] = size - even;
+		retained -= even / 2;
+	}
+
+	// the capacity of a level decreases with its distance from the top
+	private void computeCapacities() {
+		capacities = new int[levels.length];
+		totalCapacity = 0;
+		for (int h = 0; h < levels.length; h++) {
+			int depth = levels.length - 1 - h;
+			capacities[h] = Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3, depth)));
+			totalCapacity += capacities[h];
+		}
+	}
+
+	private int nextBit() {
+		// xorshift
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		return (int) (seed >>> 63);
+	}
+}
@@ -3,11 +3,10 @@ package mountainhuts;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
 
-import java.util.function.Function;
-import java.util.function.Predicate;
 
 import static java.util.stream.Collectors.*;
 
@@ -22,9 +21,20 @@ import static java.util.stream.Collectors.*;
 public class Region {
 
 	private String name;
-	private List<String> ranges = new ArrayList<>();
-	private Map<String, Municipality> muniMap = new HashMap<>();
-	private Map<String, MountainHut> hutMap = new HashMap<>();
+
+	private AltitudeRanges ranges = AltitudeRanges.NONE;
+	// columns of the municipalities and of the huts, read from the file on
+	// first use by a lazy region
+	private final Lazy<HutStore> store;
+	// aggregates and indexes, built on first use and then kept up to date
+	private final Lazy<RegionStats> stats;
+	private final Lazy<HutIndex> index;
+	private final Lazy<HutSketches> sketches;
+	// name search indexes, built on demand and dropped on changes
+	private final Lazy<NameSearch> hutSearch;
+	private final Lazy<NameSearch> municipalitySearch;
+	// sorted by beds and by altitude, built on demand and dropped on changes
+	private final Lazy<HutRanking> ranking;
 
 
 	/**
@@ -34,7 +44,58 @@ public class Region {
 	 *            the name of the region
 	 */
 	public Region(String name) {
+		this(name, new HutStore(), AltitudeRanges.NONE);
+	}
+
+	Region(String name, HutStore store, AltitudeRanges ranges) {
+		this(name, Lazy.of("load", store), ranges);
+	}
+
+	Region(String name, Lazy<HutStore> store, AltitudeRanges ranges) {
 		this.name=name;
+		this.store=store;
+		this.ranges=ranges;
+		this.stats=new Lazy<>("stats", () -> RegionStats.of(store(), this.ranges));
+		this.index=new Lazy<>("index", () -> new HutIndex(store(), this.ranges));
+		this.sketches=new Lazy<>("sketches", () -> new HutSketches(store(), index.get()));
+		this.hutSearch=new Lazy<>("hutSearch", () -> {
+			HutStore s = store();
+			return new NameSearch(s.huts, s::hutName, h -> !s.removed[h]);
+		});
+		this.municipalitySearch=new Lazy<>("municipalitySearch", () -> {
+			HutStore s = store();
+			return new NameSearch(s.municipalities, s::municipalityName, m -> s.isRegistered[m]);
+		});
+		this.ranking=new Lazy<>("ranking", () -> new HutRanking(store()));
+	}
+
+	/**
+	 * Build the structures that a region loaded eagerly has before its first
+	 * query.
+	 */
+	void initialize() {
+		stats.get();
+		index.get();
+	}
+
+	HutStore store() {
+		return store.get();
+	}
+
+	AltitudeRanges ranges() {
+		return ranges;
+	}
+
+	RegionStats stats() {
+		return stats.get();
+	}
+
+	HutSketches sketches() {
+		return sketches.get();
+	}
+
+	HutIndex index() {
+		return index.get();
 	}
 
 	/**
@@ -48,15 +109,19 @@ public class Region {
 
 	/**
 	 * Create the ranges given their textual representation in the format
-	 * "[minValue]-[maxValue]".
+	 * "[minValue]-[maxValue]". The new ranges replace the previous ones.
+	 * 
+	 * The statistics of the region are rebuilt for the new ranges on their next
+	 * use.
 	 * 
 	 * @param ranges
 	 *            an array of textual ranges
 	 */
 	public void setAltitudeRanges(String... ranges) {
-
-		this.ranges.addAll(Arrays.asList(ranges));
-
+		this.ranges = new AltitudeRanges(ranges);
+		stats.reset();
+		HutIndex built = index.peek();
+		if (built != null) built.setRanges(this.ranges);
 	}
 
 	/**
@@ -68,15 +133,8 @@ public class Region {
 	 * @return a string representing the range
 	 */
 	public String getAltitudeRange(Integer altitude) {
-
-		Predicate<String[]> inrange = temp->Integer.parseInt(temp[0])<altitude && Integer.parseInt(temp[1])>=altitude;
-
-		return ranges.stream()
-			.map(s->s.split("-"))
-			.filter(inrange)
-			.map(s->String.join("-", s))
-			.findFirst()
-			.orElse("0-INF");
+		if (altitude == null) return AltitudeRanges.DEFAULT_RANGE;
+		return ranges.label(ranges.bucketOf(altitude));
 	}
 
 	/**
@@ -87,7 +145,7 @@ public class Region {
 	 * @return a collection of municipalities
 	 */
 	public Collection<Municipality> getMunicipalities() {
-		return muniMap.values();
+		return store().registeredMunicipalities();
 	}
 
 	/**
@@ -98,7 +156,7 @@ public class Region {
 	 * @return a collection of mountain huts
 	 */
 	public Collection<MountainHut> getMountainHuts() {
-		return hutMap.values();
+		return store().allHuts();
 	}
 
 	/**
@@ -114,8 +172,23 @@ public class Region {
 	 * @return the municipality
 	 */
 	public Municipality createOrGetMunicipality(String name, String province, Integer altitude) {
-		muniMap.putIfAbsent(name, new Municipality(name, province, altitude));
-		return muniMap.get(name);
+		return store().municipality(putMunicipality(name, province, altitude));
+	}
+
+	/**
+	 * Add a municipality if it is not already available.
+	 *
+	 * @return the row of the municipality in the store
+	 */
+	int putMunicipality(String name, String province, Integer altitude) {
+		int m = store().municipalityRow(name);
+		if (m < 0) m = store().addMunicipality(name, province, altitude);
+		if (store().register(m)) {
+			RegionStats built = stats.peek();
+			if (built != null) built.addMunicipality(m);
+			municipalitySearch.reset();
+		}
+		return m;
 	}
 
 	/**
@@ -129,13 +202,15 @@ public class Region {
 	 * @param bedsNumber
 	 *            the number of beds in the mountain hut
 	 * @param municipality
-	 *            the municipality in which the mountain hut is located
+	 *            the municipality in which the mountain hut is located; a
+	 *            municipality of another region, or created with its
+	 *            constructor, is replaced by the one with the same name in this
+	 *            region, added if missing
 	 * @return the mountain hut
 	 */
 	public MountainHut createOrGetMountainHut(String name, String category, Integer bedsNumber,
 			Municipality municipality) {
-		hutMap.putIfAbsent(name, new MountainHut(name, null, category, bedsNumber, municipality));
-		return hutMap.get(name);
+		return createOrGetMountainHut(name, null, category, bedsNumber, municipality);
 	}
 
 	/**
@@ -151,13 +226,103 @@ public class Region {
 	 * @param bedsNumber
 	 *            the number of beds in the mountain hut
 	 * @param municipality
-	 *            the municipality in which the mountain hut is located
+	 *            the municipality in which the mountain hut is located; a
+	 *            municipality of another region, or created with its
+	 *            constructor, is replaced by the one with the same name in this
+	 *            region, added if missing
 	 * @return a mountain hut
 	 */
 	public MountainHut createOrGetMountainHut(String name, Integer altitude, String category, Integer bedsNumber,
 			Municipality municipality) {
-		hutMap.putIfAbsent(name, new MountainHut(name, altitude, category, bedsNumber, municipality));
-		return hutMap.get(name);
+		int h = store().hutRow(name);
+		if (h < 0) h = putHut(name, altitude, category, bedsNumber, store().rowOf(municipality));
+		return store().hut(h);
+	}
+
+	/**
+	 * Add a mountain hut if it is not already available.
+	 *
+	 * @param municipality
+	 *            the row of the municipality in the store
+	 * @return the row of the mountain hut in the store
+	 */
+	int putHut(String name, Integer altitude, String category, Integer bedsNumber, int municipality) {
+		int h = store().hutRow(name);
+		if (h < 0) {
+			h = store().addHut(name, altitude, category, bedsNumber, municipality);
+			if (stats.peek() != null) stats.peek().addHut(h);
+			if (index.peek() != null) index.peek().addHut(h);
+			if (sketches.peek() != null) sketches.peek().addHut(h);
+			ranking.reset();
+			hutSearch.reset();
+		}
+		return h;
+	}
+
+	/**
+	 * Update the attributes of a mountain hut. The mountain hut object is the
+	 * same returned before the update.
+	 * 
+	 * @param name
+	 *            the mountain hut name
+	 * @param altitude
+	 *            the new altitude of the mountain hut
+	 * @param category
+	 *            the new category of the mountain hut
+	 * @param bedsNumber
+	 *            the new number of beds in the mountain hut
+	 * @param municipality
+	 *            the new municipality of the mountain hut
+	 * @return the mountain hut, or {@code null} if not available
+	 */
+	public MountainHut updateMountainHut(String name, Integer altitude, String category, Integer bedsNumber,
+			Municipality municipality) {
+		int h = store().hutRow(name);
+		if (h < 0) return null;
+		updateHut(h, altitude, category, bedsNumber, store().rowOf(municipality));
+		return store().hut(h);
+	}
+
+	/**
+	 * Update the attributes of a mountain hut.
+	 *
+	 * @param h
+	 *            the row of the mountain hut in the store
+	 * @param municipality
+	 *            the row of the municipality in the store
+	 */
+	void updateHut(int h, Integer altitude, String category, Integer bedsNumber, int municipality) {
+		HutStore store = store();
+		RegionStats stats = this.stats.peek();
+		HutIndex index = this.index.peek();
+		HutSketches sketches = this.sketches.peek();
+		if (stats != null) stats.removeHut(h);
+		if (index != null) index.removeHut(h);
+		if (sketches != null) sketches.removeHut(h);
+		store.updateHut(h, altitude, category, bedsNumber, municipality);
+		if (stats != null) stats.addHut(h);
+		if (index != null) index.addHut(h);
+		if (sketches != null) sketches.addHut(h);
+		ranking.reset();
+	}
+
+	/**
+	 * Remove a mountain hut.
+	 * 
+	 * @param name
+	 *            the mountain hut name
+	 * @return {@code true} if the mountain hut was available
+	 */
+	public boolean removeMountainHut(String name) {
+		int h = store().hutRow(name);
+		if (h < 0) return false;
+		if (stats.peek() != null) stats.peek().removeHut(h);
+		if (index.peek() != null) index.peek().removeHut(h);
+		if (sketches.peek() != null) sketches.peek().removeHut(h);
+		store().removeHut(h);
+		ranking.reset();
+		hutSearch.reset();
+		return true;
 	}
 
 	/**
@@ -177,26 +342,112 @@ public class Region {
 	 * The fields are separated by a semicolon (';'). The field {@code "Altitude"}
 	 * may be empty.
 	 * 
+	 * The file is parsed in parallel by a {@link RegionLoader}; the lines that
+	 * cannot be parsed are skipped and reported on the standard error.
+	 * 
 	 * @param name
 	 *            the name of the region
 	 * @param file
 	 *            the path of the file
 	 */
 	public static Region fromFile(String name, String file) {
+		Region res = fromFileLazily(name, file);
+		res.initialize();
+		return res;
+	}
 
-		Region res = new Region(name);
-		List<String> reading = readData(file);
-
-		reading.stream().skip(1).forEach(s->{
-			String[] ss =s.split(";");
-			Municipality mun = res.createOrGetMunicipality(ss[1], ss[0], Integer.parseInt(ss[2]));
-			if (ss[4].isEmpty()) res.createOrGetMountainHut(ss[3], ss[5], Integer.parseInt(ss[6]),mun);
-			else res.createOrGetMountainHut(ss[3], Integer.parseInt(ss[4]), ss[5], Integer.parseInt(ss[6]),mun);
-		});
+	/**
+	 * Creates a new region that loads its data from a file on first use.
+	 * 
+	 * The file, in the format described in {@link #fromFile(String, String)},
+	 * is only split into chunks: the chunks are parsed by the first query, and
+	 * each index or aggregate is built by the first query that needs it, so a
+	 * process answering one kind of query does not pay for the others. The
+	 * structures are built once also when more threads query the region at the
+	 * same time, and {@link #getWarmUps()} reports the time spent building
+	 * them. The file must not change until the region is used.
+	 * 
+	 * @param name
+	 *            the name of the region
+	 * @param file
+	 *            the path of the file
+	 */
+	public static Region fromFileLazily(String name, String file) {
+		RegionLoader loader = new RegionLoader(Path.of(file));
+		try {
+			return loader.loadLazily(name, ForkJoinPool.commonPool(), errors -> errors.forEach(System.err::println));
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return new Region(name);
+		}
+	}
 
+	/**
+	 * Return the indexes and the aggregates built so far, with the time spent on
+	 * their first build and the query that triggered it, in the order the
+	 * builds completed.
+	 * 
+	 * @return a list of warm-ups
+	 */
+	public List<WarmUp> getWarmUps() {
+		List<WarmUp> res = new ArrayList<>();
+		for (Lazy<?> l : List.of(store, stats, index, sketches, ranking, hutSearch, municipalitySearch)) {
+			if (l.warmUp() != null) res.add(l.warmUp());
+		}
+		res.sort(Comparator.comparingLong(WarmUp::end));
 		return res;
 	}
 
+	/**
+	 * Apply the changes listed in a file, in the format described in
+	 * {@link RegionDelta}. The statistics and the indexes are updated
+	 * incrementally.
+	 * 
+	 * The lines that cannot be applied are skipped and reported on the standard
+	 * error.
+	 * 
+	 * @param file
+	 *            the path of the file
+	 */
+	public void applyChanges(String file) {
+		RegionDelta delta = new RegionDelta(Path.of(file));
+		try {
+			delta.apply(this);
+			delta.getErrors().forEach(System.err::println);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Save the region in a binary snapshot that can be opened with
+	 * {@link #open(Path)}.
+	 * 
+	 * @param file
+	 *            the path of the snapshot
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void save(Path file) throws IOException {
+		RegionSnapshot.save(this, file);
+	}
+
+	/**
+	 * Open a region from a binary snapshot written by {@link #save(Path)}.
+	 * 
+	 * The snapshot is memory-mapped: the numeric columns are copied in bulk and
+	 * the names are read from the mapped file only when requested.
+	 * 
+	 * @param file
+	 *            the path of the snapshot
+	 * @return the region
+	 * @throws IOException
+	 *             if the file cannot be read, or it is not a valid snapshot
+	 */
+	public static Region open(Path file) throws IOException {
+		return RegionSnapshot.open(file);
+	}
+
 	/**
 	 * Reads the lines of a text file.
 	 *
@@ -212,6 +463,258 @@ public class Region {
 		}
 	}
 
+	/**
+	 * Compute all the statistics of the region with a single scan of the
+	 * municipalities and of the mountain huts.
+	 *
+	 * The result is not updated when new data is added to the region.
+	 *
+	 * @return the statistics of the region
+	 */
+	public RegionStats computeStats() {
+		return RegionStats.of(store(), ranges);
+	}
+
+	/**
+	 * Select the mountain huts of a category.
+	 * 
+	 * @param category
+	 *            the category
+	 * @return the selected huts
+	 */
+	public HutSelection selectByCategory(String category) {
+		return new HutSelection(store(), index.get().category(category));
+	}
+
+	/**
+	 * Select the mountain huts located in a province.
+	 * 
+	 * @param province
+	 *            the province
+	 * @return the selected huts
+	 */
+	public HutSelection selectByProvince(String province) {
+		return new HutSelection(store(), index.get().province(province));
+	}
+
+	/**
+	 * Select the mountain huts in an altitude range. If the altitude of the
+	 * mountain hut is not available, use the altitude of its municipality.
+	 * 
+	 * @param range
+	 *            the range as returned by {@link #getAltitudeRange(Integer)}
+	 * @return the selected huts
+	 */
+	public HutSelection selectByAltitudeRange(String range) {
+		return new HutSelection(store(), index.get().range(range));
+	}
+
+	/**
+	 * Return the mountain huts with the largest number of beds in a province.
+	 * Huts with the same number of beds are in the order they were added, a
+	 * missing number of beds counts as zero.
+	 * 
+	 * @param province
+	 *            the province
+	 * @param k
+	 *            the maximum number of huts
+	 * @return a list of at most k mountain huts, largest first
+	 */
+	public List<MountainHut> largestMountainHuts(String province, int k) {
+		int[] rows = ranking().largest(store().provinces.find(province), k);
+		List<MountainHut> res = new ArrayList<>(rows.length);
+		for (int h : rows) res.add(store().hut(h));
+		return res;
+	}
+
+	/**
+	 * Count the mountain huts with an altitude greater than min and less than or
+	 * equal to max, as in the altitude ranges. If the altitude of the mountain
+	 * hut is not available, use the altitude of its municipality.
+	 * 
+	 * The interval does not depend on the ranges set with
+	 * {@link #setAltitudeRanges(String...)}.
+	 * 
+	 * @param min
+	 *            the lower bound of the altitude, excluded
+	 * @param max
+	 *            the upper bound of the altitude, included
+	 * @return the number of mountain huts
+	 */
+	public long countMountainHutsBetween(int min, int max) {
+		return ranking().count(min, max);
+	}
+
+	/**
+	 * Compute the total number of beds of the mountain huts with an altitude
+	 * greater than min and less than or equal to max. If the altitude of the
+	 * mountain hut is not available, use the altitude of its municipality.
+	 * 
+	 * @param min
+	 *            the lower bound of the altitude, excluded
+	 * @param max
+	 *            the upper bound of the altitude, included
+	 * @return the number of beds
+	 */
+	public long totalBedsNumberBetween(int min, int max) {
+		return ranking().beds(min, max);
+	}
+
+	private HutRanking ranking() {
+		return ranking.get();
+	}
+
+	/**
+	 * Find the mountain huts with a word of the name starting with a prefix, for
+	 * autocompletion. Case, accents and punctuation are ignored.
+	 * 
+	 * @param prefix
+	 *            the prefix
+	 * @param limit
+	 *            the maximum number of mountain huts
+	 * @return a list of mountain huts in alphabetical order of the matching words
+	 * @throws IllegalArgumentException
+	 *             if the limit is negative
+	 */
+	public List<MountainHut> findMountainHutsByPrefix(String prefix, int limit) {
+		checkLimit(limit);
+		List<MountainHut> res = new ArrayList<>();
+		for (int h : hutSearch().prefix(prefix, limit)) res.add(store().hut(h));
+		return res;
+	}
+
+	/**
+	 * Find the municipalities with a word of the name starting with a prefix.
+	 * 
+	 * @param prefix
+	 *            the prefix
+	 * @param limit
+	 *            the maximum number of municipalities
+	 * @return a list of municipalities in alphabetical order of the matching words
+	 * @throws IllegalArgumentException
+	 *             if the limit is negative
+	 * @see #findMountainHutsByPrefix(String, int)
+	 */
+	public List<Municipality> findMunicipalitiesByPrefix(String prefix, int limit) {
+		checkLimit(limit);
+		List<Municipality> res = new ArrayList<>();
+		for (int m : municipalitySearch().prefix(prefix, limit)) res.add(store().municipality(m));
+		return res;
+	}
+
+	/**
+	 * Search the mountain huts with a name similar to the given one, tolerating
+	 * typos and variant spellings. Case, accents and punctuation are ignored.
+	 * 
+	 * @param name
+	 *            the name to search
+	 * @param limit
+	 *            the maximum number of mountain huts
+	 * @return a list of mountain huts, the most similar first
+	 * @throws IllegalArgumentException
+	 *             if the limit is negative
+	 */
+	public List<MountainHut> searchMountainHuts(String name, int limit) {
+		checkLimit(limit);
+		List<MountainHut> res = new ArrayList<>();
+		for (int h : hutSearch().similar(name, limit)) res.add(store().hut(h));
+		return res;
+	}
+
+	/**
+	 * Search the municipalities with a name similar to the given one.
+	 * 
+	 * @param name
+	 *            the name to search
+	 * @param limit
+	 *            the maximum number of municipalities
+	 * @return a list of municipalities, the most similar first
+	 * @throws IllegalArgumentException
+	 *             if the limit is negative
+	 * @see #searchMountainHuts(String, int)
+	 */
+	public List<Municipality> searchMunicipalities(String name, int limit) {
+		checkLimit(limit);
+		List<Municipality> res = new ArrayList<>();
+		for (int m : municipalitySearch().similar(name, limit)) res.add(store().municipality(m));
+		return res;
+	}
+
+	private static void checkLimit(int limit) {
+		if (limit < 0) throw new IllegalArgumentException("Invalid limit: " + limit);
+	}
+
+	private NameSearch hutSearch() {
+		return hutSearch.get();
+	}
+
+	private NameSearch municipalitySearch() {
+		return municipalitySearch.get();
+	}
+
+	/**
+	 * Estimate a quantile of the altitude of the mountain huts per each
+	 * province. If the altitude of the mountain hut is not available, use the
+	 * altitude of its municipality.
+	 * 
+	 * The quantiles come from sketches built on the first request and then kept
+	 * up to date as huts are added: the rank of the returned altitude is within
+	 * about 1% of the requested one.
+	 * 
+	 * @param q
+	 *            the rank of the quantile, between 0 and 1, e.g. 0.5 for the
+	 *            median
+	 * @return a map with the province as key and the altitude as value
+	 */
+	public Map<String, Integer> altitudeQuantilePerProvince(double q) {
+		return quantiles(sketches().altitudePerProvince(), q);
+	}
+
+	/**
+	 * Estimate a quantile of the number of beds of the mountain huts per each
+	 * province.
+	 * 
+	 * @param q
+	 *            the rank of the quantile, between 0 and 1
+	 * @return a map with the province as key and the number of beds as value
+	 * @see #altitudeQuantilePerProvince(double)
+	 */
+	public Map<String, Integer> bedsNumberQuantilePerProvince(double q) {
+		return quantiles(sketches().bedsPerProvince(), q);
+	}
+
+	/**
+	 * Estimate a quantile of the altitude of the mountain huts per each
+	 * category.
+	 * 
+	 * @param q
+	 *            the rank of the quantile, between 0 and 1
+	 * @return a map with the category as key and the altitude as value
+	 * @see #altitudeQuantilePerProvince(double)
+	 */
+	public Map<String, Integer> altitudeQuantilePerCategory(double q) {
+		return quantiles(sketches().altitudePerCategory(), q);
+	}
+
+	/**
+	 * Estimate a quantile of the number of beds of the mountain huts per each
+	 * category.
+	 * 
+	 * @param q
+	 *            the rank of the quantile, between 0 and 1
+	 * @return a map with the category as key and the number of beds as value
+	 * @see #altitudeQuantilePerProvince(double)
+	 */
+	public Map<String, Integer> bedsNumberQuantilePerCategory(double q) {
+		return quantiles(sketches().bedsPerCategory(), q);
+	}
+
+	static Map<String, Integer> quantiles(Map<String, QuantileSketch> sketches, double q) {
+		Map<String, Integer> res = new HashMap<>();
+		sketches.forEach((key, sketch) -> res.put(key, sketch.quantile(q)));
+		return res;
+	}
+
 	/**
 	 * Count the number of municipalities with at least a mountain hut per each
 	 * province.
@@ -220,9 +723,7 @@ public class Region {
 	 *         value
 	 */
 	public Map<String, Long> countMunicipalitiesPerProvince() {
-
-		return muniMap.values().stream()
-		.collect(groupingBy(Municipality::getProvince, Collectors.counting()));
+		return stats.get().countMunicipalitiesPerProvince();
 	}
 
 	/**
@@ -232,10 +733,7 @@ public class Region {
 	 *         municipality as key and the number of mountain huts as value
 	 */
 	public Map<String, Map<String, Long>> countMountainHutsPerMunicipalityPerProvince() {
-		
-		return hutMap.values().stream().collect(
-			groupingBy(mh -> mh.getMunicipality().getProvince(), 
-				groupingBy( mh2 -> mh2.getMunicipality().getName(), Collectors.counting())));
+		return stats.get().countMountainHutsPerMunicipalityPerProvince();
 	}
 
 	/**
@@ -246,18 +744,7 @@ public class Region {
 	 *         as value
 	 */
 	public Map<String, Long> countMountainHutsPerAltitudeRange() {
-		
-		Function<MountainHut, String> rangeFunction = hm -> {
-			if (!hm.getAltitude().isEmpty()) return getAltitudeRange(hm.getAltitude().get());
-			else{
-				return getAltitudeRange(hm.getMunicipality().getAltitude());
-			}
-		};
-		
-		return hutMap.values().stream()
-		.collect(
-			groupingBy(rangeFunction, Collectors.counting())
-		);
+		return stats.get().countMountainHutsPerAltitudeRange();
 	}
 
 	/**
@@ -267,9 +754,7 @@ public class Region {
 	 * @return a map with the province as key and the total number of beds as value
 	 */
 	public Map<String, Integer> totalBedsNumberPerProvince() {
-
-		return hutMap.values().stream()
-		.collect(groupingBy(hm -> hm.getMunicipality().getProvince(), summingInt(hm -> hm.getBedsNumber())));
+		return stats.get().totalBedsNumberPerProvince();
 	}
 
 	/**
@@ -281,22 +766,7 @@ public class Region {
 	 *         as value
 	 */
 	public Map<String, Optional<Integer>> maximumBedsNumberPerAltitudeRange() {
-		Function<MountainHut, String> rangeFunction = hm -> {
-			if (!hm.getAltitude().isEmpty()) return getAltitudeRange(hm.getAltitude().get());
-			else{
-				return getAltitudeRange(hm.getMunicipality().getAltitude());
-			}
-		};
-		
-		return hutMap.values().stream()
-		.collect(Collectors.groupingBy(
-				rangeFunction,
-				mapping(
-					MountainHut::getBedsNumber,
-					maxBy(Comparator.naturalOrder())
-				)
-			)
-		);
+		return stats.get().maximumBedsNumberPerAltitudeRange();
 	}
 
 	/**
@@ -307,22 +777,7 @@ public class Region {
 	 *         list of municipality names as value
 	 */
 	public Map<Long, List<String>> municipalityNamesPerCountOfMountainHuts() {
-
-		return hutMap.values().stream()
-		.collect(
-			groupingBy(
-				MountainHut::getMunicipality, counting())
-				)
-		.entrySet().stream()
-		.collect(
-			groupingBy(
-				Map.Entry::getValue,
-				mapping(entry -> entry.getKey().getName(),
-				collectingAndThen( 
-					toList(),
-					names -> names.stream().sorted().toList())))
-		);
-
+		return stats.get().municipalityNamesPerCountOfMountainHuts();
 	}
 
 }
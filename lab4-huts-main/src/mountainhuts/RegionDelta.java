@@ -0,0 +1,134 @@
+package mountainhuts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set of changes to the mountain huts of a region, read from a CSV file.
+ *
+ * The file has a header line and one change per line with the fields:
+ * <ul>
+ * <li>{@code "Operation"}, one of {@code ADD}, {@code UPDATE} or
+ * {@code DELETE},
+ * <li>{@code "Province"},
+ * <li>{@code "Municipality"},
+ * <li>{@code "MunicipalityAltitude"},
+ * <li>{@code "Name"},
+ * <li>{@code "Altitude"},
+ * <li>{@code "Category"},
+ * <li>{@code "BedsNumber"}
+ * </ul>
+ * separated by a semicolon (';'), as in the files read by
+ * {@link Region#fromFile(String, String)}. The changes are keyed by the name
+ * of the mountain hut: {@code ADD} requires a new name, {@code UPDATE} and
+ * {@code DELETE} an existing one, and {@code DELETE} uses only the name. A
+ * municipality that is not available is created, the attributes of an existing
+ * one are not changed.
+ *
+ * The changes are applied in file order and each one updates the statistics
+ * and the indexes of the region incrementally, so the cost depends on the
+ * number of changes and not on the size of the region. Lines that cannot be
+ * applied are skipped and reported by {@link #getErrors()}.
+ */
+public class RegionDelta {
+
+	private static final int FIELDS = 8;
+
+	private final Path file;
+	private final List<String> errors = new ArrayList<>();
+
+	/**
+	 * Create a set of changes read from a file.
+	 *
+	 * @param file
+	 *            the path of the file
+	 */
+	public RegionDelta(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Apply the changes to a region.
+	 *
+	 * @param region
+	 *            the region
+	 * @return the number of changes applied
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public int apply(Region region) throws IOException {
+		errors.clear();
+		int applied = 0;
+		try (BufferedReader in = Files.newBufferedReader(file)) {
+			String line = in.readLine();
+			for (int n = 2; (line = in.readLine()) != null; n++) {
+				if (line.isEmpty()) continue;
+				try {
+					apply(region, line.split(";", -1));
+					applied++;
+				} catch (IllegalArgumentException e) {
+					// the header is line 1
+					errors.add("line " + n + ": " + e.getMessage());
+				}
+			}
+		}
+		return applied;
+	}
+
+	/**
+	 * Return the errors found by the last application, in the order of the
+	 * lines.
+	 *
+	 * @return a list of messages with the line number
+	 */
+	public List<String> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+
+	private static void apply(Region region, String[] fields) {
+		if (fields.length != FIELDS) {
+			throw new IllegalArgumentException("expected " + FIELDS + " fields but found " + fields.length);
+		}
+		String name = fields[4];
+		int h = region.store().hutRow(name);
+		switch (fields[0]) {
+		case "ADD":
+			if (h >= 0) throw new IllegalArgumentException("mountain hut '" + name + "' already available");
+			region.putHut(name, altitude(fields), fields[6], number(fields, 7, "BedsNumber"), municipality(region, fields));
+			break;
+		case "UPDATE":
+			if (h < 0) throw new IllegalArgumentException("mountain hut '" + name + "' not available");
+			region.updateHut(h, altitude(fields), fields[6], number(fields, 7, "BedsNumber"), municipality(region, fields));
+			break;
+		case "DELETE":
+			if (!region.removeMountainHut(name)) {
+				throw new IllegalArgumentException("mountain hut '" + name + "' not available");
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("invalid operation '" + fields[0] + "'");
+		}
+	}
+
+	private static Integer altitude(String[] fields) {
+		return fields[5].isEmpty() ? null : number(fields, 5, "Altitude");
+	}
+
+	private static int municipality(Region region, String[] fields) {
+		int altitude = number(fields, 3, "MunicipalityAltitude");
+		return region.putMunicipality(fields[2], fields[1], altitude);
+	}
+
+	private static int number(String[] fields, int field, String fieldName) {
+		try {
+			return Integer.parseInt(fields[field]);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid number '" + fields[field] + "' in field " + fieldName);
+		}
+	}
+}
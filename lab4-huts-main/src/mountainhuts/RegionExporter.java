@@ -0,0 +1,396 @@
+package mountainhuts;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Writer of the aggregates of a {@link Region} as JSON or CSV.
+ *
+ * The aggregates are written straight from the accumulators of the statistics
+ * of the region, without building the maps returned by the query methods of
+ * {@link Region}. The text is encoded in UTF-8 into a byte buffer that is
+ * written to the output each time it fills up, and the buffers are kept by the
+ * exporter for the next exports: once they have grown to the size of the
+ * region, an export allocates only the iterators over the names of the
+ * municipalities.
+ *
+ * The JSON document is an object with the name of the region and one member
+ * per aggregate, named after the method of {@link Region} that returns it:
+ *
+ * <pre>
+ * {"region":"Piemonte",
+ *  "countMunicipalitiesPerProvince":{"TORINO":32,...},
+ *  "countMountainHutsPerMunicipalityPerProvince":{"TORINO":{"BALME":3,...},...},
+ *  "countMountainHutsPerAltitudeRange":{"0-1000":12,...},
+ *  "totalBedsNumberPerProvince":{"TORINO":1500,...},
+ *  "maximumBedsNumberPerAltitudeRange":{"0-1000":40,...},
+ *  "municipalityNamesPerCountOfMountainHuts":{"1":["ALA DI STURA",...],...}}
+ * </pre>
+ *
+ * The CSV file has the header {@code Aggregate;Key;Name;Value} and one line
+ * per entry of the aggregates. The key is the province, the altitude range or
+ * the number of huts, the name is the municipality, when there is one, and
+ * the value is empty for the names per number of huts. Fields containing a
+ * semicolon or a double quote are quoted.
+ *
+ * The output is flushed but not closed. An exporter must not be used by more
+ * than one thread at a time.
+ */
+public final class RegionExporter {
+
+	/**
+	 * The formats of the export.
+	 */
+	public enum Format {
+		JSON, CSV
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	// the longest encoding of a char, or of a number
+	private static final int MAX_TOKEN = 20;
+	private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+	private final Region region;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+	private int position;
+	private final byte[] digits = new byte[MAX_TOKEN];
+	// rows of the municipalities with huts grouped by province
+	private int[] byProvince = new int[16];
+	private int[] provinceEnds = new int[8];
+	private OutputStream out;
+	private WritableByteChannel channel;
+
+	/**
+	 * Create an exporter of the aggregates of a region.
+	 *
+	 * @param region
+	 *            the region
+	 */
+	public RegionExporter(Region region) {
+		this.region = region;
+	}
+
+	/**
+	 * Write the aggregates of the region to a stream.
+	 *
+	 * @param out
+	 *            the stream
+	 * @param format
+	 *            the format
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	public void write(OutputStream out, Format format) throws IOException {
+		this.out = out;
+		try {
+			write(format);
+			out.flush();
+		} finally {
+			this.out = null;
+			position = 0;
+		}
+	}
+
+	/**
+	 * Write the aggregates of the region to a channel.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param format
+	 *            the format
+	 * @throws IOException
+	 *             if the channel cannot be written
+	 */
+	public void write(WritableByteChannel channel, Format format) throws IOException {
+		this.channel = channel;
+		try {
+			write(format);
+		} finally {
+			this.channel = null;
+			position = 0;
+		}
+	}
+
+	private void write(Format format) throws IOException {
+		RegionStats stats = region.stats();
+		HutStore store = region.store();
+		groupByProvince(stats, store);
+		if (format == Format.JSON) writeJson(stats, store);
+		else writeCsv(stats, store);
+		flush();
+	}
+
+	// counting sort of the municipalities with huts by province
+	private void groupByProvince(RegionStats stats, HutStore store) {
+		int provinces = store.provinces.size();
+		if (provinceEnds.length < provinces + 1) provinceEnds = new int[provinces + 1];
+		Arrays.fill(provinceEnds, 0, provinces + 1, 0);
+		int n = 0;
+		for (int m = 0, count = store.municipalities; m < count; m++) {
+			if (stats.hutsOfMunicipality(m) == 0) continue;
+			provinceEnds[store.municipalityProvince[m] + 1]++;
+			n++;
+		}
+		for (int p = 0; p < provinces; p++) provinceEnds[p + 1] += provinceEnds[p];
+		if (byProvince.length < n) byProvince = new int[Math.max(n, byProvince.length * 2)];
+		// provinceEnds[p] moves from the start to the end of the rows of p
+		for (int m = 0, count = store.municipalities; m < count; m++) {
+			if (stats.hutsOfMunicipality(m) == 0) continue;
+			byProvince[provinceEnds[store.municipalityProvince[m]]++] = m;
+		}
+	}
+
+	private int provinceStart(int p) {
+		return p == 0 ? 0 : provinceEnds[p - 1];
+	}
+
+	private void writeJson(RegionStats stats, HutStore store) throws IOException {
+		ascii("{\"region\":");
+		jsonString(region.getName());
+
+		ascii(",\"countMunicipalitiesPerProvince\":{");
+		boolean first = true;
+		for (int p = 0, n = store.provinces.size(); p < n; p++) {
+			if (stats.municipalities(p) == 0) continue;
+			first = jsonKey(first, store.provinces.value(p));
+			number(stats.municipalities(p));
+		}
+
+		ascii("},\"countMountainHutsPerMunicipalityPerProvince\":{");
+		first = true;
+		for (int p = 0, n = store.provinces.size(); p < n; p++) {
+			int start = provinceStart(p), end = provinceEnds[p];
+			if (start == end) continue;
+			first = jsonKey(first, store.provinces.value(p));
+			put('{');
+			for (int i = start; i < end; i++) {
+				jsonKey(i == start, store.municipalityName(byProvince[i]));
+				number(stats.hutsOfMunicipality(byProvince[i]));
+			}
+			put('}');
+		}
+
+		ascii("},\"countMountainHutsPerAltitudeRange\":{");
+		first = true;
+		for (int b = 0; b < stats.buckets(); b++) {
+			if (stats.hutsInRange(b) == 0) continue;
+			first = jsonKey(first, stats.label(b));
+			number(stats.hutsInRange(b));
+		}
+
+		ascii("},\"totalBedsNumberPerProvince\":{");
+		first = true;
+		for (int p = 0, n = store.provinces.size(); p < n; p++) {
+			if (stats.huts(p) == 0) continue;
+			first = jsonKey(first, store.provinces.value(p));
+			number(stats.beds(p));
+		}
+
+		ascii("},\"maximumBedsNumberPerAltitudeRange\":{");
+		first = true;
+		for (int b = 0; b < stats.buckets(); b++) {
+			if (stats.hutsInRange(b) == 0) continue;
+			first = jsonKey(first, stats.label(b));
+			number(stats.maxBedsInRange(b));
+		}
+
+		ascii("},\"municipalityNamesPerCountOfMountainHuts\":{");
+		first = true;
+		for (Map.Entry<Long, TreeSet<String>> e : stats.namesPerCount().entrySet()) {
+			if (!first) put(',');
+			first = false;
+			put('"');
+			number(e.getKey());
+			ascii("\":[");
+			boolean firstName = true;
+			for (String name : e.getValue()) {
+				if (!firstName) put(',');
+				firstName = false;
+				jsonString(name);
+			}
+			put(']');
+		}
+		ascii("}}");
+	}
+
+	private void writeCsv(RegionStats stats, HutStore store) throws IOException {
+		ascii("Aggregate;Key;Name;Value\n");
+		for (int p = 0, n = store.provinces.size(); p < n; p++) {
+			if (stats.municipalities(p) == 0) continue;
+			csvLine("countMunicipalitiesPerProvince;", store.provinces.value(p), null, stats.municipalities(p));
+		}
+		for (int p = 0, n = store.provinces.size(); p < n; p++) {
+			for (int i = provinceStart(p), end = provinceEnds[p]; i < end; i++) {
+				csvLine("countMountainHutsPerMunicipalityPerProvince;", store.provinces.value(p),
+						store.municipalityName(byProvince[i]), stats.hutsOfMunicipality(byProvince[i]));
+			}
+		}
+		for (int b = 0; b < stats.buckets(); b++) {
+			if (stats.hutsInRange(b) == 0) continue;
+			csvLine("countMountainHutsPerAltitudeRange;", stats.label(b), null, stats.hutsInRange(b));
+		}
+		for (int p = 0, n = store.provinces.size(); p < n; p++) {
+			if (stats.huts(p) == 0) continue;
+			csvLine("totalBedsNumberPerProvince;", store.provinces.value(p), null, stats.beds(p));
+		}
+		for (int b = 0; b < stats.buckets(); b++) {
+			if (stats.hutsInRange(b) == 0) continue;
+			csvLine("maximumBedsNumberPerAltitudeRange;", stats.label(b), null, stats.maxBedsInRange(b));
+		}
+		for (Map.Entry<Long, TreeSet<String>> e : stats.namesPerCount().entrySet()) {
+			for (String name : e.getValue()) {
+				ascii("municipalityNamesPerCountOfMountainHuts;");
+				number(e.getKey());
+				put(';');
+				csvField(name);
+				ascii(";\n");
+			}
+		}
+	}
+
+	private void csvLine(String aggregate, String key, String name, long value) throws IOException {
+		ascii(aggregate);
+		csvField(key);
+		put(';');
+		if (name != null) csvField(name);
+		put(';');
+		number(value);
+		put('\n');
+	}
+
+	private void csvField(String s) throws IOException {
+		boolean quote = false;
+		for (int i = 0; i < s.length() && !quote; i++) {
+			char c = s.charAt(i);
+			quote = c == ';' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			utf8(s);
+			return;
+		}
+		put('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"') put('"');
+			utf8(s, i);
+			if (Character.isHighSurrogate(c) && i + 1 < s.length()) i++;
+		}
+		put('"');
+	}
+
+	// writes the separator and the key of a member, returns false
+	private boolean jsonKey(boolean first, String key) throws IOException {
+		if (!first) put(',');
+		jsonString(key);
+		put(':');
+		return false;
+	}
+
+	private void jsonString(String s) throws IOException {
+		put('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				put('\\');
+				put(c);
+			} else if (c < 0x20) {
+				ascii("\\u00");
+				put((char) HEX[c >> 4]);
+				put((char) HEX[c & 0xf]);
+			} else if (c < 0x80 && position < BUFFER_SIZE) {
+				buffer[position++] = (byte) c;
+			} else {
+				utf8(s, i);
+				if (Character.isHighSurrogate(c) && i + 1 < s.length()) i++;
+			}
+		}
+		put('"');
+	}
+
+	private void utf8(String s) throws IOException {
+		for (int i = 0, n = s.length(); i < n; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80 && position < BUFFER_SIZE) {
+				buffer[position++] = (byte) c;
+			} else {
+				utf8(s, i);
+				if (Character.isHighSurrogate(c) && i + 1 < n) i++;
+			}
+		}
+	}
+
+	// encodes the character at a position, with the next one if it is a surrogate pair
+	private void utf8(String s, int i) throws IOException {
+		if (BUFFER_SIZE - position < 4) flush();
+		byte[] b = buffer;
+		char c = s.charAt(i);
+		if (c < 0x80) {
+			b[position++] = (byte) c;
+		} else if (c < 0x800) {
+			b[position++] = (byte) (0xc0 | c >> 6);
+			b[position++] = (byte) (0x80 | c & 0x3f);
+		} else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+			int cp = Character.toCodePoint(c, s.charAt(i + 1));
+			b[position++] = (byte) (0xf0 | cp >> 18);
+			b[position++] = (byte) (0x80 | cp >> 12 & 0x3f);
+			b[position++] = (byte) (0x80 | cp >> 6 & 0x3f);
+			b[position++] = (byte) (0x80 | cp & 0x3f);
+		} else if (Character.isSurrogate(c)) {
+			b[position++] = '?';
+		} else {
+			b[position++] = (byte) (0xe0 | c >> 12);
+			b[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+			b[position++] = (byte) (0x80 | c & 0x3f);
+		}
+	}
+
+	private void number(long value) throws IOException {
+		if (BUFFER_SIZE - position < MAX_TOKEN) flush();
+		if (value == Long.MIN_VALUE) {
+			ascii(Long.toString(value));
+			return;
+		}
+		if (value < 0) {
+			buffer[position++] = '-';
+			value = -value;
+		}
+		int n = digits.length;
+		do {
+			digits[--n] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		System.arraycopy(digits, n, buffer, position, digits.length - n);
+		position += digits.length - n;
+	}
+
+	// the text must be ASCII
+	private void ascii(String s) throws IOException {
+		if (BUFFER_SIZE - position < s.length()) flush();
+		if (BUFFER_SIZE < s.length()) {
+			for (int i = 0; i < s.length(); i++) put(s.charAt(i));
+			return;
+		}
+		for (int i = 0; i < s.length(); i++) buffer[position++] = (byte) s.charAt(i);
+	}
+
+	private void put(char c) throws IOException {
+		if (position == BUFFER_SIZE) flush();
+		buffer[position++] = (byte) c;
+	}
+
+	private void flush() throws IOException {
+		if (out != null) {
+			out.write(buffer, 0, position);
+		} else {
+			wrapped.clear().limit(position);
+			while (wrapped.hasRemaining()) channel.write(wrapped);
+		}
+		position = 0;
+	}
+}
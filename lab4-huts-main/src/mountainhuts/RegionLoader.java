@@ -0,0 +1,441 @@
+package mountainhuts;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Loader of the CSV files described in {@link Region#fromFile(String, String)}.
+ *
+ * The file is split into chunks aligned to the line boundaries, each chunk is
+ * memory-mapped and parsed by a task of a {@link ForkJoinPool} scanning its
+ * bytes, without creating a string per line. Each task keeps the first
+ * occurrence of every municipality of its chunk; adjacent chunks are then
+ * merged in parallel keeping the municipalities of the leftmost one and
+ * appending the mountain huts in file order, so the loaded region is the same
+ * as the one built reading the file line by line.
+ *
+ * The provinces, categories and municipality names of a chunk are decoded by
+ * bounded {@link StringInterner}s, so a value repeated on many lines is decoded
+ * once and shared by all of them, and it is hashed once when the region looks
+ * it up.
+ *
+ * Lines that cannot be parsed are skipped and reported by {@link #getErrors()}.
+ *
+ * A region can also be loaded lazily: {@link #loadLazily(String)} only splits
+ * the file into chunks, recording their offsets, and the chunks are parsed the
+ * first time the region is used.
+ */
+public class RegionLoader {
+
+	private static final int FIELDS = 7;
+	private static final String[] FIELD_NAMES = { "Province", "Municipality", "MunicipalityAltitude", "Name",
+			"Altitude", "Category", "BedsNumber" };
+	private static final long MISSING = Long.MAX_VALUE;
+	private static final long INVALID = Long.MIN_VALUE;
+	private static final long MIN_CHUNK = 1 << 20;
+	private static final long MAX_CHUNK = 1 << 30;
+	// maximum number of values interned per chunk
+	private static final int MAX_INTERNED = 1 << 10;
+	private static final int MAX_INTERNED_MUNICIPALITIES = 1 << 16;
+
+	private final Path file;
+	private final long chunkSize;
+	private final List<String> errors = new ArrayList<>();
+	// bounds of the chunks of the file, recorded when the file had the given size
+	private long[] bounds;
+	private long size;
+
+	/**
+	 * Create a loader for a file, the size of the chunks depends on the
+	 * parallelism of the pool.
+	 *
+	 * @param file
+	 *            the path of the file
+	 */
+	public RegionLoader(Path file) {
+		this(file, 0);
+	}
+
+	/**
+	 * Create a loader for a file splitting it into chunks of a given size.
+	 *
+	 * @param file
+	 *            the path of the file
+	 * @param chunkSize
+	 *            the size in bytes of the chunks, at most 1 GiB
+	 */
+	public RegionLoader(Path file, long chunkSize) {
+		if (chunkSize < 0 || chunkSize > MAX_CHUNK) throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+		this.file = file;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Load a region using the common fork/join pool.
+	 *
+	 * @param name
+	 *            the name of the region
+	 * @return the region
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public Region load(String name) throws IOException {
+		return load(name, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Load a region.
+	 *
+	 * @param name
+	 *            the name of the region
+	 * @param pool
+	 *            the pool running the parsing tasks
+	 * @return the region
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public Region load(String name, ForkJoinPool pool) throws IOException {
+		Region res = new Region(name, read(pool), AltitudeRanges.NONE);
+		res.initialize();
+		return res;
+	}
+
+	/**
+	 * Load a region lazily using the common fork/join pool.
+	 *
+	 * @param name
+	 *            the name of the region
+	 * @return the region
+	 * @throws IOException
+	 *             if the file cannot be read
+	 * @see #loadLazily(String, ForkJoinPool)
+	 */
+	public Region loadLazily(String name) throws IOException {
+		return loadLazily(name, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Load a region lazily. The file is only split into chunks: it is parsed,
+	 * and the errors are available, the first time the region is used. If the
+	 * file cannot be read then, the region is empty and the error is reported
+	 * by {@link #getErrors()}.
+	 *
+	 * @param name
+	 *            the name of the region
+	 * @param pool
+	 *            the pool running the parsing tasks
+	 * @return the region
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public Region loadLazily(String name, ForkJoinPool pool) throws IOException {
+		return loadLazily(name, pool, e -> {});
+	}
+
+	/**
+	 * Load a region lazily, passing the errors to a consumer once the file is
+	 * parsed.
+	 */
+	Region loadLazily(String name, ForkJoinPool pool, Consumer<List<String>> onErrors) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			size = channel.size();
+			bounds = chunks(channel, pool.getParallelism());
+		}
+		return new Region(name, new Lazy<>("load", () -> {
+			HutStore res;
+			try {
+				res = read(pool);
+			} catch (IOException e) {
+				errors.add(e.getMessage());
+				res = new HutStore();
+			}
+			onErrors.accept(getErrors());
+			return res;
+		}), AltitudeRanges.NONE);
+	}
+
+	/**
+	 * Parse the file into the columns of a region, reusing the chunks recorded
+	 * by {@link #loadLazily(String, ForkJoinPool)} if the file has the same size.
+	 */
+	HutStore read(ForkJoinPool pool) throws IOException {
+		errors.clear();
+		HutStore store = new HutStore();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long[] chunks = bounds != null && channel.size() == size ? bounds : chunks(channel, pool.getParallelism());
+			bounds = null;
+			if (chunks.length < 2) return store;
+
+			Chunk all;
+			try {
+				all = pool.invoke(new ParseTask(channel, chunks, 0, chunks.length - 1));
+			} catch (UncheckedIOException e) {
+				// a chunk that cannot be mapped fails as the file cannot be read
+				throw e.getCause();
+			}
+			Map<String, Integer> municipalities = new HashMap<>();
+			for (MunicipalityRow m : all.municipalities.values()) {
+				int row = store.municipalityRow(m.name);
+				if (row < 0) row = store.addMunicipality(m.name, m.province, m.altitude);
+				store.register(row);
+				municipalities.put(m.name, row);
+			}
+			// huts are added in file order, the store keeps the first one of each name
+			for (HutRow h : all.huts) {
+				if (store.hutRow(h.name) < 0) {
+					store.addHut(h.name, h.altitude, h.category, h.beds, municipalities.get(h.municipality));
+				}
+			}
+			for (LineError e : all.errors) {
+				// the header is line 1
+				errors.add("line " + (e.line + 2) + ": " + e.message);
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * Return the errors found by the last load, in the order of the lines.
+	 *
+	 * @return a list of messages with the line number
+	 */
+	public List<String> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+
+	/**
+	 * Return the bounds of the chunks, the first chunk starts after the header.
+	 */
+	private long[] chunks(FileChannel channel, int parallelism) throws IOException {
+		long size = channel.size();
+		long start = nextLine(channel, 0, size);
+		if (start >= size) return new long[0];
+
+		long step = chunkSize > 0 ? chunkSize
+				: Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, (size - start) / (4L * parallelism) + 1));
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(start);
+		while (start < size) {
+			start = Math.min(size, nextLine(channel, Math.min(size, start + step) - 1, size));
+			bounds.add(start);
+		}
+		return bounds.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Return the position following the first newline at or after a position.
+	 */
+	private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(8192);
+		while (position < size) {
+			buf.clear();
+			int n = channel.read(buf, position);
+			if (n <= 0) break;
+			for (int i = 0; i < n; i++) {
+				if (buf.get(i) == '\n') return position + i + 1;
+			}
+			position += n;
+		}
+		return size;
+	}
+
+	private static final class ParseTask extends RecursiveTask<Chunk> {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long[] bounds;
+		private final int from, to;
+
+		ParseTask(FileChannel channel, long[] bounds, int from, int to) {
+			this.channel = channel;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Chunk compute() {
+			if (to - from == 1) {
+				try {
+					return parse(channel.map(FileChannel.MapMode.READ_ONLY, bounds[from], bounds[to] - bounds[from]));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			int mid = (from + to) >>> 1;
+			ParseTask right = new ParseTask(channel, bounds, mid, to);
+			right.fork();
+			Chunk left = new ParseTask(channel, bounds, from, mid).compute();
+			return left.merge(right.join());
+		}
+	}
+
+	/**
+	 * Parse the lines of a chunk.
+	 */
+	private static Chunk parse(MappedByteBuffer buf) {
+		Chunk chunk = new Chunk();
+		int[] starts = new int[FIELDS + 1];
+		int limit = buf.limit();
+		int pos = 0;
+		while (pos < limit) {
+			int end = pos;
+			while (end < limit && buf.get(end) != '\n') end++;
+			int lineEnd = end > pos && buf.get(end - 1) == '\r' ? end - 1 : end;
+			if (lineEnd > pos) parseLine(buf, pos, lineEnd, starts, chunk);
+			chunk.lines++;
+			pos = end + 1;
+		}
+		return chunk;
+	}
+
+	private static void parseLine(ByteBuffer buf, int pos, int end, int[] starts, Chunk chunk) {
+		int n = 0;
+		starts[n++] = pos;
+		for (int i = pos; i < end; i++) {
+			if (buf.get(i) == ';') {
+				if (n == FIELDS) {
+					chunk.error("expected " + FIELDS + " fields but found more");
+					return;
+				}
+				starts[n++] = i + 1;
+			}
+		}
+		if (n < FIELDS) {
+			chunk.error("expected " + FIELDS + " fields but found " + n);
+			return;
+		}
+		starts[FIELDS] = end + 1;
+
+		long municipalityAltitude = number(buf, starts, 2);
+		long altitude = starts[5] - starts[4] == 1 ? MISSING : number(buf, starts, 4);
+		long beds = number(buf, starts, 6);
+		if (!valid(municipalityAltitude, buf, starts, 2, chunk) || !valid(altitude, buf, starts, 4, chunk)
+				|| !valid(beds, buf, starts, 6, chunk)) return;
+
+		String municipality = intern(chunk.municipalityNames, buf, starts, 1);
+		if (!chunk.municipalities.containsKey(municipality)) {
+			chunk.municipalities.put(municipality,
+					new MunicipalityRow(municipality, intern(chunk.provinces, buf, starts, 0), (int) municipalityAltitude));
+		}
+		chunk.huts.add(new HutRow(text(buf, starts, 3), altitude == MISSING ? null : (int) altitude,
+				intern(chunk.categories, buf, starts, 5), (int) beds, municipality));
+	}
+
+	private static boolean valid(long value, ByteBuffer buf, int[] starts, int field, Chunk chunk) {
+		if (value != INVALID) return true;
+		chunk.error("invalid number '" + text(buf, starts, field) + "' in field " + FIELD_NAMES[field]);
+		return false;
+	}
+
+	/**
+	 * Parse an integer field, return {@code INVALID} if it is not valid.
+	 */
+	private static long number(ByteBuffer buf, int[] starts, int field) {
+		int i = starts[field], end = starts[field + 1] - 1;
+		boolean negative = i < end && buf.get(i) == '-';
+		if (negative) i++;
+		if (i == end) return INVALID;
+		long value = 0;
+		for (; i < end; i++) {
+			int d = buf.get(i) - '0';
+			if (d < 0 || d > 9) return INVALID;
+			value = value * 10 + d;
+			if (value > Integer.MAX_VALUE + 1L) return INVALID;
+		}
+		value = negative ? -value : value;
+		return value > Integer.MAX_VALUE ? INVALID : value;
+	}
+
+	private static String intern(StringInterner interner, ByteBuffer buf, int[] starts, int field) {
+		return interner.intern(buf, starts[field], starts[field + 1] - 1);
+	}
+
+	private static String text(ByteBuffer buf, int[] starts, int field) {
+		byte[] bytes = new byte[starts[field + 1] - 1 - starts[field]];
+		buf.get(starts[field], bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Result of the parsing of a sequence of adjacent chunks.
+	 */
+	private static final class Chunk {
+		long lines;
+		final Map<String, MunicipalityRow> municipalities = new LinkedHashMap<>();
+		final List<HutRow> huts = new ArrayList<>();
+		final List<LineError> errors = new ArrayList<>();
+		final StringInterner provinces = new StringInterner(MAX_INTERNED);
+		final StringInterner categories = new StringInterner(MAX_INTERNED);
+		final StringInterner municipalityNames = new StringInterner(MAX_INTERNED_MUNICIPALITIES);
+
+		void error(String message) {
+			errors.add(new LineError(lines, message));
+		}
+
+		/**
+		 * Append the chunk following this one, the first occurrences win.
+		 */
+		Chunk merge(Chunk next) {
+			for (Map.Entry<String, MunicipalityRow> e : next.municipalities.entrySet()) {
+				municipalities.putIfAbsent(e.getKey(), e.getValue());
+			}
+			huts.addAll(next.huts);
+			for (LineError e : next.errors) {
+				errors.add(new LineError(lines + e.line, e.message));
+			}
+			lines += next.lines;
+			return this;
+		}
+	}
+
+	private static final class MunicipalityRow {
+		final String name, province;
+		final int altitude;
+
+		MunicipalityRow(String name, String province, int altitude) {
+			this.name = name;
+			this.province = province;
+			this.altitude = altitude;
+		}
+	}
+
+	private static final class HutRow {
+		final String name, category, municipality;
+		final Integer altitude;
+		final int beds;
+
+		HutRow(String name, Integer altitude, String category, int beds, String municipality) {
+			this.name = name;
+			this.altitude = altitude;
+			this.category = category;
+			this.beds = beds;
+			this.municipality = municipality;
+		}
+	}
+
+	private static final class LineError {
+		final long line;
+		final String message;
+
+		LineError(long line, String message) {
+			this.line = line;
+			this.message = message;
+		}
+	}
+}
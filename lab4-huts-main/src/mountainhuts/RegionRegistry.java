@@ -0,0 +1,321 @@
+package mountainhuts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Registry of the regions of a country with national statistics.
+ *
+ * When a region is added its statistics and a copy of its quantile sketches
+ * are computed once into a partial aggregate. The national statistics merge
+ * the partial aggregates of all the regions with a fork/join reduction, the
+ * result is kept until the set of regions changes: adding a new region merges
+ * only its partial aggregate, so the data of the other regions is never
+ * scanned again.
+ *
+ * All the regions use the altitude ranges of the registry. The statistics of a
+ * region are taken when it is added, changes to the region after that are not
+ * reflected until it is added again.
+ *
+ * The registry is thread-safe.
+ */
+public class RegionRegistry {
+
+	private final String[] ranges;
+	private final Map<String, Region> regions = new ConcurrentHashMap<>();
+	private final Map<String, Partial> partials = new ConcurrentHashMap<>();
+	private volatile Partial national;
+
+	/**
+	 * Create an empty registry.
+	 *
+	 * @param ranges
+	 *            the altitude ranges of the regions, in the format
+	 *            "[minValue]-[maxValue]"
+	 */
+	public RegionRegistry(String... ranges) {
+		this.ranges = ranges.clone();
+	}
+
+	/**
+	 * Load the regions from their files concurrently, each file is read by a
+	 * task of the common fork/join pool.
+	 *
+	 * @param files
+	 *            a map with the name of the region as key and the path of its file
+	 *            as value
+	 */
+	public void loadAll(Map<String, String> files) {
+		loadAll(files, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Load the regions from their files concurrently.
+	 *
+	 * @param files
+	 *            a map with the name of the region as key and the path of its file
+	 *            as value
+	 * @param executor
+	 *            the executor running one task per file
+	 */
+	public void loadAll(Map<String, String> files, Executor executor) {
+		List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		files.forEach((name, file) -> tasks.add(CompletableFuture
+				.supplyAsync(() -> Region.fromFile(name, file), executor)
+				.thenAccept(this::addRegion)));
+		CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+	}
+
+	/**
+	 * Add a region, replacing the region with the same name if any. The altitude
+	 * ranges of the region are set to the ones of the registry.
+	 *
+	 * @param region
+	 *            the region
+	 */
+	public void addRegion(Region region) {
+		region.setAltitudeRanges(ranges);
+		Partial partial = new Partial(region.computeStats(), region.sketches());
+		synchronized (this) {
+			regions.put(region.getName(), region);
+			Partial previous = partials.put(region.getName(), partial);
+			Partial current = national;
+			// a replaced region invalidates the totals, a new one is merged in
+			national = previous != null || current == null ? null : current.copy().merge(partial);
+		}
+	}
+
+	/**
+	 * Return a region.
+	 *
+	 * @param name
+	 *            the name of the region
+	 * @return the region, or {@code null} if not available
+	 */
+	public Region getRegion(String name) {
+		return regions.get(name);
+	}
+
+	/**
+	 * Return all the regions.
+	 *
+	 * @return an unmodifiable collection of regions
+	 */
+	public Collection<Region> getRegions() {
+		return Collections.unmodifiableCollection(regions.values());
+	}
+
+	/**
+	 * Compute the total number of beds per each province of all the regions.
+	 *
+	 * @return a map with the province as key and the total number of beds as value
+	 */
+	public Map<String, Integer> totalBedsNumberPerProvince() {
+		return new HashMap<>(national().bedsPerProvince);
+	}
+
+	/**
+	 * Count the number of mountain huts of all the regions per altitude range.
+	 *
+	 * @return a map with the altitude range as key and the number of mountain huts
+	 *         as value
+	 */
+	public Map<String, Long> countMountainHutsPerAltitudeRange() {
+		return new HashMap<>(national().hutsPerRange);
+	}
+
+	/**
+	 * Compute the maximum number of beds of a single mountain hut of all the
+	 * regions per altitude range.
+	 *
+	 * @return a map with the altitude range as key and the maximum number of beds
+	 *         as value
+	 */
+	public Map<String, Optional<Integer>> maximumBedsNumberPerAltitudeRange() {
+		Map<String, Optional<Integer>> res = new HashMap<>();
+		national().maxBedsPerRange.forEach((range, max) -> res.put(range, Optional.of(max)));
+		return res;
+	}
+
+	/**
+	 * Return the municipalities with the most mountain huts in all the regions.
+	 * Municipalities with the same name in different provinces are different
+	 * places, so each municipality is reported with its province, as
+	 * {@code "Acceglio (CUNEO)"}; municipalities with the same number of huts
+	 * are in alphabetical order.
+	 *
+	 * @param k
+	 *            the number of municipalities
+	 * @return a list of at most k municipality names with their province
+	 */
+	public List<String> topMunicipalities(int k) {
+		Map<String, Long> counts = national().hutsPerMunicipality;
+		return counts.keySet().stream()
+				.sorted(Comparator.comparing((String m) -> counts.get(m)).reversed().thenComparing(Comparator.naturalOrder()))
+				.limit(k)
+				.toList();
+	}
+
+	/**
+	 * Estimate a quantile of the altitude of the mountain huts of all the
+	 * regions per each province, merging the sketches of the regions.
+	 * 
+	 * @param q
+	 *            the rank of the quantile, between 0 and 1
+	 * @return a map with the province as key and the altitude as value
+	 * @see Region#altitudeQuantilePerProvince(double)
+	 */
+	public Map<String, Integer> altitudeQuantilePerProvince(double q) {
+		return Region.quantiles(national().altitudeSketchPerProvince, q);
+	}
+
+	/**
+	 * Estimate a quantile of the number of beds of the mountain huts of all the
+	 * regions per each province.
+	 * 
+	 * @param q
+	 *            the rank of the quantile, between 0 and 1
+	 * @return a map with the province as key and the number of beds as value
+	 * @see Region#bedsNumberQuantilePerProvince(double)
+	 */
+	public Map<String, Integer> bedsNumberQuantilePerProvince(double q) {
+		return Region.quantiles(national().bedsSketchPerProvince, q);
+	}
+
+	/**
+	 * Estimate a quantile of the altitude of the mountain huts of all the
+	 * regions per each category.
+	 * 
+	 * @param q
+	 *            the rank of the quantile, between 0 and 1
+	 * @return a map with the category as key and the altitude as value
+	 * @see Region#altitudeQuantilePerCategory(double)
+	 */
+	public Map<String, Integer> altitudeQuantilePerCategory(double q) {
+		return Region.quantiles(national().altitudeSketchPerCategory, q);
+	}
+
+	/**
+	 * Estimate a quantile of the number of beds of the mountain huts of all the
+	 * regions per each category.
+	 * 
+	 * @param q
+	 *            the rank of the quantile, between 0 and 1
+	 * @return a map with the category as key and the number of beds as value
+	 * @see Region#bedsNumberQuantilePerCategory(double)
+	 */
+	public Map<String, Integer> bedsNumberQuantilePerCategory(double q) {
+		return Region.quantiles(national().bedsSketchPerCategory, q);
+	}
+
+	private Partial national() {
+		Partial res = national;
+		if (res == null) {
+			synchronized (this) {
+				res = national;
+				if (res == null) {
+					Partial[] all = partials.values().toArray(new Partial[0]);
+					res = all.length == 0 ? new Partial() : ForkJoinPool.commonPool().invoke(new MergeTask(all, 0, all.length));
+					national = res;
+				}
+			}
+		}
+		return res;
+	}
+
+	private static final class MergeTask extends RecursiveTask<Partial> {
+		private static final long serialVersionUID = 1L;
+		private static final int THRESHOLD = 4;
+
+		private final Partial[] partials;
+		private final int from, to;
+
+		MergeTask(Partial[] partials, int from, int to) {
+			this.partials = partials;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Partial compute() {
+			if (to - from <= THRESHOLD) {
+				Partial res = new Partial();
+				for (int i = from; i < to; i++) res.merge(partials[i]);
+				return res;
+			}
+			int mid = (from + to) >>> 1;
+			MergeTask right = new MergeTask(partials, mid, to);
+			right.fork();
+			Partial left = new MergeTask(partials, from, mid).compute();
+			return left.merge(right.join());
+		}
+	}
+
+	/**
+	 * Mergeable statistics of one or more regions.
+	 */
+	private static final class Partial {
+		final Map<String, Integer> bedsPerProvince;
+		final Map<String, Long> hutsPerRange;
+		final Map<String, Integer> maxBedsPerRange;
+		// keyed by the name of the municipality qualified by its province
+		final Map<String, Long> hutsPerMunicipality;
+		final Map<String, QuantileSketch> altitudeSketchPerProvince = new HashMap<>();
+		final Map<String, QuantileSketch> bedsSketchPerProvince = new HashMap<>();
+		final Map<String, QuantileSketch> altitudeSketchPerCategory = new HashMap<>();
+		final Map<String, QuantileSketch> bedsSketchPerCategory = new HashMap<>();
+
+		Partial() {
+			bedsPerProvince = new HashMap<>();
+			hutsPerRange = new HashMap<>();
+			maxBedsPerRange = new HashMap<>();
+			hutsPerMunicipality = new HashMap<>();
+		}
+
+		Partial(RegionStats stats, HutSketches sketches) {
+			bedsPerProvince = stats.totalBedsNumberPerProvince();
+			hutsPerRange = stats.countMountainHutsPerAltitudeRange();
+			maxBedsPerRange = new HashMap<>();
+			stats.maximumBedsNumberPerAltitudeRange().forEach((range, max) -> maxBedsPerRange.put(range, max.get()));
+			hutsPerMunicipality = new HashMap<>();
+			stats.countMountainHutsPerMunicipalityPerProvince().forEach((province, counts) -> counts
+					.forEach((municipality, n) -> hutsPerMunicipality.merge(municipality + " (" + province + ")", n, Long::sum)));
+			// the sketches of the region keep changing, the partial keeps copies
+			merge(altitudeSketchPerProvince, sketches.altitudePerProvince());
+			merge(bedsSketchPerProvince, sketches.bedsPerProvince());
+			merge(altitudeSketchPerCategory, sketches.altitudePerCategory());
+			merge(bedsSketchPerCategory, sketches.bedsPerCategory());
+		}
+
+		Partial copy() {
+			return new Partial().merge(this);
+		}
+
+		Partial merge(Partial other) {
+			other.bedsPerProvince.forEach((k, v) -> bedsPerProvince.merge(k, v, Integer::sum));
+			other.hutsPerRange.forEach((k, v) -> hutsPerRange.merge(k, v, Long::sum));
+			other.maxBedsPerRange.forEach((k, v) -> maxBedsPerRange.merge(k, v, Math::max));
+			other.hutsPerMunicipality.forEach((k, v) -> hutsPerMunicipality.merge(k, v, Long::sum));
+			merge(altitudeSketchPerProvince, other.altitudeSketchPerProvince);
+			merge(bedsSketchPerProvince, other.bedsSketchPerProvince);
+			merge(altitudeSketchPerCategory, other.altitudeSketchPerCategory);
+			merge(bedsSketchPerCategory, other.bedsSketchPerCategory);
+			return this;
+		}
+
+		private static void merge(Map<String, QuantileSketch> sketches, Map<String, QuantileSketch> other) {
+			other.forEach((k, v) -> sketches.computeIfAbsent(k, x -> new QuantileSketch()).merge(v));
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package mountainhuts;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a {@link Region}.
+ *
+ * The file starts with a header made of a magic number, the format version and
+ * the CRC-32C checksum of the rest of the file. It follows the name of the
+ * region, its altitude ranges, the dictionaries of provinces and categories,
+ * then the sections of the municipalities and of the huts. Each section holds
+ * the names as a table of offsets followed by their UTF-8 bytes, one fixed-width
+ * int column per attribute and the open addressing table of the names, so
+ * that opening a snapshot does not hash the names again. The rows of the
+ * removed huts close the file. All numbers are big endian.
+ */
+final class RegionSnapshot {
+
+	static final int MAGIC = 0x48555453; // "HUTS"
+	static final int VERSION = 2;
+	private static final int HEADER = 16;
+
+	private RegionSnapshot() {
+	}
+
+	static void save(Region region, Path file) throws IOException {
+		HutStore store = region.store();
+		CRC32C crc = new CRC32C();
+		try (OutputStream raw = Files.newOutputStream(file)) {
+			DataOutputStream header = new DataOutputStream(raw);
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeLong(0);
+			header.flush();
+
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(raw, crc), 1 << 16));
+			writeString(out, region.getName());
+			String[] ranges = region.ranges().ranges();
+			out.writeInt(ranges.length);
+			for (String r : ranges) writeString(out, r);
+			writeDictionary(out, store.provinces);
+			writeDictionary(out, store.categories);
+
+			int m = store.municipalities;
+			out.writeInt(m);
+			writeNames(out, store.municipalityNames, m);
+			writeInts(out, store.municipalityProvince, m);
+			writeInts(out, store.municipalityAltitude, m);
+			out.writeInt(store.registered);
+			writeInts(out, store.registeredRows, store.registered);
+			writeTable(out, store.municipalityTable, m);
+
+			int h = store.huts;
+			out.writeInt(h);
+			writeNames(out, store.hutNames, h);
+			writeInts(out, store.altitude, h);
+			writeInts(out, store.beds, h);
+			writeInts(out, store.municipality, h);
+			writeInts(out, store.category, h);
+			writeTable(out, store.hutTable, h);
+			out.writeInt(store.removedHuts);
+			for (int i = 0; i < h; i++) {
+				if (store.removed[i]) out.writeInt(i);
+			}
+			out.flush();
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(8).putLong(0, crc.getValue()), 8);
+		}
+	}
+
+	static Region open(Path file) throws IOException {
+		MappedByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException("Region snapshot too large: " + file);
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buf.limit() < HEADER || buf.getInt(0) != MAGIC) throw new IOException("Not a region snapshot: " + file);
+		int version = buf.getInt(4);
+		if (version < 1 || version > VERSION) throw new IOException("Unsupported region snapshot version " + version);
+		CRC32C crc = new CRC32C();
+		crc.update(buf.slice(HEADER, buf.limit() - HEADER));
+		if (crc.getValue() != buf.getLong(8)) throw new IOException("Corrupted region snapshot: " + file);
+
+		try {
+			buf.position(HEADER);
+			String name = readString(buf);
+			String[] ranges = new String[buf.getInt()];
+			for (int i = 0; i < ranges.length; i++) ranges[i] = readString(buf);
+
+			HutStore store = new HutStore();
+			readDictionary(buf, store.provinces);
+			readDictionary(buf, store.categories);
+
+			int m = buf.getInt();
+			store.municipalities = m;
+			readNames(buf, store.municipalityNames, m);
+			store.municipalityProvince = readInts(buf, m);
+			store.municipalityAltitude = readInts(buf, m);
+			store.municipalityViews = new AtomicReferenceArray<>(store.municipalityProvince.length);
+			store.isRegistered = new boolean[store.municipalityProvince.length];
+			store.registered = buf.getInt();
+			store.registeredRows = readInts(buf, store.registered);
+			for (int i = 0; i < store.registered; i++) store.isRegistered[store.registeredRows[i]] = true;
+			readTable(buf, store.municipalityTable, m);
+
+			int h = buf.getInt();
+			store.huts = h;
+			readNames(buf, store.hutNames, h);
+			store.altitude = readInts(buf, h);
+			store.beds = readInts(buf, h);
+			store.municipality = readInts(buf, h);
+			store.category = readInts(buf, h);
+			store.hutViews = new AtomicReferenceArray<>(store.altitude.length);
+			store.removed = new boolean[store.altitude.length];
+			readTable(buf, store.hutTable, h);
+			// version 1 has no removed huts
+			if (version > 1) {
+				store.removedHuts = buf.getInt();
+				for (int i = 0; i < store.removedHuts; i++) store.removed[buf.getInt()] = true;
+			}
+
+			return new Region(name, store, new AltitudeRanges(ranges));
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupted region snapshot: " + file, e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		int length = buf.getInt();
+		if (length < 0) return null;
+		byte[] b = new byte[length];
+		buf.get(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	private static void writeDictionary(DataOutputStream out, HutStore.Dictionary dictionary) throws IOException {
+		out.writeInt(dictionary.size());
+		for (int i = 0; i < dictionary.size(); i++) writeString(out, dictionary.value(i));
+	}
+
+	private static void readDictionary(ByteBuffer buf, HutStore.Dictionary dictionary) {
+		for (int i = 0, n = buf.getInt(); i < n; i++) dictionary.code(readString(buf));
+	}
+
+	/**
+	 * Write the offsets of the names, then their bytes padded to a multiple of 4.
+	 */
+	private static void writeNames(DataOutputStream out, HutStore.StringColumn names, int n) throws IOException {
+		byte[][] bytes = new byte[n][];
+		int offset = 0;
+		out.writeInt(0);
+		for (int i = 0; i < n; i++) {
+			bytes[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+			offset += bytes[i].length;
+			out.writeInt(offset);
+		}
+		for (byte[] b : bytes) out.write(b);
+		for (int i = offset; i % 4 != 0; i++) out.write(0);
+	}
+
+	private static void readNames(ByteBuffer buf, HutStore.StringColumn names, int n) {
+		IntBuffer offsets = buf.slice(buf.position(), 4 * (n + 1)).asIntBuffer();
+		int length = offsets.get(n);
+		int start = buf.position() + 4 * (n + 1);
+		names.map(buf.slice(start, length), offsets, n);
+		buf.position(start + (length + 3) / 4 * 4);
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values, int n) throws IOException {
+		for (int i = 0; i < n; i++) out.writeInt(values[i]);
+	}
+
+	/**
+	 * Copy a column, its capacity is the one of a new store if it is smaller.
+	 */
+	private static int[] readInts(ByteBuffer buf, int n) {
+		int[] values = new int[Math.max(16, n)];
+		buf.asIntBuffer().get(values, 0, n);
+		buf.position(buf.position() + 4 * n);
+		return values;
+	}
+
+	private static void writeTable(DataOutputStream out, HutStore.NameTable table, int n) throws IOException {
+		out.writeInt(table.slots.length);
+		writeInts(out, table.slots, table.slots.length);
+		writeInts(out, table.hashes, n);
+	}
+
+	private static void readTable(ByteBuffer buf, HutStore.NameTable table, int n) {
+		table.slots = readInts(buf, buf.getInt());
+		table.hashes = readInts(buf, n);
+	}
+}
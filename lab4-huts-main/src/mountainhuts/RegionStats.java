@@ -0,0 +1,318 @@
+package mountainhuts;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Aggregated statistics of a region.
+ *
+ * The statistics are accumulated in primitive arrays indexed by the codes of
+ * the provinces, the rows of the municipalities and the altitude ranges of the
+ * {@link HutStore} of the region, visiting each municipality and each mountain
+ * hut exactly once. The maps returned by the query methods are built from the
+ * accumulators and have the same content as the ones returned by the
+ * corresponding methods of {@link Region}.
+ *
+ * The names of the municipalities are also kept in sorted sets by number of
+ * huts: adding a hut moves its municipality to the next set, and the lists of
+ * names are rebuilt only for the sets that changed.
+ *
+ * Removing a hut subtracts it from the accumulators. The maximum number of
+ * beds of a range is computed again, scanning the huts, only when the last hut
+ * with that number of beds is removed from the range.
+ *
+ * The queries can run in parallel, as those of {@link Region}: the maxima and
+ * the lists of names that are out of date are computed again by the first
+ * query holding the lock of this object, the updates must not run with them.
+ */
+public class RegionStats {
+
+	private final HutStore store;
+	private final AltitudeRanges ranges;
+
+	private long[] municipalitiesPerProvince = new long[8];
+	private int[] bedsPerProvince = new int[8];
+	private long[] hutsPerProvince = new long[8];
+	private long[] hutsPerMunicipality = new long[16];
+
+	private final long[] hutsPerRange;
+	private final int[] maxBedsPerRange;
+	// number of huts with the maximum number of beds of each range
+	private final long[] maxBedsCountPerRange;
+	private volatile boolean maxBedsStale;
+
+	// names of the municipalities by number of huts
+	private final Map<Long, TreeSet<String>> namesPerCount = new HashMap<>();
+	// immutable lists of the sets above, missing for the sets changed since
+	private final Map<Long, List<String>> namesPerCountLists = new HashMap<>();
+	private volatile Map<Long, List<String>> namesPerCountView;
+
+	RegionStats(HutStore store, AltitudeRanges ranges) {
+		this.store = store;
+		this.ranges = ranges;
+		hutsPerRange = new long[ranges.buckets()];
+		maxBedsPerRange = new int[ranges.buckets()];
+		maxBedsCountPerRange = new long[ranges.buckets()];
+	}
+
+	/**
+	 * Compute the statistics of all the rows of a store.
+	 */
+	static RegionStats of(HutStore store, AltitudeRanges ranges) {
+		RegionStats stats = new RegionStats(store, ranges);
+		stats.ensureCapacity();
+		int[] province = store.municipalityProvince;
+		int[] registered = store.registeredRows;
+		for (int i = 0, n = store.registered; i < n; i++) {
+			stats.municipalitiesPerProvince[province[registered[i]]]++;
+		}
+		int[] municipality = store.municipality;
+		int[] beds = store.beds;
+		boolean[] removed = store.removed;
+		for (int h = 0, n = store.huts; h < n; h++) {
+			if (!removed[h]) stats.add(municipality[h], beds[h], store.effectiveAltitude(h));
+		}
+		for (int m = 0, n = store.municipalities; m < n; m++) {
+			if (stats.hutsPerMunicipality[m] > 0) {
+				stats.namesPerCount.computeIfAbsent(stats.hutsPerMunicipality[m], k -> new TreeSet<>()).add(store.municipalityName(m));
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * Account for a municipality of the region.
+	 */
+	void addMunicipality(int m) {
+		ensureCapacity();
+		municipalitiesPerProvince[store.municipalityProvince[m]]++;
+	}
+
+	/**
+	 * Account for a mountain hut of the region.
+	 *
+	 * @param h
+	 *            the row of the mountain hut
+	 */
+	void addHut(int h) {
+		ensureCapacity();
+		int m = store.municipality[h];
+		add(m, store.beds[h], store.effectiveAltitude(h));
+		moveMunicipality(m, hutsPerMunicipality[m] - 1);
+	}
+
+	/**
+	 * Subtract a mountain hut of the region, before it is removed or updated in
+	 * the store.
+	 *
+	 * @param h
+	 *            the row of the mountain hut
+	 */
+	void removeHut(int h) {
+		int m = store.municipality[h];
+		int p = store.municipalityProvince[m];
+		int beds = store.beds[h];
+		if (beds == HutStore.MISSING) beds = 0;
+		hutsPerMunicipality[m]--;
+		hutsPerProvince[p]--;
+		bedsPerProvince[p] -= beds;
+
+		int b = ranges.bucketOf(store.effectiveAltitude(h));
+		hutsPerRange[b]--;
+		if (beds == maxBedsPerRange[b] && --maxBedsCountPerRange[b] == 0 && hutsPerRange[b] > 0) maxBedsStale = true;
+		moveMunicipality(m, hutsPerMunicipality[m] + 1);
+	}
+
+	// moves a municipality from the set of its previous count to its current one
+	private void moveMunicipality(int m, long previous) {
+		String name = store.municipalityName(m);
+		long count = hutsPerMunicipality[m];
+		if (previous > 0) {
+			TreeSet<String> names = namesPerCount.get(previous);
+			names.remove(name);
+			if (names.isEmpty()) namesPerCount.remove(previous);
+			namesPerCountLists.remove(previous);
+		}
+		if (count > 0) {
+			namesPerCount.computeIfAbsent(count, k -> new TreeSet<>()).add(name);
+			namesPerCountLists.remove(count);
+		}
+		namesPerCountView = null;
+	}
+
+	private void add(int m, int beds, int altitude) {
+		int p = store.municipalityProvince[m];
+		if (beds == HutStore.MISSING) beds = 0;
+		hutsPerMunicipality[m]++;
+		hutsPerProvince[p]++;
+		bedsPerProvince[p] += beds;
+
+		int b = ranges.bucketOf(altitude);
+		if (hutsPerRange[b] == 0 || beds > maxBedsPerRange[b]) {
+			maxBedsPerRange[b] = beds;
+			maxBedsCountPerRange[b] = 0;
+		}
+		if (beds == maxBedsPerRange[b]) maxBedsCountPerRange[b]++;
+		hutsPerRange[b]++;
+	}
+
+	// computes again the maximum of the ranges that lost all their largest huts
+	private synchronized void refreshMaxBeds() {
+		if (!maxBedsStale) return;
+		long[] seen = new long[hutsPerRange.length];
+		for (int h = 0, n = store.huts; h < n; h++) {
+			if (store.removed[h]) continue;
+			int b = ranges.bucketOf(store.effectiveAltitude(h));
+			if (maxBedsCountPerRange[b] > 0) continue;
+			int beds = store.beds[h];
+			if (beds == HutStore.MISSING) beds = 0;
+			if (seen[b] == 0 || beds > maxBedsPerRange[b]) {
+				maxBedsPerRange[b] = beds;
+				seen[b] = 0;
+			}
+			if (beds == maxBedsPerRange[b]) seen[b]++;
+		}
+		for (int b = 0; b < seen.length; b++) {
+			if (maxBedsCountPerRange[b] == 0) maxBedsCountPerRange[b] = seen[b];
+		}
+		maxBedsStale = false;
+	}
+
+	/*
+	 * Accumulators read by the RegionExporter; provinces, municipalities and
+	 * ranges without huts have a count of zero.
+	 */
+
+	long municipalities(int p) {
+		return p < municipalitiesPerProvince.length ? municipalitiesPerProvince[p] : 0;
+	}
+
+	long huts(int p) {
+		return p < hutsPerProvince.length ? hutsPerProvince[p] : 0;
+	}
+
+	int beds(int p) {
+		return p < bedsPerProvince.length ? bedsPerProvince[p] : 0;
+	}
+
+	long hutsOfMunicipality(int m) {
+		return m < hutsPerMunicipality.length ? hutsPerMunicipality[m] : 0;
+	}
+
+	int buckets() {
+		return hutsPerRange.length;
+	}
+
+	String label(int b) {
+		return ranges.label(b);
+	}
+
+	long hutsInRange(int b) {
+		return hutsPerRange[b];
+	}
+
+	int maxBedsInRange(int b) {
+		if (maxBedsStale) refreshMaxBeds();
+		return maxBedsPerRange[b];
+	}
+
+	Map<Long, TreeSet<String>> namesPerCount() {
+		return namesPerCount;
+	}
+
+	/**
+	 * @see Region#countMunicipalitiesPerProvince()
+	 */
+	public Map<String, Long> countMunicipalitiesPerProvince() {
+		Map<String, Long> res = new HashMap<>();
+		for (int p = 0, n = store.provinces.size(); p < n; p++) {
+			if (municipalitiesPerProvince[p] > 0) res.put(store.provinces.value(p), municipalitiesPerProvince[p]);
+		}
+		return res;
+	}
+
+	/**
+	 * @see Region#countMountainHutsPerMunicipalityPerProvince()
+	 */
+	public Map<String, Map<String, Long>> countMountainHutsPerMunicipalityPerProvince() {
+		Map<String, Map<String, Long>> res = new HashMap<>();
+		for (int m = 0, n = store.municipalities; m < n; m++) {
+			if (hutsPerMunicipality[m] > 0) {
+				res.computeIfAbsent(store.provinces.value(store.municipalityProvince[m]), k -> new HashMap<>())
+					.put(store.municipalityName(m), hutsPerMunicipality[m]);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @see Region#countMountainHutsPerAltitudeRange()
+	 */
+	public Map<String, Long> countMountainHutsPerAltitudeRange() {
+		Map<String, Long> res = new HashMap<>();
+		for (int b = 0; b < hutsPerRange.length; b++) {
+			if (hutsPerRange[b] > 0) res.put(ranges.label(b), hutsPerRange[b]);
+		}
+		return res;
+	}
+
+	/**
+	 * @see Region#totalBedsNumberPerProvince()
+	 */
+	public Map<String, Integer> totalBedsNumberPerProvince() {
+		Map<String, Integer> res = new HashMap<>();
+		for (int p = 0, n = store.provinces.size(); p < n; p++) {
+			if (hutsPerProvince[p] > 0) res.put(store.provinces.value(p), bedsPerProvince[p]);
+		}
+		return res;
+	}
+
+	/**
+	 * @see Region#maximumBedsNumberPerAltitudeRange()
+	 */
+	public Map<String, Optional<Integer>> maximumBedsNumberPerAltitudeRange() {
+		if (maxBedsStale) refreshMaxBeds();
+		Map<String, Optional<Integer>> res = new HashMap<>();
+		for (int b = 0; b < hutsPerRange.length; b++) {
+			if (hutsPerRange[b] > 0) res.put(ranges.label(b), Optional.of(maxBedsPerRange[b]));
+		}
+		return res;
+	}
+
+	/**
+	 * @see Region#municipalityNamesPerCountOfMountainHuts()
+	 */
+	public Map<Long, List<String>> municipalityNamesPerCountOfMountainHuts() {
+		Map<Long, List<String>> res = namesPerCountView;
+		if (res != null) return res;
+		synchronized (this) {
+			res = namesPerCountView;
+			if (res == null) {
+				namesPerCountLists.keySet().retainAll(namesPerCount.keySet());
+				namesPerCount.forEach((count, names) -> namesPerCountLists.computeIfAbsent(count, k -> List.copyOf(names)));
+				res = Collections.unmodifiableMap(new HashMap<>(namesPerCountLists));
+				namesPerCountView = res;
+			}
+			return res;
+		}
+	}
+
+	// the store may have grown since the last update
+	private void ensureCapacity() {
+		if (store.municipalities > hutsPerMunicipality.length) {
+			hutsPerMunicipality = Arrays.copyOf(hutsPerMunicipality, Math.max(store.municipalities, hutsPerMunicipality.length * 2));
+		}
+		int provinces = store.provinces.size();
+		if (provinces > bedsPerProvince.length) {
+			int capacity = Math.max(provinces, bedsPerProvince.length * 2);
+			municipalitiesPerProvince = Arrays.copyOf(municipalitiesPerProvince, capacity);
+			bedsPerProvince = Arrays.copyOf(bedsPerProvince, capacity);
+			hutsPerProvince = Arrays.copyOf(hutsPerProvince, capacity);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package mountainhuts;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded table of canonical strings decoded from UTF-8 bytes.
+ *
+ * The same bytes always return the same {@link String} instance, without
+ * decoding them again, as long as the table is not full: once it holds the
+ * maximum number of strings, new values are decoded into fresh strings and not
+ * kept. It is meant for the columns with few distinct values, such as
+ * provinces and categories. The table is not thread-safe.
+ */
+final class StringInterner {
+
+	private final int maxSize;
+	private final byte[][] keys;
+	private final String[] values;
+	private final int[] hashes;
+	private final int mask;
+	private int size;
+
+	/**
+	 * Create an empty table.
+	 *
+	 * @param maxSize
+	 *            the maximum number of strings kept
+	 */
+	StringInterner(int maxSize) {
+		this.maxSize = maxSize;
+		int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) << 1;
+		keys = new byte[capacity][];
+		values = new String[capacity];
+		hashes = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Return the string of the bytes between two positions of a buffer.
+	 */
+	String intern(ByteBuffer buf, int from, int to) {
+		int hash = 1;
+		for (int i = from; i < to; i++) hash = 31 * hash + buf.get(i);
+		int slot = (hash ^ hash >>> 16) & mask;
+		for (byte[] key; (key = keys[slot]) != null; slot = (slot + 1) & mask) {
+			if (hashes[slot] == hash && equal(key, buf, from, to)) return values[slot];
+		}
+		byte[] bytes = new byte[to - from];
+		buf.get(from, bytes);
+		String value = new String(bytes, StandardCharsets.UTF_8);
+		if (size < maxSize) {
+			keys[slot] = bytes;
+			values[slot] = value;
+			hashes[slot] = hash;
+			size++;
+		}
+		return value;
+	}
+
+	private static boolean equal(byte[] key, ByteBuffer buf, int from, int to) {
+		if (key.length != to - from) return false;
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != buf.get(from + i)) return false;
+		}
+		return true;
+	}
+}
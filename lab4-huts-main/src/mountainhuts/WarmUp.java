@@ -0,0 +1,83 @@
+package mountainhuts;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * First build of an index or of an aggregate of a {@link Region}, with the
+ * query that triggered it.
+ *
+ * The structures of a region are built on their first use, so the first query
+ * using a structure waits for it: the warm-ups returned by
+ * {@link Region#getWarmUps()} tell how long, and which query paid for it. A
+ * structure may need others, which are built first and reported separately:
+ * the time of a structure does not include theirs, so the times of the
+ * warm-ups with the same trigger add up to the warm-up of that query.
+ */
+public final class WarmUp {
+
+	private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+	private static final String PACKAGE = WarmUp.class.getPackageName();
+
+	private final String structure;
+	private final String trigger;
+	private final long end;
+	private final long nanos;
+
+	WarmUp(String structure, String trigger, long end, long nanos) {
+		this.structure = structure;
+		this.trigger = trigger;
+		this.end = end;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * Return the name of the structure, e.g. {@code "load"} for the parsing of
+	 * the file or {@code "stats"} for the aggregates.
+	 *
+	 * @return the name of the structure
+	 */
+	public String getStructure() {
+		return structure;
+	}
+
+	/**
+	 * Return the method that triggered the build, as
+	 * {@code "Region.countMunicipalitiesPerProvince"}.
+	 *
+	 * @return the class and the name of the method
+	 */
+	public String getTrigger() {
+		return trigger;
+	}
+
+	/**
+	 * Return the time spent building the structure, excluding the structures
+	 * it needed.
+	 *
+	 * @return the time
+	 */
+	public Duration getTime() {
+		return Duration.ofNanos(nanos);
+	}
+
+	long end() {
+		return end;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s built in %.3f ms by %s", structure, nanos / 1e6, trigger);
+	}
+
+	/**
+	 * Return the outermost method of this package in the stack of the current
+	 * thread, the entry point of the query building a structure.
+	 */
+	static String trigger() {
+		Optional<StackWalker.StackFrame> frame = WALKER.walk(frames -> frames
+				.filter(f -> f.getDeclaringClass().getPackageName().equals(PACKAGE))
+				.reduce((inner, outer) -> outer));
+		return frame.map(f -> f.getDeclaringClass().getSimpleName() + "." + f.getMethodName()).orElse("unknown");
+	}
+}
@@ -0,0 +1,108 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import mountainhuts.HutSelection;
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+
+public class TestBitmapIndex {
+
+	private static final String[] CATEGORIES = { "Rifugio", "Bivacco Fisso", "Rifugio escursionistico", "Capanna sociale" };
+
+	private static void assertSelection(Region r, Predicate<MountainHut> filter, HutSelection s) {
+		long count = r.getMountainHuts().stream().filter(filter).count();
+		long beds = r.getMountainHuts().stream().filter(filter).mapToLong(MountainHut::getBedsNumber).sum();
+		assertEquals(count, s.count());
+		assertEquals(beds, s.totalBedsNumber());
+		assertEquals(count, s.getMountainHuts().size());
+		assertTrue(s.getMountainHuts().stream().allMatch(filter));
+	}
+
+	@Test
+	public void testSampleData() {
+		Region r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		r.setAltitudeRanges("0-1000", "1000-1500", "1500-2000");
+
+		HutSelection bivacchi = r.selectByCategory("Bivacco Fisso");
+		assertSelection(r, h -> h.getCategory().equals("Bivacco Fisso"), bivacchi);
+		assertSelection(r, h -> h.getMunicipality().getProvince().equals("CUNEO"), r.selectByProvince("CUNEO"));
+		assertEquals(52, r.selectByAltitudeRange("1500-2000").count());
+		assertEquals(57, r.selectByAltitudeRange("0-INF").count());
+		assertEquals(27, bivacchi.count());
+		assertEquals(0, r.selectByCategory("Albergo").count());
+		assertEquals(0, r.selectByAltitudeRange("3000-4000").count());
+
+		assertSelection(r, h -> h.getCategory().equals("Bivacco Fisso") && h.getMunicipality().getProvince().equals("TORINO"),
+				bivacchi.and(r.selectByProvince("TORINO")));
+		assertSelection(r, h -> h.getCategory().equals("Bivacco Fisso") || h.getMunicipality().getProvince().equals("TORINO"),
+				bivacchi.or(r.selectByProvince("TORINO")));
+	}
+
+	@Test
+	public void testLargeRegion() {
+		Region r = new Region("Italia");
+		Random random = new Random(42);
+		Municipality[] ms = new Municipality[300];
+		for (int i = 0; i < ms.length; i++) {
+			ms[i] = r.createOrGetMunicipality("M" + i, "P" + (i % 11), 300 + random.nextInt(2000));
+		}
+		for (int i = 0; i < 300_000; i++) {
+			// clustered rows make both sparse and dense containers
+			String category = i % 100_000 < 70_000 ? CATEGORIES[i % 2] : CATEGORIES[2 + random.nextInt(2)];
+			Integer altitude = random.nextInt(10) == 0 ? null : random.nextInt(3500);
+			r.createOrGetMountainHut("H" + i, altitude, category, random.nextInt(100), ms[random.nextInt(ms.length)]);
+		}
+		r.setAltitudeRanges("0-1000", "1000-2000", "2000-3000");
+
+		HutSelection high = r.selectByAltitudeRange("2000-3000").or(r.selectByAltitudeRange("0-INF"));
+		HutSelection rifugi = r.selectByCategory("Rifugio").or(r.selectByCategory("Capanna sociale"));
+		assertSelection(r, h -> !h.getCategory().equals("Bivacco Fisso") && !h.getCategory().equals("Rifugio escursionistico"), rifugi);
+		assertSelection(r, h -> h.getMunicipality().getProvince().equals("P3") && h.getCategory().equals("Rifugio")
+				&& (h.getAltitude().orElse(h.getMunicipality().getAltitude()) > 2000
+						|| h.getAltitude().orElse(h.getMunicipality().getAltitude()) == 0),
+				r.selectByProvince("P3").and(r.selectByCategory("Rifugio")).and(high));
+		assertSelection(r, h -> h.getCategory().equals("Bivacco Fisso") || h.getMunicipality().getProvince().equals("P5"),
+				r.selectByCategory("Bivacco Fisso").or(r.selectByProvince("P5")));
+	}
+
+	@Test
+	public void testLiveSelections() {
+		Region r = new Region("Piemonte");
+		r.setAltitudeRanges("0-1000", "1000-2000");
+		Municipality m = r.createOrGetMunicipality("Acceglio", "CUNEO", 1200);
+		r.createOrGetMountainHut("Campo Base", 1500, "Rifugio", 32, m);
+
+		// taken before the first hut of the category and of the province
+		HutSelection albergo = r.selectByCategory("Albergo");
+		HutSelection aosta = r.selectByProvince("AOSTA");
+		HutSelection low = r.selectByAltitudeRange("1000-2000");
+		HutSelection high = r.selectByAltitudeRange("2000-3000");
+		assertEquals(0, albergo.count());
+		assertEquals(0, aosta.count());
+
+		Municipality courmayeur = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		r.createOrGetMountainHut("Torino", 3375, "Albergo", 150, courmayeur);
+		r.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, courmayeur);
+		assertEquals(1, albergo.count());
+		assertEquals(2, aosta.count());
+		assertEquals(150, albergo.and(aosta).totalBedsNumber());
+		assertEquals(1, low.count());
+
+		// the selections of a range follow the ranges with the same label
+		r.setAltitudeRanges("1000-2000", "2000-3000", "3000-4000");
+		assertEquals(1, low.count());
+		assertEquals(1, high.count());
+		r.setAltitudeRanges("0-3000");
+		assertEquals(0, low.count());
+		assertEquals(0, high.count());
+		r.setAltitudeRanges("2000-3000");
+		assertEquals(1, high.count());
+	}
+}
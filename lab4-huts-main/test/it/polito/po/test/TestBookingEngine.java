@@ -0,0 +1,223 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import mountainhuts.Booking;
+import mountainhuts.BookingEngine;
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+
+public class TestBookingEngine {
+
+	private static final LocalDate FIRST = LocalDate.of(2026, 6, 15);
+
+	private static Region region() {
+		Region r = new Region("Piemonte");
+		Municipality alagna = r.createOrGetMunicipality("Alagna Valsesia", "VERCELLI", 1191);
+		Municipality macugnaga = r.createOrGetMunicipality("Macugnaga", "VERBANO-CUSIO-OSSOLA", 1327);
+		r.createOrGetMountainHut("Capanna Margherita", 4554, "Rifugio", 70, alagna);
+		r.createOrGetMountainHut("Rifugio Barba Ferrero", 2247, "Rifugio", 20, alagna);
+		r.createOrGetMountainHut("Bivacco Lanti", null, "Bivacco", null, alagna);
+		r.createOrGetMountainHut("Rifugio Zamboni Zappa", 2065, "Rifugio", 10, macugnaga);
+		return r;
+	}
+
+	private static List<String> names(List<MountainHut> huts) {
+		return huts.stream().map(MountainHut::getName).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testBookAndCancel() {
+		BookingEngine engine = new BookingEngine(region(), FIRST, 90);
+		Booking b = engine.book("Rifugio Barba Ferrero", FIRST.plusDays(3), 2, 15);
+		assertNotNull(b);
+		assertEquals("Rifugio Barba Ferrero", b.getMountainHut().getName());
+		assertEquals(FIRST.plusDays(3), b.getFrom());
+		assertEquals(5, engine.getFreeBeds("Rifugio Barba Ferrero", FIRST.plusDays(3)));
+		assertEquals(5, engine.getFreeBeds("Rifugio Barba Ferrero", FIRST.plusDays(4)));
+		assertEquals(20, engine.getFreeBeds("Rifugio Barba Ferrero", FIRST.plusDays(5)));
+
+		// all the nights or none
+		assertNull(engine.book("Rifugio Barba Ferrero", FIRST.plusDays(4), 3, 6));
+		assertEquals(20, engine.getFreeBeds("Rifugio Barba Ferrero", FIRST.plusDays(5)));
+		assertNotNull(engine.book("Rifugio Barba Ferrero", FIRST.plusDays(4), 3, 5));
+		assertEquals(0, engine.getFreeBeds("Rifugio Barba Ferrero", FIRST.plusDays(4)));
+		assertEquals(15, engine.getFreeBeds("Rifugio Barba Ferrero", FIRST.plusDays(6)));
+
+		assertTrue(engine.cancel(b));
+		assertFalse(engine.cancel(b));
+		assertTrue(b.isCancelled());
+		assertEquals(20, engine.getFreeBeds("Rifugio Barba Ferrero", FIRST.plusDays(3)));
+		assertEquals(15, engine.getFreeBeds("Rifugio Barba Ferrero", FIRST.plusDays(4)));
+
+		// a missing number of beds counts as zero
+		assertNull(engine.book("Bivacco Lanti", FIRST, 1, 1));
+		assertEquals(0, engine.getFreeBeds("Bivacco Lanti", FIRST));
+	}
+
+	@Test
+	public void testInvalidRequests() {
+		BookingEngine engine = new BookingEngine(region(), FIRST, 90);
+		assertThrows(IllegalArgumentException.class, () -> engine.book("Rifugio Torino", FIRST, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> engine.book("Capanna Margherita", FIRST.minusDays(1), 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> engine.book("Capanna Margherita", FIRST.plusDays(89), 2, 1));
+		assertThrows(IllegalArgumentException.class, () -> engine.book("Capanna Margherita", FIRST, 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> engine.book("Capanna Margherita", FIRST, 1, 0));
+		assertNotNull(engine.book("Capanna Margherita", FIRST.plusDays(89), 1, 70));
+
+		Booking other = new BookingEngine(region(), FIRST, 90).book("Capanna Margherita", FIRST, 1, 1);
+		assertThrows(IllegalArgumentException.class, () -> engine.cancel(other));
+	}
+
+	@Test
+	public void testFindAvailable() {
+		Region r = region();
+		BookingEngine engine = new BookingEngine(r, FIRST, 90);
+		assertEquals(List.of("Capanna Margherita", "Rifugio Barba Ferrero"),
+				names(engine.findAvailable("VERCELLI", FIRST, 7, 10)));
+		assertEquals(List.of("Capanna Margherita"), names(engine.findAvailable("VERCELLI", FIRST, 7, 21)));
+
+		engine.book("Capanna Margherita", FIRST.plusDays(6), 1, 65);
+		assertEquals(List.of("Rifugio Barba Ferrero"), names(engine.findAvailable("VERCELLI", FIRST, 7, 10)));
+		assertEquals(List.of("Capanna Margherita", "Rifugio Barba Ferrero"),
+				names(engine.findAvailable("VERCELLI", FIRST, 6, 10)));
+		assertEquals(List.of("Rifugio Zamboni Zappa"), names(engine.findAvailable("VERBANO-CUSIO-OSSOLA", FIRST, 1, 10)));
+		assertTrue(engine.findAvailable("AOSTA", FIRST, 1, 1).isEmpty());
+
+		// huts added after the engine can be booked too
+		Municipality m = r.createOrGetMunicipality("Alagna Valsesia", "VERCELLI", 1191);
+		r.createOrGetMountainHut("Rifugio Città di Vigevano", 2871, "Rifugio", 30, m);
+		assertNotNull(engine.book("Rifugio Città di Vigevano", FIRST, 7, 25));
+		assertEquals(List.of("Capanna Margherita", "Rifugio Barba Ferrero"), names(engine.findAvailable("VERCELLI", FIRST, 1, 6)));
+		assertEquals(List.of("Capanna Margherita", "Rifugio Città di Vigevano"),
+				names(engine.findAvailable("VERCELLI", FIRST.plusDays(7), 1, 21)));
+	}
+
+	@Test
+	public void testNoOverselling() throws Exception {
+		final int threads = 8;
+		final int requests = 20_000;
+		final int nights = 30;
+		Region r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		BookingEngine engine = new BookingEngine(r, FIRST, nights);
+		// few huts, so that the threads compete for the same beds
+		List<String> huts = r.selectByProvince("CUNEO").getMountainHuts().stream()
+				.filter(h -> h.getBedsNumber() != null && h.getBedsNumber() > 0)
+				.limit(5).map(MountainHut::getName).collect(Collectors.toList());
+		assertEquals(5, huts.size());
+
+		CyclicBarrier start = new CyclicBarrier(threads);
+		List<List<Booking>> kept = new ArrayList<>();
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			List<Booking> mine = new ArrayList<>();
+			kept.add(mine);
+			Random random = new Random(t);
+			workers.add(new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < requests; i++) {
+						int length = 1 + random.nextInt(4);
+						Booking b = engine.book(huts.get(random.nextInt(huts.size())),
+								FIRST.plusDays(random.nextInt(nights - length + 1)), length, 1 + random.nextInt(4));
+						if (b == null) continue;
+						// cancel some bookings, freeing beds for the other threads
+						if (random.nextInt(3) == 0) engine.cancel(b);
+						else mine.add(b);
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			}));
+		}
+		for (Thread w : workers) w.start();
+		for (Thread w : workers) w.join();
+		assertEquals(Collections.emptyList(), errors);
+
+		for (String hut : huts) {
+			int capacity = r.getMountainHuts().stream().filter(h -> h.getName().equals(hut)).findFirst().get()
+					.getBedsNumber();
+			int[] booked = new int[nights];
+			for (List<Booking> mine : kept) {
+				for (Booking b : mine) {
+					if (!b.getMountainHut().getName().equals(hut)) continue;
+					int n = (int) (b.getFrom().toEpochDay() - FIRST.toEpochDay());
+					for (int i = n; i < n + b.getNights(); i++) booked[i] += b.getBeds();
+				}
+			}
+			for (int i = 0; i < nights; i++) {
+				assertTrue(booked[i] <= capacity);
+				assertEquals(capacity - booked[i], engine.getFreeBeds(hut, FIRST.plusDays(i)));
+			}
+		}
+	}
+
+	@Test
+	public void testSameHutConcurrently() throws Exception {
+		final int threads = 8;
+		final int huts = 20_000;
+		// a file read by the region, so that no view of the huts is created before the threads
+		Path file = Files.createTempFile("huts", ".csv");
+		try {
+			List<String> lines = new ArrayList<>();
+			lines.add("Province;Municipality;MunicipalityAltitude;Name;Altitude;Category;BedsNumber");
+			for (int i = 0; i < huts; i++) {
+				lines.add("PROVINCE" + i % 4 + ";Municipality " + i % 100 + ";1000;Hut " + i + ";2000;Rifugio;" + (1 + i % 10));
+			}
+			Files.write(file, lines);
+			Region r = Region.fromFile("Synthetic", file.toString());
+			BookingEngine engine = new BookingEngine(r, FIRST, 1);
+
+			CyclicBarrier start = new CyclicBarrier(threads);
+			List<List<MountainHut>> found = new ArrayList<>();
+			List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+			List<Thread> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				List<MountainHut> mine = new ArrayList<>();
+				found.add(mine);
+				workers.add(new Thread(() -> {
+					try {
+						start.await();
+						for (int p = 0; p < 4; p++) {
+							for (MountainHut h : engine.findAvailable("PROVINCE" + p, FIRST, 1, 1)) {
+								mine.add(h);
+								Booking b = engine.book(h.getName(), FIRST, 1, 1);
+								if (b != null) mine.add(b.getMountainHut());
+							}
+						}
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}));
+			}
+			for (Thread w : workers) w.start();
+			for (Thread w : workers) w.join();
+			assertEquals(Collections.emptyList(), errors);
+
+			// all the threads get the view of a hut returned by the region
+			Map<String, MountainHut> views = r.getMountainHuts().stream()
+					.collect(Collectors.toMap(MountainHut::getName, h -> h));
+			for (List<MountainHut> mine : found) {
+				assertFalse(mine.isEmpty());
+				for (MountainHut h : mine) assertSame(views.get(h.getName()), h);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
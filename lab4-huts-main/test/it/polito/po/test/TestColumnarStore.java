@@ -0,0 +1,65 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+
+public class TestColumnarStore {
+
+	@Test
+	public void testViews() {
+		Region r = new Region("Piemonte");
+		for (int i = 0; i < 1000; i++) {
+			Municipality m = r.createOrGetMunicipality("M" + (i % 70), "P" + (i % 7), i % 3 == 0 ? null : 1000 + i);
+			r.createOrGetMountainHut("H" + i, i % 2 == 0 ? null : 2000 + i, i % 5 == 0 ? null : "Rifugio", i, m);
+		}
+		assertEquals(70, r.getMunicipalities().size());
+		assertEquals(1000, r.getMountainHuts().size());
+
+		MountainHut h = r.createOrGetMountainHut("H999", null, null, null);
+		assertSame(h, r.createOrGetMountainHut("H999", 1, "Bivacco", 1, null));
+		assertEquals(Optional.of(2999), h.getAltitude());
+		assertEquals("Rifugio", h.getCategory());
+		assertEquals(Integer.valueOf(999), h.getBedsNumber());
+		assertSame(r.createOrGetMunicipality("M19", null, null), h.getMunicipality());
+		assertEquals("P5", h.getMunicipality().getProvince());
+		assertEquals(Integer.valueOf(1019), h.getMunicipality().getAltitude());
+
+		MountainHut first = r.createOrGetMountainHut("H0", null, null, null);
+		assertFalse(first.getAltitude().isPresent());
+		assertNull(first.getCategory());
+		assertNull(first.getMunicipality().getAltitude());
+	}
+
+	@Test
+	public void testExternalMunicipality() {
+		Region r = new Region("Piemonte");
+		Municipality external = new Municipality("Acceglio", "CUNEO", 1200);
+		MountainHut h = r.createOrGetMountainHut("Campo Base", "Rifugio", 32, external);
+
+		assertSame(external, h.getMunicipality());
+		assertTrue(r.getMunicipalities().isEmpty());
+		assertEquals(Long.valueOf(1), r.countMountainHutsPerMunicipalityPerProvince().get("CUNEO").get("Acceglio"));
+
+		MountainHut standalone = new MountainHut("Tappa", null, "Bivacco", 4, external);
+		assertSame(external, standalone.getMunicipality());
+		assertEquals(Integer.valueOf(4), standalone.getBedsNumber());
+		assertFalse(standalone.getAltitude().isPresent());
+
+		MountainHut nowhere = new MountainHut("Nowhere", 2000, "Bivacco", null, null);
+		assertNull(nowhere.getMunicipality());
+		assertEquals(Integer.valueOf(2000), nowhere.getAltitude().get());
+
+		// a municipality with the name of one of the region is replaced by it
+		Municipality cuneo = r.createOrGetMunicipality("Cuneo", "CUNEO", 534);
+		MountainHut other = r.createOrGetMountainHut("Other", "Rifugio", 10, new Municipality("Cuneo", "TORINO", 0));
+		assertSame(cuneo, other.getMunicipality());
+		assertThrows(NullPointerException.class, () -> r.createOrGetMountainHut("Null", "Rifugio", 10, null));
+	}
+}
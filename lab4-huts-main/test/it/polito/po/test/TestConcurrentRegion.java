@@ -0,0 +1,127 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import mountainhuts.ConcurrentRegion;
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+
+public class TestConcurrentRegion {
+
+	private static final int THREADS = 8;
+	private static final int HUTS = 20_000;
+	private static final int MUNICIPALITIES = 500;
+
+	@Test
+	public void testParallelIngest() throws Exception {
+		ConcurrentRegion r = new ConcurrentRegion("Piemonte");
+		r.setAltitudeRanges("0-1000", "1000-2000", "2000-3000");
+		MountainHut[][] seen = new MountainHut[THREADS][HUTS];
+		CyclicBarrier start = new CyclicBarrier(THREADS + 2);
+		AtomicBoolean done = new AtomicBoolean();
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int id = t;
+			threads.add(new Thread(() -> {
+				List<Integer> order = new ArrayList<>();
+				for (int i = 0; i < HUTS; i++) order.add(i);
+				Collections.shuffle(order, new Random(id));
+				try {
+					start.await();
+					for (int i : order) {
+						int m = i % MUNICIPALITIES;
+						Municipality mun = r.createOrGetMunicipality("M" + m, "P" + m % 7, 500 + m);
+						seen[id][i] = r.createOrGetMountainHut("H" + i, i % 3 == 0 ? null : i % 3000, "Rifugio", i % 50, mun);
+						assertSame(mun, seen[id][i].getMunicipality());
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			}));
+		}
+		Thread reader = new Thread(() -> {
+			try {
+				start.await();
+				while (!done.get()) {
+					long total = r.countMountainHutsPerAltitudeRange().values().stream().mapToLong(Long::longValue).sum();
+					assertTrue(total <= HUTS);
+				}
+			} catch (Throwable e) {
+				errors.add(e);
+			}
+		});
+		threads.forEach(Thread::start);
+		reader.start();
+		start.await();
+		for (Thread t : threads) t.join();
+		done.set(true);
+		reader.join();
+
+		assertEquals(Collections.emptyList(), errors);
+		for (int i = 0; i < HUTS; i++) {
+			for (int t = 1; t < THREADS; t++) assertSame(seen[0][i], seen[t][i]);
+		}
+		assertEquals(HUTS, r.getMountainHuts().size());
+		assertEquals(MUNICIPALITIES, r.getMunicipalities().size());
+
+		r.refresh();
+		Region expected = new Region("Piemonte");
+		expected.setAltitudeRanges("0-1000", "1000-2000", "2000-3000");
+		for (int i = 0; i < HUTS; i++) {
+			int m = i % MUNICIPALITIES;
+			Municipality mun = expected.createOrGetMunicipality("M" + m, "P" + m % 7, 500 + m);
+			expected.createOrGetMountainHut("H" + i, i % 3 == 0 ? null : i % 3000, "Rifugio", i % 50, mun);
+		}
+		assertEquals(expected.countMunicipalitiesPerProvince(), r.countMunicipalitiesPerProvince());
+		assertEquals(expected.countMountainHutsPerAltitudeRange(), r.countMountainHutsPerAltitudeRange());
+		assertEquals(expected.totalBedsNumberPerProvince(), r.totalBedsNumberPerProvince());
+		assertEquals(expected.maximumBedsNumberPerAltitudeRange(), r.maximumBedsNumberPerAltitudeRange());
+		assertEquals(expected.countMountainHutsPerMunicipalityPerProvince(), r.countMountainHutsPerMunicipalityPerProvince());
+		assertEquals(expected.municipalityNamesPerCountOfMountainHuts(), r.municipalityNamesPerCountOfMountainHuts());
+	}
+
+	@Test
+	public void testRefresh() {
+		ConcurrentRegion r = new ConcurrentRegion("Valle d'Aosta");
+		assertTrue(r.totalBedsNumberPerProvince().isEmpty());
+		Municipality m = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		r.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		r.refresh();
+		assertEquals(Integer.valueOf(150), r.totalBedsNumberPerProvince().get("AOSTA"));
+		assertSame(r.totalBedsNumberPerProvince(), r.totalBedsNumberPerProvince());
+
+		r.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, m);
+		r.refresh();
+		assertEquals(Integer.valueOf(180), r.totalBedsNumberPerProvince().get("AOSTA"));
+		r.setAltitudeRanges("2000-4000");
+		r.refresh();
+		assertEquals(Long.valueOf(2), r.countMountainHutsPerAltitudeRange().get("2000-4000"));
+		assertEquals("2000-4000", r.getAltitudeRange(2500));
+	}
+
+	@Test
+	public void testSnapshotPublishedAfterChanges() throws Exception {
+		ConcurrentRegion r = new ConcurrentRegion("Valle d'Aosta");
+		Municipality m = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		for (int i = 0; i < 1000; i++) r.createOrGetMountainHut("H" + i, 2000, "Rifugio", 1, m);
+		// the last changes are published without refreshing or querying
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (!Integer.valueOf(1000).equals(r.totalBedsNumberPerProvince().get("AOSTA"))) {
+			assertTrue("The snapshot must be published after the changes", System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+		assertEquals(Long.valueOf(1000), r.countMountainHutsPerAltitudeRange().get(r.getAltitudeRange(2000)));
+	}
+}
@@ -0,0 +1,160 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+import mountainhuts.RegionLoader;
+import mountainhuts.WarmUp;
+
+public class TestLazyRegion {
+
+	private static final String[] RANGES = { "0-1000", "1000-1500", "1500-2000", "2000-2500" };
+
+	private static List<String> structures(Region r) {
+		return r.getWarmUps().stream().map(WarmUp::getStructure).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testSameAsEager() {
+		Region expected = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		Region r = Region.fromFileLazily("Piemonte", TestR3_ReadData.file);
+		expected.setAltitudeRanges(RANGES);
+		r.setAltitudeRanges(RANGES);
+		assertTrue(r.getWarmUps().isEmpty());
+
+		assertEquals(expected.countMunicipalitiesPerProvince(), r.countMunicipalitiesPerProvince());
+		assertEquals(expected.countMountainHutsPerMunicipalityPerProvince(), r.countMountainHutsPerMunicipalityPerProvince());
+		assertEquals(expected.countMountainHutsPerAltitudeRange(), r.countMountainHutsPerAltitudeRange());
+		assertEquals(expected.totalBedsNumberPerProvince(), r.totalBedsNumberPerProvince());
+		assertEquals(expected.maximumBedsNumberPerAltitudeRange(), r.maximumBedsNumberPerAltitudeRange());
+		assertEquals(expected.municipalityNamesPerCountOfMountainHuts(), r.municipalityNamesPerCountOfMountainHuts());
+		assertEquals(expected.selectByProvince("CUNEO").count(), r.selectByProvince("CUNEO").count());
+		assertEquals(expected.selectByAltitudeRange("1500-2000").totalBedsNumber(),
+				r.selectByAltitudeRange("1500-2000").totalBedsNumber());
+		assertEquals(expected.getMountainHuts().size(), r.getMountainHuts().size());
+	}
+
+	@Test
+	public void testBuiltOnFirstUse() {
+		Region r = Region.fromFileLazily("Piemonte", TestR3_ReadData.file);
+		assertEquals("Piemonte", r.getName());
+		assertTrue(r.getWarmUps().isEmpty());
+
+		r.countMunicipalitiesPerProvince();
+		assertEquals(List.of("load", "stats"), structures(r));
+		for (WarmUp w : r.getWarmUps()) {
+			assertEquals("Region.countMunicipalitiesPerProvince", w.getTrigger());
+			assertFalse(w.getTime().isNegative());
+		}
+		r.totalBedsNumberPerProvince();
+		assertEquals(2, r.getWarmUps().size());
+
+		r.selectByCategory("Rifugio");
+		assertEquals(List.of("load", "stats", "index"), structures(r));
+		assertEquals("Region.selectByCategory", r.getWarmUps().get(2).getTrigger());
+
+		// the structures built are kept up to date, the others are built with the new huts
+		Municipality m = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		r.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		assertEquals(Integer.valueOf(150), r.totalBedsNumberPerProvince().get("AOSTA"));
+		assertEquals("Torino", r.largestMountainHuts("AOSTA", 1).get(0).getName());
+		assertEquals(List.of("load", "stats", "index", "ranking"), structures(r));
+	}
+
+	@Test
+	public void testEagerWarmUps() {
+		Region r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		assertEquals(List.of("load", "stats", "index"), structures(r));
+		for (WarmUp w : r.getWarmUps()) assertEquals("Region.fromFile", w.getTrigger());
+		r.searchMountainHuts("alpe forna", 1);
+		assertEquals("Region.searchMountainHuts", r.getWarmUps().get(3).getTrigger());
+	}
+
+	// the statistics computed by more threads at the same time
+	private static List<List<Object>> concurrentStats(Region r, int threads) throws Exception {
+		CyclicBarrier start = new CyclicBarrier(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<Object>>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return List.<Object>of(r.countMountainHutsPerMunicipalityPerProvince(),
+							r.municipalityNamesPerCountOfMountainHuts(), r.maximumBedsNumberPerAltitudeRange());
+				}));
+			}
+			List<List<Object>> res = new ArrayList<>();
+			for (Future<List<Object>> f : futures) res.add(f.get(30, TimeUnit.SECONDS));
+			return res;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConcurrentFirstUse() throws Exception {
+		final int threads = 8;
+		Region expected = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		Region r = Region.fromFileLazily("Piemonte", TestR3_ReadData.file);
+		List<Object> stats = List.of(expected.countMountainHutsPerMunicipalityPerProvince(),
+				expected.municipalityNamesPerCountOfMountainHuts(), expected.maximumBedsNumberPerAltitudeRange());
+		List<List<Object>> results = concurrentStats(r, threads);
+		for (List<Object> res : results) {
+			assertEquals(stats, res);
+			// the lists of names are built once
+			assertSame(results.get(0).get(1), res.get(1));
+		}
+		assertEquals(List.of("load", "stats"), structures(r));
+
+		// the largest hut is removed, its range and the names are computed again
+		String largest = expected.getMountainHuts().stream()
+				.max(Comparator.comparing(h -> h.getBedsNumber() == null ? 0 : h.getBedsNumber())).get().getName();
+		expected.removeMountainHut(largest);
+		r.removeMountainHut(largest);
+		stats = List.of(expected.countMountainHutsPerMunicipalityPerProvince(),
+				expected.municipalityNamesPerCountOfMountainHuts(), expected.maximumBedsNumberPerAltitudeRange());
+		results = concurrentStats(r, threads);
+		for (List<Object> res : results) {
+			assertEquals(stats, res);
+			assertSame(results.get(0).get(1), res.get(1));
+		}
+	}
+
+	@Test
+	public void testFileChanged() throws IOException {
+		Path file = Files.createTempFile("huts", ".csv");
+		try {
+			List<String> lines = Files.readAllLines(Path.of(TestR3_ReadData.file));
+			Files.write(file, lines.subList(0, 11));
+			RegionLoader loader = new RegionLoader(file);
+			Region r = loader.loadLazily("Piemonte");
+			// the chunks are computed again for the new size
+			Files.write(file, lines);
+			assertEquals(lines.size() - 1, r.getMountainHuts().size());
+			assertTrue(loader.getErrors().isEmpty());
+
+			Files.delete(file);
+			r = Region.fromFileLazily("Piemonte", file.toString());
+			assertTrue(r.getMountainHuts().isEmpty());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
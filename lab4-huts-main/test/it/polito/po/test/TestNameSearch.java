@@ -0,0 +1,76 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+
+public class TestNameSearch {
+
+	private Region r;
+
+	@Before
+	public void setUp() {
+		r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+	}
+
+	private static List<String> names(List<MountainHut> huts) {
+		return huts.stream().map(MountainHut::getName).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testPrefix() {
+		assertEquals(List.of("ALPE FORNA'"), names(r.findMountainHutsByPrefix("alpe forna", 10)));
+		List<String> citta = names(r.findMountainHutsByPrefix("citta di", 10));
+		assertTrue(citta.containsAll(List.of("CITTA' DI LUINO", "CITTA' DI BUSTO", "CITTA' DI ARONA", "CITTA'DI GALLARATE")));
+		// any word of the name
+		assertTrue(names(r.findMountainHutsByPrefix("Forn", 10)).contains("ALPE FORNA'"));
+		assertEquals(2, r.findMountainHutsByPrefix("citta", 2).size());
+		assertEquals(0, r.findMountainHutsByPrefix("zzz", 10).size());
+
+		List<Municipality> macugnaga = r.findMunicipalitiesByPrefix("macu", 10);
+		assertEquals(1, macugnaga.size());
+		assertEquals("MACUGNAGA", macugnaga.get(0).getName());
+		assertTrue(r.findMunicipalitiesByPrefix("castiglione", 5).stream().anyMatch(m -> m.getName().equals("CALASCA-CASTIGLIONE")));
+	}
+
+	@Test
+	public void testFuzzy() {
+		assertEquals("ALPE FORNA'", r.searchMountainHuts("Alpe Fornà", 3).get(0).getName());
+		assertEquals("ALPE FORNA'", r.searchMountainHuts("alpe frona", 3).get(0).getName());
+		assertEquals("CITTA'DI GALLARATE", r.searchMountainHuts("citta di galarate", 3).get(0).getName());
+		assertEquals("MACUGNAGA", r.searchMunicipalities("Macugnagga", 3).get(0).getName());
+		assertEquals("ALAGNA VALSESIA", r.searchMunicipalities("alagna val sesia", 3).get(0).getName());
+		assertTrue(r.searchMountainHuts("qwxy", 3).isEmpty());
+		assertTrue(r.searchMountainHuts("", 3).isEmpty());
+	}
+
+	@Test
+	public void testUpdatedOnChanges() {
+		Municipality m = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		r.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		assertEquals("Torino", r.findMountainHutsByPrefix("tor", 1).get(0).getName());
+		assertEquals("Courmayeur", r.searchMunicipalities("Courmaieur", 1).get(0).getName());
+
+		r.removeMountainHut("ALPE FORNA'");
+		assertTrue(r.findMountainHutsByPrefix("alpe forna", 10).isEmpty());
+		assertTrue(names(r.searchMountainHuts("alpe forna", 10)).stream().noneMatch("ALPE FORNA'"::equals));
+	}
+
+	@Test
+	public void testLimits() {
+		assertTrue(r.findMountainHutsByPrefix("citta", 0).isEmpty());
+		assertTrue(r.searchMountainHuts("alpe forna", 0).isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> r.findMountainHutsByPrefix("citta", -1));
+		assertThrows(IllegalArgumentException.class, () -> r.findMunicipalitiesByPrefix("macu", -1));
+		assertThrows(IllegalArgumentException.class, () -> r.searchMountainHuts("alpe forna", -1));
+		assertThrows(IllegalArgumentException.class, () -> r.searchMunicipalities("macugnaga", -1));
+	}
+}
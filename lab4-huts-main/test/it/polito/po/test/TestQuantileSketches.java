@@ -0,0 +1,128 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+import mountainhuts.RegionRegistry;
+
+public class TestQuantileSketches {
+
+	private static final String[] CATEGORIES = { "Rifugio", "Bivacco Fisso", "Rifugio escursionistico" };
+	private static final double[] RANKS = { 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99 };
+	private static final double EPSILON = 0.02;
+
+	private static int altitude(MountainHut h) {
+		return h.getAltitude().orElse(h.getMunicipality().getAltitude());
+	}
+
+	// the rank of the value must be close to the requested one
+	private static void assertQuantile(List<Integer> values, double q, int value) {
+		int[] sorted = values.stream().mapToInt(Integer::intValue).sorted().toArray();
+		int below = 0, upTo = 0;
+		for (int v : sorted) {
+			if (v < value) below++;
+			if (v <= value) upTo++;
+		}
+		assertTrue("value " + value + " for rank " + q,
+				(double) below / sorted.length <= q + EPSILON && (double) upTo / sorted.length >= q - EPSILON);
+	}
+
+	private static void assertQuantiles(Iterable<MountainHut> huts, Function<MountainHut, String> key,
+			Function<MountainHut, Integer> value, Function<Double, Map<String, Integer>> quantiles) {
+		Map<String, List<Integer>> values = new HashMap<>();
+		for (MountainHut h : huts) values.computeIfAbsent(key.apply(h), k -> new ArrayList<>()).add(value.apply(h));
+		for (double q : RANKS) {
+			Map<String, Integer> res = quantiles.apply(q);
+			assertEquals(values.keySet(), res.keySet());
+			values.forEach((k, v) -> assertQuantile(v, q, res.get(k)));
+		}
+	}
+
+	private static Region randomRegion(String name, int huts, long seed) {
+		Region r = new Region(name);
+		Random random = new Random(seed);
+		Municipality[] ms = new Municipality[100];
+		for (int i = 0; i < ms.length; i++) {
+			ms[i] = r.createOrGetMunicipality(name + " M" + i, "P" + (i % 5), 300 + random.nextInt(1500));
+		}
+		for (int i = 0; i < huts; i++) {
+			Integer altitude = random.nextInt(5) == 0 ? null : 1000 + (int) Math.abs(random.nextGaussian() * 800);
+			int beds = (int) Math.exp(random.nextGaussian() + 3);
+			r.createOrGetMountainHut(name + " H" + i, altitude, CATEGORIES[random.nextInt(CATEGORIES.length)], beds,
+					ms[random.nextInt(ms.length)]);
+		}
+		return r;
+	}
+
+	@Test
+	public void testSmallRegionIsExact() {
+		Region r = new Region("Valle d'Aosta");
+		Municipality m = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		r.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		r.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, m);
+		r.createOrGetMountainHut("Monte Bianco", null, "Rifugio", 40, m);
+		assertEquals(Integer.valueOf(2195), r.altitudeQuantilePerProvince(0.5).get("AOSTA"));
+		assertEquals(Integer.valueOf(40), r.bedsNumberQuantilePerCategory(0.5).get("Rifugio"));
+		assertEquals(Integer.valueOf(150), r.bedsNumberQuantilePerProvince(1).get("AOSTA"));
+		assertEquals(Integer.valueOf(1224), r.altitudeQuantilePerCategory(0).get("Rifugio"));
+
+		r.createOrGetMountainHut("Gonella", 3071, "Rifugio", 40, m);
+		r.createOrGetMountainHut("Boccalatte", 2803, "Bivacco Fisso", 12, m);
+		assertEquals(Integer.valueOf(2803), r.altitudeQuantilePerProvince(0.5).get("AOSTA"));
+		assertEquals(Integer.valueOf(12), r.bedsNumberQuantilePerCategory(0.5).get("Bivacco Fisso"));
+		assertTrue(r.removeMountainHut("Torino"));
+		assertEquals(Integer.valueOf(40), r.bedsNumberQuantilePerProvince(1).get("AOSTA"));
+		assertTrue(r.removeMountainHut("Boccalatte"));
+		assertNull(r.bedsNumberQuantilePerCategory(0.5).get("Bivacco Fisso"));
+	}
+
+	@Test
+	public void testLargeRegion() {
+		Region r = randomRegion("Piemonte", 100_000, 1);
+		assertQuantiles(r.getMountainHuts(), h -> h.getMunicipality().getProvince(), TestQuantileSketches::altitude,
+				r::altitudeQuantilePerProvince);
+		assertQuantiles(r.getMountainHuts(), MountainHut::getCategory, MountainHut::getBedsNumber,
+				r::bedsNumberQuantilePerCategory);
+
+		// the sketches are kept up to date after the first query
+		Region more = randomRegion("Piemonte", 150_000, 1);
+		for (MountainHut h : more.getMountainHuts()) {
+			r.createOrGetMountainHut(h.getName(), h.getAltitude().orElse(null), h.getCategory(), h.getBedsNumber(),
+					h.getMunicipality());
+		}
+		for (int i = 0; i < 20_000; i++) r.removeMountainHut("Piemonte H" + (i * 7));
+		assertQuantiles(r.getMountainHuts(), h -> h.getMunicipality().getProvince(), MountainHut::getBedsNumber,
+				r::bedsNumberQuantilePerProvince);
+		assertQuantiles(r.getMountainHuts(), MountainHut::getCategory, TestQuantileSketches::altitude,
+				r::altitudeQuantilePerCategory);
+	}
+
+	@Test
+	public void testNationalQuantiles() {
+		RegionRegistry registry = new RegionRegistry("0-1000", "1000-2000");
+		List<MountainHut> all = new ArrayList<>();
+		for (String name : Arrays.asList("Piemonte", "Lombardia", "Veneto")) {
+			Region r = randomRegion(name, 40_000, name.hashCode());
+			registry.addRegion(r);
+			all.addAll(r.getMountainHuts());
+		}
+		assertQuantiles(all, MountainHut::getCategory, TestQuantileSketches::altitude, registry::altitudeQuantilePerCategory);
+		assertQuantiles(all, MountainHut::getCategory, MountainHut::getBedsNumber, registry::bedsNumberQuantilePerCategory);
+		assertQuantiles(all, h -> h.getMunicipality().getProvince(), MountainHut::getBedsNumber,
+				registry::bedsNumberQuantilePerProvince);
+		assertQuantiles(all, h -> h.getMunicipality().getProvince(), TestQuantileSketches::altitude,
+				registry::altitudeQuantilePerProvince);
+	}
+}
@@ -0,0 +1,54 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+
+public class TestRangeClassifier {
+
+	private Region r;
+
+	@Before
+	public void setUp() {
+		r = new Region("Piemonte");
+	}
+
+	@Test
+	public void testUnsortedRangesWithGaps() {
+		r.setAltitudeRanges("2000-3000", "0-500", "1000-1500");
+		assertEquals("0-500", r.getAltitudeRange(500));
+		assertEquals("0-INF", r.getAltitudeRange(501));
+		assertEquals("1000-1500", r.getAltitudeRange(1001));
+		assertEquals("0-INF", r.getAltitudeRange(1000));
+		assertEquals("2000-3000", r.getAltitudeRange(3000));
+		assertEquals("0-INF", r.getAltitudeRange(0));
+	}
+
+	@Test
+	public void testRangesAreReplaced() {
+		r.setAltitudeRanges("0-1000", "1000-2000");
+		assertEquals("1000-2000", r.getAltitudeRange(1500));
+		r.setAltitudeRanges("1000-1600");
+		assertEquals("1000-1600", r.getAltitudeRange(1500));
+		assertEquals("0-INF", r.getAltitudeRange(500));
+	}
+
+	@Test
+	public void testHutsUseMunicipalityAltitude() {
+		Municipality m = r.createOrGetMunicipality("Acceglio", "CUNEO", 1200);
+		r.createOrGetMountainHut("A", 2500, "Rifugio", 10, m);
+		r.createOrGetMountainHut("B", "Bivacco", 4, m);
+		r.createOrGetMountainHut("C", 900, "Rifugio", 7, m);
+		r.setAltitudeRanges("0-1000", "1000-2000");
+
+		assertEquals(Long.valueOf(1), r.countMountainHutsPerAltitudeRange().get("0-1000"));
+		assertEquals(Long.valueOf(1), r.countMountainHutsPerAltitudeRange().get("1000-2000"));
+		assertEquals(Long.valueOf(1), r.countMountainHutsPerAltitudeRange().get("0-INF"));
+		assertEquals(Integer.valueOf(10), r.maximumBedsNumberPerAltitudeRange().get("0-INF").get());
+		assertEquals(Integer.valueOf(4), r.maximumBedsNumberPerAltitudeRange().get("1000-2000").get());
+	}
+}
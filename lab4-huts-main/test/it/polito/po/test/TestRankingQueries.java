@@ -0,0 +1,88 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+
+public class TestRankingQueries {
+
+	private static int altitude(MountainHut h) {
+		return h.getAltitude().orElse(h.getMunicipality().getAltitude());
+	}
+
+	private static void assertBetween(Region r, int min, int max) {
+		List<MountainHut> in = r.getMountainHuts().stream()
+				.filter(h -> altitude(h) > min && altitude(h) <= max).collect(Collectors.toList());
+		assertEquals(in.size(), r.countMountainHutsBetween(min, max));
+		assertEquals(in.stream().mapToLong(MountainHut::getBedsNumber).sum(), r.totalBedsNumberBetween(min, max));
+	}
+
+	@Test
+	public void testSampleData() {
+		Region r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		r.setAltitudeRanges("0-1000", "1000-1500", "1500-2000");
+
+		List<MountainHut> top = r.largestMountainHuts("CUNEO", 10);
+		assertEquals(10, top.size());
+		List<Integer> expected = r.getMountainHuts().stream()
+				.filter(h -> h.getMunicipality().getProvince().equals("CUNEO"))
+				.map(MountainHut::getBedsNumber).sorted(Comparator.reverseOrder()).limit(10)
+				.collect(Collectors.toList());
+		assertEquals(expected, top.stream().map(MountainHut::getBedsNumber).collect(Collectors.toList()));
+		assertTrue(top.stream().allMatch(h -> h.getMunicipality().getProvince().equals("CUNEO")));
+		assertEquals(0, r.largestMountainHuts("AOSTA", 10).size());
+
+		assertEquals(r.countMountainHutsPerAltitudeRange().get("1500-2000").longValue(), r.countMountainHutsBetween(1500, 2000));
+		assertBetween(r, 1500, 2500);
+		assertBetween(r, 0, 10_000);
+		assertBetween(r, 2500, 1500);
+	}
+
+	@Test
+	public void testUpdatedOnAdd() {
+		Region r = new Region("Valle d'Aosta");
+		Municipality m = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		r.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		assertEquals(1, r.countMountainHutsBetween(3000, 3500));
+		assertEquals("Torino", r.largestMountainHuts("AOSTA", 1).get(0).getName());
+
+		r.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, m);
+		r.createOrGetMountainHut("Monte Bianco", null, "Rifugio", 200, m);
+		assertEquals(2, r.countMountainHutsBetween(1000, 2500));
+		assertEquals(230, r.totalBedsNumberBetween(1000, 2500));
+		assertEquals("Monte Bianco", r.largestMountainHuts("AOSTA", 3).get(0).getName());
+		assertEquals(3, r.largestMountainHuts("AOSTA", 5).size());
+	}
+
+	@Test
+	public void testLargeRegion() {
+		Region r = new Region("Italia");
+		Random random = new Random(7);
+		Municipality[] ms = new Municipality[200];
+		for (int i = 0; i < ms.length; i++) {
+			ms[i] = r.createOrGetMunicipality("M" + i, "P" + (i % 9), 200 + random.nextInt(2000));
+		}
+		for (int i = 0; i < 100_000; i++) {
+			Integer altitude = random.nextInt(8) == 0 ? null : random.nextInt(4000);
+			r.createOrGetMountainHut("H" + i, altitude, "Rifugio", random.nextInt(120), ms[random.nextInt(ms.length)]);
+		}
+		for (int i = 0; i < 50; i++) {
+			int min = random.nextInt(4000), max = min + random.nextInt(1500);
+			assertBetween(r, min, max);
+		}
+		List<Integer> expected = r.getMountainHuts().stream()
+				.filter(h -> h.getMunicipality().getProvince().equals("P4"))
+				.map(MountainHut::getBedsNumber).sorted(Comparator.reverseOrder()).limit(25)
+				.collect(Collectors.toList());
+		assertEquals(expected, r.largestMountainHuts("P4", 25).stream().map(MountainHut::getBedsNumber).collect(Collectors.toList()));
+	}
+}
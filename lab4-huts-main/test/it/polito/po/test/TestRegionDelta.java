@@ -0,0 +1,151 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+import mountainhuts.RegionDelta;
+
+public class TestRegionDelta {
+
+	private static final String[] RANGES = { "0-1000", "1000-1500", "1500-2000" };
+	private static final String HEADER = "Operation;Province;Municipality;MunicipalityAltitude;Name;Altitude;Category;BedsNumber";
+
+	private final List<Path> files = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		files.clear();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path file : files) Files.deleteIfExists(file);
+	}
+
+	private Path write(String prefix, List<String> lines) throws IOException {
+		Path file = Files.createTempFile(prefix, ".csv");
+		files.add(file);
+		Files.write(file, lines);
+		return file;
+	}
+
+	private static void assertSameStats(Region expected, Region r) {
+		assertEquals(expected.getMountainHuts().size(), r.getMountainHuts().size());
+		assertEquals(expected.countMountainHutsPerMunicipalityPerProvince(), r.countMountainHutsPerMunicipalityPerProvince());
+		assertEquals(expected.countMountainHutsPerAltitudeRange(), r.countMountainHutsPerAltitudeRange());
+		assertEquals(expected.totalBedsNumberPerProvince(), r.totalBedsNumberPerProvince());
+		assertEquals(expected.maximumBedsNumberPerAltitudeRange(), r.maximumBedsNumberPerAltitudeRange());
+		assertEquals(expected.municipalityNamesPerCountOfMountainHuts(), r.municipalityNamesPerCountOfMountainHuts());
+		assertEquals(expected.selectByProvince("CUNEO").count(), r.selectByProvince("CUNEO").count());
+		assertEquals(expected.selectByCategory("Rifugio Alpino").totalBedsNumber(), r.selectByCategory("Rifugio Alpino").totalBedsNumber());
+		assertEquals(expected.selectByAltitudeRange("1500-2000").count(), r.selectByAltitudeRange("1500-2000").count());
+		assertEquals(expected.countMountainHutsBetween(1200, 2400), r.countMountainHutsBetween(1200, 2400));
+		assertEquals(expected.totalBedsNumberBetween(1200, 2400), r.totalBedsNumberBetween(1200, 2400));
+	}
+
+	@Test
+	public void testApplyChanges() throws IOException {
+		List<String> lines = Files.readAllLines(Path.of(TestR3_ReadData.file));
+		List<String> changes = new ArrayList<>(List.of(HEADER));
+		List<String> result = new ArrayList<>(List.of(lines.get(0)));
+		for (int i = 1; i < lines.size(); i++) {
+			String[] f = lines.get(i).split(";", -1);
+			if (i % 10 == 0) {
+				changes.add("DELETE;;;;" + f[3] + ";;;");
+				continue;
+			}
+			if (i % 7 == 0) {
+				f[4] = String.valueOf(1000 + i * 3);
+				f[5] = "Bivacco Fisso";
+				f[6] = String.valueOf(Integer.parseInt(f[6]) + 200);
+				changes.add("UPDATE;" + String.join(";", f));
+			}
+			result.add(String.join(";", f));
+		}
+		for (int i = 0; i < 5; i++) {
+			String line = "AOSTA;Courmayeur;1224;Nuovo " + i + ";" + (i == 0 ? "" : String.valueOf(2000 + i)) + ";Rifugio;" + (10 * i);
+			changes.add("ADD;" + line);
+			result.add(line);
+		}
+
+		Region r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		r.setAltitudeRanges(RANGES);
+		MountainHut updated = r.getMountainHuts().stream().filter(h -> h.getName().equals(lines.get(7).split(";")[3])).findFirst().get();
+		RegionDelta delta = new RegionDelta(write("delta", changes));
+		assertEquals(changes.size() - 1, delta.apply(r));
+		assertEquals(List.of(), delta.getErrors());
+
+		Region expected = Region.fromFile("Piemonte", write("result", result).toString());
+		expected.setAltitudeRanges(RANGES);
+		assertSameStats(expected, r);
+		assertEquals("Bivacco Fisso", updated.getCategory());
+		assertSame(updated, r.createOrGetMountainHut(updated.getName(), null, null, null));
+
+		r.setAltitudeRanges(RANGES);
+		assertSameStats(expected, r);
+	}
+
+	@Test
+	public void testErrors() throws IOException {
+		Region r = new Region("Valle d'Aosta");
+		Municipality m = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		r.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		RegionDelta delta = new RegionDelta(write("delta", List.of(HEADER,
+				"ADD;AOSTA;Courmayeur;1224;Torino;3375;Rifugio;150",
+				"UPDATE;AOSTA;Courmayeur;1224;Gonella;3071;Rifugio;40",
+				"ADD;AOSTA;Courmayeur;1224;Gonella;3071;Rifugio;many",
+				"MOVE;AOSTA;Courmayeur;1224;Torino;3375;Rifugio;150",
+				"DELETE;Torino",
+				"ADD;AOSTA;Cogne;1534;Sella;2584;Rifugio;20")));
+		assertEquals(1, delta.apply(r));
+		assertEquals(5, delta.getErrors().size());
+		assertTrue(delta.getErrors().get(0).startsWith("line 2:"));
+		assertTrue(delta.getErrors().get(2).contains("BedsNumber"));
+		assertTrue(delta.getErrors().get(4).startsWith("line 6:"));
+		assertEquals(2, r.getMountainHuts().size());
+		assertEquals(2, r.getMunicipalities().size());
+	}
+
+	@Test
+	public void testRemoveAndAddAgain() throws IOException {
+		Region r = new Region("Valle d'Aosta");
+		r.setAltitudeRanges("2000-3000", "3000-4000");
+		Municipality m = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		MountainHut torino = r.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		r.createOrGetMountainHut("Gonella", 3071, "Rifugio", 40, m);
+		r.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, m);
+
+		assertTrue(r.removeMountainHut("Torino"));
+		assertFalse(r.removeMountainHut("Torino"));
+		assertEquals(2, r.getMountainHuts().size());
+		assertTrue(r.getMountainHuts().stream().noneMatch(h -> h.getName().equals("Torino")));
+		assertEquals(Integer.valueOf(70), r.totalBedsNumberPerProvince().get("AOSTA"));
+		assertEquals(Integer.valueOf(40), r.maximumBedsNumberPerAltitudeRange().get("3000-4000").get());
+		assertEquals(1, r.selectByAltitudeRange("3000-4000").count());
+		assertNull(r.updateMountainHut("Torino", 3375, "Rifugio", 100, m));
+
+		Path file = write("aosta", List.of());
+		r.save(file);
+		Region opened = Region.open(file);
+		assertEquals(2, opened.getMountainHuts().size());
+		assertEquals(r.maximumBedsNumberPerAltitudeRange(), opened.maximumBedsNumberPerAltitudeRange());
+
+		assertSame(torino, r.createOrGetMountainHut("Torino", 3375, "Rifugio", 120, m));
+		assertEquals(Integer.valueOf(120), torino.getBedsNumber());
+		assertEquals(Integer.valueOf(120), r.maximumBedsNumberPerAltitudeRange().get("3000-4000").get());
+		assertEquals(3, r.getMountainHuts().size());
+		assertEquals(Long.valueOf(3), r.countMountainHutsPerMunicipalityPerProvince().get("AOSTA").get("Courmayeur"));
+	}
+}
@@ -0,0 +1,167 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+import mountainhuts.RegionExporter;
+import mountainhuts.RegionExporter.Format;
+
+public class TestRegionExporter {
+
+	private static final String[] RANGES = { "0-1000", "1000-1500", "1500-2000", "2000-2500" };
+
+	private static String export(RegionExporter exporter, Format format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exporter.write(out, format);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	private static List<String> fields(String line) {
+		List<String> res = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+				field.append(c);
+				i++;
+			} else if (c == '"') {
+				quoted = !quoted;
+			} else if (c == ';' && !quoted) {
+				res.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		res.add(field.toString());
+		return res;
+	}
+
+	// reads back the aggregates from the CSV export and compares them with the region
+	private static void assertCsv(Region r, String csv) {
+		Map<String, Long> municipalities = new HashMap<>();
+		Map<String, Map<String, Long>> hutsPerMunicipality = new HashMap<>();
+		Map<String, Long> hutsPerRange = new HashMap<>();
+		Map<String, Integer> beds = new HashMap<>();
+		Map<String, Optional<Integer>> maxBeds = new HashMap<>();
+		Map<Long, List<String>> names = new HashMap<>();
+		String[] lines = csv.split("\n");
+		assertEquals("Aggregate;Key;Name;Value", lines[0]);
+		for (int i = 1; i < lines.length; i++) {
+			List<String> f = fields(lines[i]);
+			assertEquals(lines[i], 4, f.size());
+			switch (f.get(0)) {
+			case "countMunicipalitiesPerProvince":
+				municipalities.put(f.get(1), Long.valueOf(f.get(3)));
+				break;
+			case "countMountainHutsPerMunicipalityPerProvince":
+				hutsPerMunicipality.computeIfAbsent(f.get(1), k -> new HashMap<>()).put(f.get(2), Long.valueOf(f.get(3)));
+				break;
+			case "countMountainHutsPerAltitudeRange":
+				hutsPerRange.put(f.get(1), Long.valueOf(f.get(3)));
+				break;
+			case "totalBedsNumberPerProvince":
+				beds.put(f.get(1), Integer.valueOf(f.get(3)));
+				break;
+			case "maximumBedsNumberPerAltitudeRange":
+				maxBeds.put(f.get(1), Optional.of(Integer.valueOf(f.get(3))));
+				break;
+			case "municipalityNamesPerCountOfMountainHuts":
+				names.computeIfAbsent(Long.valueOf(f.get(1)), k -> new ArrayList<>()).add(f.get(2));
+				break;
+			default:
+				fail("Unexpected line " + lines[i]);
+			}
+		}
+		assertEquals(r.countMunicipalitiesPerProvince(), municipalities);
+		assertEquals(r.countMountainHutsPerMunicipalityPerProvince(), hutsPerMunicipality);
+		assertEquals(r.countMountainHutsPerAltitudeRange(), hutsPerRange);
+		assertEquals(r.totalBedsNumberPerProvince(), beds);
+		assertEquals(r.maximumBedsNumberPerAltitudeRange(), maxBeds);
+		assertEquals(r.municipalityNamesPerCountOfMountainHuts(), names);
+	}
+
+	@Test
+	public void testJson() throws IOException {
+		Region r = new Region("Valle d'Aosta");
+		r.setAltitudeRanges("0-2000", "2000-3000");
+		Municipality courmayeur = r.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		Municipality valtournenche = r.createOrGetMunicipality("Valtournenche", "AOSTA", 1528);
+		r.createOrGetMunicipality("Aosta", "AOSTA", 583);
+		r.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, courmayeur);
+		r.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, courmayeur);
+		r.createOrGetMountainHut("Oriondé \"Duca degli Abruzzi\"", 2802, "Rifugio", 42, valtournenche);
+
+		assertEquals("{\"region\":\"Valle d'Aosta\","
+				+ "\"countMunicipalitiesPerProvince\":{\"AOSTA\":3},"
+				+ "\"countMountainHutsPerMunicipalityPerProvince\":{\"AOSTA\":{\"Courmayeur\":2,\"Valtournenche\":1}},"
+				+ "\"countMountainHutsPerAltitudeRange\":{\"2000-3000\":2,\"0-INF\":1},"
+				+ "\"totalBedsNumberPerProvince\":{\"AOSTA\":222},"
+				+ "\"maximumBedsNumberPerAltitudeRange\":{\"2000-3000\":42,\"0-INF\":150},"
+				+ "\"municipalityNamesPerCountOfMountainHuts\":{\"1\":[\"Valtournenche\"],\"2\":[\"Courmayeur\"]}}",
+				export(new RegionExporter(r), Format.JSON));
+
+		Municipality cogne = r.createOrGetMunicipality("Cogne \\ Lillaz", "AOSTA", 1534);
+		r.createOrGetMountainHut("Vittorio Sella", 2584, "Rifugio", 150, cogne);
+		String json = export(new RegionExporter(r), Format.JSON);
+		assertTrue(json.contains("\"Cogne \\\\ Lillaz\":1"));
+		assertTrue(json.contains("\"1\":[\"Cogne \\\\ Lillaz\",\"Valtournenche\"]"));
+	}
+
+	@Test
+	public void testCsv() throws IOException {
+		Region r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		r.setAltitudeRanges(RANGES);
+		Municipality m = r.createOrGetMunicipality("Saint-Rhémy; \"en-Bosses\"", "AOSTA", 1632);
+		r.createOrGetMountainHut("Frassati", 2537, "Rifugio", 32, m);
+		RegionExporter exporter = new RegionExporter(r);
+		assertCsv(r, export(exporter, Format.CSV));
+
+		// the exporter reads the current aggregates
+		r.removeMountainHut("Frassati");
+		r.removeMountainHut("ALPE FORNA'");
+		assertCsv(r, export(exporter, Format.CSV));
+	}
+
+	@Test
+	public void testLargeRegion() throws IOException {
+		Region r = new Region("Italia");
+		r.setAltitudeRanges(RANGES);
+		Municipality[] ms = new Municipality[5000];
+		for (int i = 0; i < ms.length; i++) {
+			ms[i] = r.createOrGetMunicipality("Comune àèìòù " + i, "P" + (i % 97), 200 + i % 1500);
+		}
+		for (int i = 0; i < 50_000; i++) {
+			r.createOrGetMountainHut("Rifugio " + i, i % 5 == 0 ? null : 500 + i % 2500, "Rifugio", i % 120,
+					ms[(i * 31) % ms.length]);
+		}
+		RegionExporter exporter = new RegionExporter(r);
+		String csv = export(exporter, Format.CSV);
+		assertTrue(csv.length() > 1 << 17);
+		assertCsv(r, csv);
+
+		// the same bytes on a channel
+		for (Format format : Format.values()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			exporter.write(Channels.newChannel(out), format);
+			assertEquals(export(exporter, format), out.toString(StandardCharsets.UTF_8));
+		}
+		String json = export(exporter, Format.JSON);
+		assertTrue(json.startsWith("{\"region\":\"Italia\",\"countMunicipalitiesPerProvince\":{\"P0\":52,"));
+		assertTrue(json.endsWith("]}}"));
+	}
+}
@@ -0,0 +1,77 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+import mountainhuts.RegionLoader;
+
+public class TestRegionLoader {
+
+	private static Region lineByLine(String file) {
+		Region res = new Region("Piemonte");
+		Region.readData(file).stream().skip(1).forEach(s -> {
+			String[] ss = s.split(";");
+			Municipality mun = res.createOrGetMunicipality(ss[1], ss[0], Integer.parseInt(ss[2]));
+			if (ss[4].isEmpty()) res.createOrGetMountainHut(ss[3], ss[5], Integer.parseInt(ss[6]), mun);
+			else res.createOrGetMountainHut(ss[3], Integer.parseInt(ss[4]), ss[5], Integer.parseInt(ss[6]), mun);
+		});
+		return res;
+	}
+
+	@Test
+	public void testSmallChunks() throws IOException {
+		Region expected = lineByLine(TestR3_ReadData.file);
+		for (long chunk : new long[] { 1, 97, 4096 }) {
+			RegionLoader loader = new RegionLoader(Path.of(TestR3_ReadData.file), chunk);
+			Region r = loader.load("Piemonte", new ForkJoinPool(4));
+			assertTrue(loader.getErrors().isEmpty());
+			assertEquals(expected.getMunicipalities().size(), r.getMunicipalities().size());
+			assertEquals(expected.getMountainHuts().size(), r.getMountainHuts().size());
+			assertEquals(expected.countMountainHutsPerMunicipalityPerProvince(), r.countMountainHutsPerMunicipalityPerProvince());
+			assertEquals(expected.totalBedsNumberPerProvince(), r.totalBedsNumberPerProvince());
+			for (MountainHut h : expected.getMountainHuts()) {
+				MountainHut loaded = r.createOrGetMountainHut(h.getName(), null, null, null);
+				assertEquals(h.getAltitude(), loaded.getAltitude());
+				assertEquals(h.getCategory(), loaded.getCategory());
+				assertEquals(h.getMunicipality().getAltitude(), loaded.getMunicipality().getAltitude());
+			}
+		}
+	}
+
+	@Test
+	public void testErrorsAndDuplicates() throws IOException {
+		Path file = Files.createTempFile("huts", ".csv");
+		try {
+			Files.writeString(file, "Province;Municipality;MunicipalityAltitude;Name;Altitude;Category;BedsNumber\r\n"
+					+ "AOSTA;Courmayeur;1224;Torino;3375;Rifugio;150\r\n"
+					+ "AOSTA;Courmayeur;1224;Elisabetta;;Rifugio;x30\r\n"
+					+ "AOSTA;Cogne\r\n"
+					+ "AOSTA;Courmayeur;999;Torino;1000;Bivacco;2\r\n"
+					+ "AOSTA;Cogne;1534;Sella;;Rifugio;20\r\n");
+			RegionLoader loader = new RegionLoader(file, 16);
+			Region r = loader.load("Valle d'Aosta");
+
+			assertEquals(List.of("line 3: invalid number 'x30' in field BedsNumber",
+					"line 4: expected 7 fields but found 2"), loader.getErrors());
+			assertEquals(2, r.getMountainHuts().size());
+			MountainHut torino = r.createOrGetMountainHut("Torino", null, null, null);
+			assertEquals(Integer.valueOf(150), torino.getBedsNumber());
+			assertEquals(Integer.valueOf(1224), torino.getMunicipality().getAltitude());
+			MountainHut sella = r.createOrGetMountainHut("Sella", null, null, null);
+			assertFalse(sella.getAltitude().isPresent());
+			assertEquals("Cogne", sella.getMunicipality().getName());
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
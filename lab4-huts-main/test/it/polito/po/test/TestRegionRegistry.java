@@ -0,0 +1,107 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+import mountainhuts.RegionRegistry;
+
+public class TestRegionRegistry {
+
+	private static final String[] RANGES = { "0-1000", "1000-1500", "1500-2000" };
+
+	private final List<Path> files = new ArrayList<>();
+	private final Map<String, String> regions = new HashMap<>();
+
+	// splits the sample data into one file per province
+	@Before
+	public void setUp() throws IOException {
+		List<String> lines = Files.readAllLines(Path.of(TestR3_ReadData.file));
+		Map<String, List<String>> byProvince = new HashMap<>();
+		for (String line : lines.subList(1, lines.size())) {
+			byProvince.computeIfAbsent(line.substring(0, line.indexOf(';')), p -> new ArrayList<>(List.of(lines.get(0)))).add(line);
+		}
+		for (Map.Entry<String, List<String>> e : byProvince.entrySet()) {
+			Path file = Files.createTempFile(e.getKey(), ".csv");
+			Files.write(file, e.getValue());
+			files.add(file);
+			regions.put(e.getKey(), file.toString());
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path file : files) Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testRollups() {
+		Region whole = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		whole.setAltitudeRanges(RANGES);
+		RegionRegistry registry = new RegionRegistry(RANGES);
+		registry.loadAll(regions);
+
+		assertEquals(regions.size(), registry.getRegions().size());
+		assertEquals(whole.totalBedsNumberPerProvince(), registry.totalBedsNumberPerProvince());
+		assertEquals(whole.countMountainHutsPerAltitudeRange(), registry.countMountainHutsPerAltitudeRange());
+		assertEquals(whole.maximumBedsNumberPerAltitudeRange(), registry.maximumBedsNumberPerAltitudeRange());
+
+		List<String> top = registry.topMunicipalities(3);
+		assertEquals(3, top.size());
+		long first = whole.countMountainHutsPerMunicipalityPerProvince().values().stream()
+				.flatMap(m -> m.values().stream()).mapToLong(Long::longValue).max().getAsLong();
+		String name = top.get(0).substring(0, top.get(0).indexOf(" ("));
+		assertTrue(whole.municipalityNamesPerCountOfMountainHuts().get(first).contains(name));
+	}
+
+	@Test
+	public void testSameMunicipalityNameInDifferentProvinces() {
+		RegionRegistry registry = new RegionRegistry(RANGES);
+		Region piemonte = new Region("Piemonte");
+		Municipality valdieri = piemonte.createOrGetMunicipality("Valdieri", "CUNEO", 774);
+		piemonte.createOrGetMountainHut("Questa", 2388, "Rifugio", 20, valdieri);
+		piemonte.createOrGetMountainHut("Morelli", 2351, "Rifugio", 30, valdieri);
+		Region lombardia = new Region("Lombardia");
+		Municipality valdieri2 = lombardia.createOrGetMunicipality("Valdieri", "SONDRIO", 1000);
+		Municipality bormio = lombardia.createOrGetMunicipality("Bormio", "SONDRIO", 1225);
+		lombardia.createOrGetMountainHut("Uno", 2000, "Rifugio", 10, valdieri2);
+		lombardia.createOrGetMountainHut("Due", 2000, "Rifugio", 10, bormio);
+		lombardia.createOrGetMountainHut("Tre", 2000, "Rifugio", 10, bormio);
+		registry.addRegion(piemonte);
+		registry.addRegion(lombardia);
+
+		assertEquals(List.of("Bormio (SONDRIO)", "Valdieri (CUNEO)", "Valdieri (SONDRIO)"), registry.topMunicipalities(3));
+	}
+
+	@Test
+	public void testAddAndReplaceRegion() {
+		RegionRegistry registry = new RegionRegistry(RANGES);
+		registry.loadAll(regions);
+		Map<String, Integer> before = registry.totalBedsNumberPerProvince();
+
+		Region aosta = new Region("AOSTA");
+		Municipality m = aosta.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		aosta.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		registry.addRegion(aosta);
+		assertEquals(Integer.valueOf(150), registry.totalBedsNumberPerProvince().get("AOSTA"));
+		assertEquals(before.get("CUNEO"), registry.totalBedsNumberPerProvince().get("CUNEO"));
+		assertEquals(Integer.valueOf(150), registry.maximumBedsNumberPerAltitudeRange().get("0-INF").get());
+
+		aosta.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, m);
+		registry.addRegion(aosta);
+		assertEquals(Integer.valueOf(180), registry.totalBedsNumberPerProvince().get("AOSTA"));
+		assertSame(aosta, registry.getRegion("AOSTA"));
+	}
+}
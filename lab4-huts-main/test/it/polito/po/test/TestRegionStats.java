@@ -0,0 +1,97 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+import mountainhuts.RegionStats;
+
+public class TestRegionStats {
+
+	private Region r;
+
+	@Before
+	public void setUp() {
+		r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		r.setAltitudeRanges("0-1000", "1000-1500", "1500-2000");
+	}
+
+	@Test
+	public void testSameAsQueries() {
+		RegionStats stats = r.computeStats();
+
+		assertEquals(r.countMunicipalitiesPerProvince(), stats.countMunicipalitiesPerProvince());
+		assertEquals(r.countMountainHutsPerMunicipalityPerProvince(), stats.countMountainHutsPerMunicipalityPerProvince());
+		assertEquals(r.countMountainHutsPerAltitudeRange(), stats.countMountainHutsPerAltitudeRange());
+		assertEquals(r.totalBedsNumberPerProvince(), stats.totalBedsNumberPerProvince());
+		assertEquals(r.maximumBedsNumberPerAltitudeRange(), stats.maximumBedsNumberPerAltitudeRange());
+		assertEquals(r.municipalityNamesPerCountOfMountainHuts(), stats.municipalityNamesPerCountOfMountainHuts());
+	}
+
+	@Test
+	public void testMunicipalitiesWithoutHuts() {
+		Region small = new Region("Valle d'Aosta");
+		Municipality m = small.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		small.createOrGetMunicipality("Cogne", "AOSTA", 1534);
+		small.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		small.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, m);
+
+		RegionStats stats = small.computeStats();
+		assertEquals(Long.valueOf(2), stats.countMunicipalitiesPerProvince().get("AOSTA"));
+		assertEquals(Integer.valueOf(180), stats.totalBedsNumberPerProvince().get("AOSTA"));
+		assertEquals(List.of("Courmayeur"), stats.municipalityNamesPerCountOfMountainHuts().get(2L));
+		assertFalse(stats.countMountainHutsPerMunicipalityPerProvince().get("AOSTA").containsKey("Cogne"));
+	}
+
+	@Test
+	public void testIncrementalUpdates() {
+		Region small = new Region("Valle d'Aosta");
+		small.setAltitudeRanges("0-2000", "2000-3000");
+		Municipality m = small.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		small.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, m);
+		assertEquals(Long.valueOf(1), small.countMountainHutsPerAltitudeRange().get("2000-3000"));
+		assertEquals(Integer.valueOf(30), small.totalBedsNumberPerProvince().get("AOSTA"));
+
+		small.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		small.createOrGetMountainHut("Elisabetta", 2195, "Rifugio", 30, m);
+		Municipality c = small.createOrGetMunicipality("Cogne", "AOSTA", 1534);
+		small.createOrGetMountainHut("Sella", "Rifugio", 20, c);
+		assertEquals(Long.valueOf(2), small.countMunicipalitiesPerProvince().get("AOSTA"));
+		assertEquals(Integer.valueOf(200), small.totalBedsNumberPerProvince().get("AOSTA"));
+		assertEquals(Long.valueOf(1), small.countMountainHutsPerAltitudeRange().get("0-INF"));
+		assertEquals(Long.valueOf(1), small.countMountainHutsPerAltitudeRange().get("0-2000"));
+		assertEquals(Integer.valueOf(150), small.maximumBedsNumberPerAltitudeRange().get("0-INF").get());
+
+		small.setAltitudeRanges("1000-4000");
+		assertEquals(Long.valueOf(3), small.countMountainHutsPerAltitudeRange().get("1000-4000"));
+		assertNull(small.countMountainHutsPerAltitudeRange().get("0-INF"));
+		assertEquals(List.of("Courmayeur"), small.municipalityNamesPerCountOfMountainHuts().get(2L));
+		assertEquals(small.computeStats().totalBedsNumberPerProvince(), small.totalBedsNumberPerProvince());
+	}
+
+	@Test
+	public void testNamesPerCountIncremental() {
+		Region small = new Region("Valle d'Aosta");
+		Municipality[] ms = new Municipality[50];
+		for (int i = 0; i < ms.length; i++) ms[i] = small.createOrGetMunicipality("M" + (i * 7919 % 50), "AOSTA", 1000);
+		for (int i = 0; i < 2000; i++) {
+			small.createOrGetMountainHut("H" + i, 2000, "Rifugio", 10, ms[i * i % ms.length]);
+			if (i % 97 == 0) {
+				assertEquals(small.computeStats().municipalityNamesPerCountOfMountainHuts(), small.municipalityNamesPerCountOfMountainHuts());
+			}
+		}
+		assertEquals(small.computeStats().municipalityNamesPerCountOfMountainHuts(), small.municipalityNamesPerCountOfMountainHuts());
+		assertSame(small.municipalityNamesPerCountOfMountainHuts(), small.municipalityNamesPerCountOfMountainHuts());
+		try {
+			small.municipalityNamesPerCountOfMountainHuts().values().iterator().next().add("Aosta");
+			fail("The lists of names must be immutable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mountainhuts.MountainHut;
+import mountainhuts.Municipality;
+import mountainhuts.Region;
+
+public class TestSnapshot {
+
+	private Region r;
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		r = Region.fromFile("Piemonte", TestR3_ReadData.file);
+		r.setAltitudeRanges("0-1000", "1000-1500", "1500-2000");
+		file = Files.createTempFile("piemonte", ".huts");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testSaveAndOpen() throws IOException {
+		r.save(file);
+		Region opened = Region.open(file);
+
+		assertEquals("Piemonte", opened.getName());
+		assertEquals(r.getMunicipalities().size(), opened.getMunicipalities().size());
+		assertEquals(r.getMountainHuts().size(), opened.getMountainHuts().size());
+		assertEquals("1000-1500", opened.getAltitudeRange(1200));
+		assertEquals(r.countMunicipalitiesPerProvince(), opened.countMunicipalitiesPerProvince());
+		assertEquals(r.countMountainHutsPerMunicipalityPerProvince(), opened.countMountainHutsPerMunicipalityPerProvince());
+		assertEquals(r.countMountainHutsPerAltitudeRange(), opened.countMountainHutsPerAltitudeRange());
+		assertEquals(r.totalBedsNumberPerProvince(), opened.totalBedsNumberPerProvince());
+		assertEquals(r.maximumBedsNumberPerAltitudeRange(), opened.maximumBedsNumberPerAltitudeRange());
+		assertEquals(r.municipalityNamesPerCountOfMountainHuts(), opened.municipalityNamesPerCountOfMountainHuts());
+
+		for (MountainHut h : r.getMountainHuts()) {
+			MountainHut o = opened.createOrGetMountainHut(h.getName(), null, null, null);
+			assertEquals(h.getName(), o.getName());
+			assertEquals(h.getAltitude(), o.getAltitude());
+			assertEquals(h.getCategory(), o.getCategory());
+			assertEquals(h.getBedsNumber(), o.getBedsNumber());
+			assertEquals(h.getMunicipality().getName(), o.getMunicipality().getName());
+			assertEquals(h.getMunicipality().getProvince(), o.getMunicipality().getProvince());
+		}
+	}
+
+	@Test
+	public void testOpenedRegionGrows() throws IOException {
+		r.save(file);
+		Region opened = Region.open(file);
+		int huts = opened.getMountainHuts().size();
+
+		Municipality m = opened.createOrGetMunicipality("Courmayeur", "AOSTA", 1224);
+		MountainHut h = opened.createOrGetMountainHut("Torino", 3375, "Rifugio", 150, m);
+		assertSame(h, opened.createOrGetMountainHut("Torino", null, null, null));
+		assertEquals(Optional.of(3375), h.getAltitude());
+		assertEquals(huts + 1, opened.getMountainHuts().size());
+		assertEquals(Integer.valueOf(150), opened.totalBedsNumberPerProvince().get("AOSTA"));
+	}
+
+	@Test
+	public void testCorruptedSnapshot() throws IOException {
+		r.save(file);
+		byte[] b = Files.readAllBytes(file);
+		b[b.length / 2] ^= 1;
+		Files.write(file, b);
+		try {
+			Region.open(file);
+			fail("Corrupted snapshot not detected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Corrupted"));
+		}
+
+		Files.writeString(file, "Province;Municipality\n");
+		try {
+			Region.open(file);
+			fail("Wrong format not detected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Not a region snapshot"));
+		}
+	}
+}